@@ -0,0 +1,103 @@
+package com.votingsystem.benchmark;
+
+import com.votingsystem.common.CompressingSocketFactory;
+import com.votingsystem.common.PasswordUtils;
+import com.votingsystem.common.Poll;
+import com.votingsystem.common.VotingService;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures bytes on the wire and CPU cost of large catalog responses and small vote calls
+ * 
+ * The benchmark creates polls with long descriptions as the admin user, then calls
+ * getAvailablePolls and vote in a loop. Run it against a server with and without
+ * --compress-threshold to compare; the wire counters are only available when the
+ * server exports the compressing socket factory.
+ * 
+ * Usage: CatalogCompressionBenchmark [host[:port]] [polls] [seconds]
+ */
+public class CatalogCompressionBenchmark {
+    
+    public static void main(String[] args) throws Exception {
+        String hostAndPort = args.length > 0 ? args[0] : "localhost";
+        int pollCount = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        
+        VotingService service = VoteLatencyBenchmark.lookup(hostAndPort);
+        String token = service.login("admin", PasswordUtils.hashPassword("admin123"));
+        
+        // Create polls with long descriptions and long option lists, like a large election
+        List<String> options = new ArrayList<>();
+        for (int i = 1; i <= 12; i++) {
+            options.add("Candidate number " + i + " of the district list");
+        }
+        StringBuilder description = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            description.append("Please select one candidate for the district council seat. ");
+        }
+        for (int i = 0; i < pollCount; i++) {
+            service.createPoll(token, "District " + i + " council election", description.toString(), options);
+        }
+        
+        List<Poll> catalog = service.getAvailablePolls(token);
+        System.out.println("Catalog of " + catalog.size() + " polls, " + serializedSize(catalog) 
+                + " bytes serialized");
+        
+        measure("getAvailablePolls", seconds, () -> service.getAvailablePolls(token));
+        measure("vote", seconds, () -> service.vote(token, 1, 1));
+        
+        service.logout(token);
+    }
+    
+    private interface Call {
+        void run() throws Exception;
+    }
+    
+    private static void measure(String label, int seconds, Call call) throws Exception {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        
+        // Warm up
+        long warmupEnd = System.nanoTime() + 2_000_000_000L;
+        while (System.nanoTime() < warmupEnd) {
+            call.run();
+        }
+        
+        long rawBefore = CompressingSocketFactory.getBytesBeforeCompression();
+        long wireBefore = CompressingSocketFactory.getBytesOnWire();
+        long codecBefore = CompressingSocketFactory.getCompressionNanos();
+        long cpuBefore = threads.getCurrentThreadCpuTime();
+        long start = System.nanoTime();
+        long deadline = start + seconds * 1_000_000_000L;
+        LatencyStats stats = new LatencyStats();
+        
+        while (System.nanoTime() < deadline) {
+            long callStart = System.nanoTime();
+            call.run();
+            stats.record(System.nanoTime() - callStart);
+        }
+        
+        long elapsed = System.nanoTime() - start;
+        int calls = stats.getCount();
+        System.out.println(stats.summary(label, elapsed));
+        System.out.printf("  per call: %.0f bytes before compression, %.0f bytes on wire, "
+                + "%.3f ms client compression, %.3f ms client CPU%n",
+                (CompressingSocketFactory.getBytesBeforeCompression() - rawBefore) / (double) calls,
+                (CompressingSocketFactory.getBytesOnWire() - wireBefore) / (double) calls,
+                (CompressingSocketFactory.getCompressionNanos() - codecBefore) / 1e6 / calls,
+                (threads.getCurrentThreadCpuTime() - cpuBefore) / 1e6 / calls);
+    }
+    
+    private static int serializedSize(Object value) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        }
+        return bytes.size();
+    }
+}
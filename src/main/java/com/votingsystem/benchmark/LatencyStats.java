@@ -0,0 +1,68 @@
+package com.votingsystem.benchmark;
+
+import java.util.Arrays;
+
+/**
+ * Collects call latencies of one benchmark thread and reports percentiles
+ */
+public class LatencyStats {
+    
+    private long[] samples = new long[1024];
+    private int count;
+    
+    /**
+     * Record the latency of one call
+     * 
+     * @param nanos the latency in nanoseconds
+     */
+    public void record(long nanos) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+        }
+        samples[count++] = nanos;
+    }
+    
+    /**
+     * Add the samples of another thread
+     * 
+     * @param other the stats to merge into these
+     */
+    public void merge(LatencyStats other) {
+        for (int i = 0; i < other.count; i++) {
+            record(other.samples[i]);
+        }
+    }
+    
+    /**
+     * Get the number of recorded calls
+     * 
+     * @return the sample count
+     */
+    public int getCount() {
+        return count;
+    }
+    
+    /**
+     * Format throughput and latency percentiles
+     * 
+     * @param label the name of the measured call
+     * @param elapsedNanos the wall-clock duration of the measurement
+     * @return a one-line summary
+     */
+    public String summary(String label, long elapsedNanos) {
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        return String.format("%s: %d calls, %.0f calls/s, p50 %.3f ms, p99 %.3f ms, p99.9 %.3f ms, max %.3f ms",
+                label, count, count * 1e9 / elapsedNanos,
+                percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 0.999),
+                count > 0 ? sorted[count - 1] / 1e6 : 0.0);
+    }
+    
+    private static double percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0.0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(fraction * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+}
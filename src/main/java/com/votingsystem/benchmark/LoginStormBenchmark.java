@@ -0,0 +1,129 @@
+package com.votingsystem.benchmark;
+
+import com.votingsystem.common.PasswordUtils;
+import com.votingsystem.common.RateLimitExceededException;
+import com.votingsystem.common.ServerOverloadedException;
+import com.votingsystem.common.VotingService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load generator measuring vote latency while the server is flooded with logins
+ *
+ * Voter threads vote back and forth between two options of a poll, first on their own
+ * and then while storm threads log in as fast as they can. Since every login derives
+ * a PBKDF2 key on the server, comparing the two runs shows how much a login storm
+ * slows down voting.
+ *
+ * Usage: LoginStormBenchmark [host[:port]] [voterThreads] [stormThreads] [seconds] [pollId]
+ */
+public class LoginStormBenchmark {
+    
+    public static void main(String[] args) throws Exception {
+        String hostAndPort = args.length > 0 ? args[0] : "localhost";
+        int voters = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int stormThreads = args.length > 2 ? Integer.parseInt(args[2]) : 32;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        int pollId = args.length > 4 ? Integer.parseInt(args[4]) : 1;
+        
+        VotingService service = VoteLatencyBenchmark.lookup(hostAndPort);
+        
+        // The storm logs in as a single user so that signups don't dominate the run
+        String stormUser = "storm-" + System.nanoTime();
+        String stormPassword = PasswordUtils.hashPassword("storm");
+        service.signup(stormUser, stormPassword);
+        
+        run(service, voters, 0, stormUser, stormPassword, Math.max(1, seconds / 4), pollId);
+        Result quiet = run(service, voters, 0, stormUser, stormPassword, seconds, pollId);
+        Result storm = run(service, voters, stormThreads, stormUser, stormPassword, seconds, pollId);
+        
+        long elapsedNanos = seconds * 1_000_000_000L;
+        System.out.println(quiet.votes.summary("vote, no logins", elapsedNanos));
+        System.out.println(storm.votes.summary("vote, " + stormThreads + " login threads", elapsedNanos));
+        System.out.println("logins: " + storm.logins.sum() + " (" + (storm.logins.sum() / seconds) + "/s), "
+                + storm.rejectedLogins.sum() + " rejected");
+    }
+    
+    private static Result run(VotingService service, int voters, int stormThreads, String stormUser,
+            String stormPassword, int seconds, int pollId) throws Exception {
+        Result result = new Result();
+        CountDownLatch ready = new CountDownLatch(voters + stormThreads);
+        AtomicLong deadline = new AtomicLong(Long.MAX_VALUE);
+        List<LatencyStats> perThread = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        
+        for (int t = 0; t < voters; t++) {
+            LatencyStats stats = new LatencyStats();
+            perThread.add(stats);
+            String username = "voter-" + t + "-" + System.nanoTime();
+            
+            threads.add(new Thread(() -> {
+                try {
+                    service.signup(username, "benchmark");
+                    String token = service.login(username, "benchmark");
+                    ready.countDown();
+                    ready.await();
+                    
+                    int option = 1;
+                    while (System.nanoTime() < deadline.get()) {
+                        long start = System.nanoTime();
+                        service.vote(token, pollId, option);
+                        stats.record(System.nanoTime() - start);
+                        option = 3 - option;
+                    }
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }));
+        }
+        
+        for (int t = 0; t < stormThreads; t++) {
+            threads.add(new Thread(() -> {
+                try {
+                    ready.countDown();
+                    ready.await();
+                    
+                    while (System.nanoTime() < deadline.get()) {
+                        try {
+                            service.logout(service.login(stormUser, stormPassword));
+                            result.logins.increment();
+                        } catch (ServerOverloadedException | RateLimitExceededException e) {
+                            result.rejectedLogins.increment();
+                        }
+                    }
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }));
+        }
+        
+        // Voters sign up before the clock starts, so the deadline is set once everyone is ready
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        ready.await();
+        deadline.set(System.nanoTime() + seconds * 1_000_000_000L);
+        
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (LatencyStats stats : perThread) {
+            result.votes.merge(stats);
+        }
+        return result;
+    }
+    
+    /**
+     * Measurements of a single run
+     */
+    private static class Result {
+        
+        final LatencyStats votes = new LatencyStats();
+        final LongAdder logins = new LongAdder();
+        final LongAdder rejectedLogins = new LongAdder();
+    }
+}
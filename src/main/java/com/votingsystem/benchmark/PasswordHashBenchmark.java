@@ -0,0 +1,77 @@
+package com.votingsystem.benchmark;
+
+import com.votingsystem.common.PasswordUtils;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Microbenchmark of the client-side password hash and its verification
+ *
+ * Every thread hashes a password and verifies it against the hash in a loop, and the
+ * benchmark reports the throughput and, where the JVM supports it, the bytes allocated
+ * per iteration. The first run warms up the JIT and is not reported.
+ *
+ * Usage: PasswordHashBenchmark [threads] [seconds]
+ */
+public class PasswordHashBenchmark {
+    
+    private static volatile String sink;
+    
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        
+        run(threads, Math.max(1, seconds / 2));
+        run(threads, seconds);
+    }
+    
+    private static void run(int threads, int seconds) throws InterruptedException {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean allocationBean = threadBean instanceof com.sun.management.ThreadMXBean
+                ? (com.sun.management.ThreadMXBean) threadBean : null;
+        
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        LongAdder iterations = new LongAdder();
+        LongAdder allocatedBytes = new LongAdder();
+        List<Thread> workers = new ArrayList<>();
+        
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            Thread worker = new Thread(() -> {
+                long allocatedBefore = allocationBean != null ? allocationBean.getCurrentThreadAllocatedBytes() : 0;
+                long count = 0;
+                String password = "password-" + seed;
+                
+                while (System.nanoTime() < deadline) {
+                    for (int i = 0; i < 1000; i++) {
+                        String hash = PasswordUtils.hashPassword(password);
+                        if (!PasswordUtils.verifyPassword(password, hash)) {
+                            throw new IllegalStateException("Verification failed");
+                        }
+                        sink = hash;
+                    }
+                    count += 1000;
+                }
+                
+                iterations.add(count);
+                if (allocationBean != null) {
+                    allocatedBytes.add(allocationBean.getCurrentThreadAllocatedBytes() - allocatedBefore);
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        
+        long total = iterations.sum();
+        System.out.println("hash+verify, " + threads + " threads: " + total / seconds + " ops/s"
+                + (allocationBean != null ? ", " + allocatedBytes.sum() / Math.max(1, total) + " bytes/op" : ""));
+    }
+}
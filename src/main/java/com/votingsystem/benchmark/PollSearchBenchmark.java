@@ -0,0 +1,66 @@
+package com.votingsystem.benchmark;
+
+import com.votingsystem.common.Poll;
+import com.votingsystem.server.PollSearchIndex;
+
+import java.util.Random;
+
+/**
+ * Microbenchmark of searching the titles and descriptions of a large poll catalog
+ *
+ * Titles and descriptions are drawn from a vocabulary with a skewed word frequency, so
+ * that some query words occur in most polls and others in a handful. The benchmark
+ * reports how long indexing took and the mean time of each query.
+ *
+ * Usage: PollSearchBenchmark [polls] [iterations]
+ */
+public class PollSearchBenchmark {
+    
+    private static final String[] QUERIES = {
+        "budget", "city budget", "bud", "park renovation 2025", "el", "word17 word3", "word4999", "the of"
+    };
+    
+    public static void main(String[] args) {
+        int pollCount = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        
+        String[] vocabulary = new String[5000];
+        String[] common = {"the", "of", "city", "budget", "election", "park", "renovation", "council", "2025", "vote"};
+        for (int i = 0; i < vocabulary.length; i++) {
+            vocabulary[i] = i < common.length ? common[i] : "word" + i;
+        }
+        
+        PollSearchIndex index = new PollSearchIndex();
+        Random random = new Random(42);
+        long start = System.nanoTime();
+        for (int p = 1; p <= pollCount; p++) {
+            index.add(new Poll(p, text(random, vocabulary, 5), text(random, vocabulary, 20)));
+        }
+        long indexNanos = System.nanoTime() - start;
+        System.out.printf("indexed %,d polls in %.2f s%n", pollCount, indexNanos / 1e9);
+        
+        for (String query : QUERIES) {
+            // Warm up, then measure
+            int hits = 0;
+            for (int i = 0; i < iterations; i++) {
+                hits = index.search(query, 10).size();
+            }
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                index.search(query, 10);
+            }
+            long nanos = System.nanoTime() - start;
+            System.out.printf("%-22s %2d hits  %8.1f us/query%n", "\"" + query + "\"", hits, nanos / 1e3 / iterations);
+        }
+    }
+    
+    private static String text(Random random, String[] vocabulary, int words) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            // Cubing a uniform draw favours the first, common words
+            double u = random.nextDouble();
+            text.append(vocabulary[(int) (u * u * u * vocabulary.length)]).append(' ');
+        }
+        return text.toString();
+    }
+}
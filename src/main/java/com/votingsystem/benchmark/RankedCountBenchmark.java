@@ -0,0 +1,69 @@
+package com.votingsystem.benchmark;
+
+import com.votingsystem.common.Poll;
+import com.votingsystem.common.PollOption;
+import com.votingsystem.common.RankedResults;
+import com.votingsystem.server.RankedTally;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Microbenchmark of casting ranked ballots and counting them by instant runoff
+ *
+ * Ballots rank a few options drawn from a skewed popularity distribution, so that, as
+ * in real elections, many voters submit the same ranking. The benchmark reports how
+ * fast ballots are cast, how many distinct rankings they hold and how long the count
+ * takes.
+ *
+ * Usage: RankedCountBenchmark [ballots] [options] [choicesPerBallot]
+ */
+public class RankedCountBenchmark {
+    
+    public static void main(String[] args) {
+        int ballots = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int options = args.length > 1 ? Integer.parseInt(args[1]) : 12;
+        int choices = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        
+        Poll poll = new Poll(1, "Benchmark", "Ranked-choice benchmark");
+        for (int i = 1; i <= options; i++) {
+            poll.addOption(new PollOption(i, "Candidate " + i));
+        }
+        RankedTally tally = new RankedTally(poll);
+        
+        Random random = new Random(42);
+        int[] ranking = new int[Math.min(choices, options)];
+        long start = System.nanoTime();
+        for (int b = 0; b < ballots; b++) {
+            // Squaring a uniform draw favours the first candidates
+            int length = 1 + random.nextInt(ranking.length);
+            for (int i = 0; i < length; i++) {
+                int candidate;
+                boolean repeated;
+                do {
+                    double u = random.nextDouble();
+                    candidate = (int) (u * u * options);
+                    repeated = false;
+                    for (int j = 0; j < i; j++) {
+                        repeated |= ranking[j] == candidate;
+                    }
+                } while (repeated);
+                ranking[i] = candidate;
+            }
+            tally.cast("voter-" + b, Arrays.copyOf(ranking, length));
+        }
+        long castNanos = System.nanoTime() - start;
+        
+        // The first count warms up the JIT; a new ballot clears the cached results for the second
+        tally.count();
+        tally.cast("voter-0", new int[] {0});
+        start = System.nanoTime();
+        RankedResults results = tally.count();
+        long countNanos = System.nanoTime() - start;
+        
+        System.out.printf("cast %,d ballots in %.2f s (%,.0f ballots/s), %,d distinct rankings%n",
+                ballots, castNanos / 1e9, ballots / (castNanos / 1e9), results.getDistinctRankings());
+        System.out.printf("counted %d rounds in %.1f ms, winner: option %d%n",
+                results.getRounds().size(), countNanos / 1e6, results.getWinnerId());
+    }
+}
@@ -0,0 +1,74 @@
+package com.votingsystem.benchmark;
+
+import com.votingsystem.common.PasswordUtils;
+import com.votingsystem.common.ServerOverloadedException;
+import com.votingsystem.common.VotingService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load generator measuring signup throughput and checking that concurrent signups are atomic
+ *
+ * Threads take usernames from a shared sequence in which every name appears twice, so
+ * two threads race to register each name and exactly one of them must win. Start the
+ * server with a low --pbkdf2-iterations to measure the user store rather than the
+ * password hashing.
+ *
+ * Usage: SignupBenchmark [host[:port]] [threads] [seconds]
+ */
+public class SignupBenchmark {
+    
+    public static void main(String[] args) throws Exception {
+        String hostAndPort = args.length > 0 ? args[0] : "localhost";
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        
+        VotingService service = VoteLatencyBenchmark.lookup(hostAndPort);
+        String prefix = "signup-" + System.nanoTime() + "-";
+        String password = PasswordUtils.hashPassword("benchmark");
+        
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        AtomicLong sequence = new AtomicLong();
+        LongAdder accepted = new LongAdder();
+        LongAdder duplicates = new LongAdder();
+        LongAdder overloaded = new LongAdder();
+        List<Thread> workers = new ArrayList<>();
+        
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    while (System.nanoTime() < deadline) {
+                        String username = prefix + sequence.getAndIncrement() / 2;
+                        try {
+                            service.signup(username, password);
+                            accepted.increment();
+                        } catch (ServerOverloadedException e) {
+                            overloaded.increment();
+                        } catch (SecurityException e) {
+                            duplicates.increment();
+                        }
+                    }
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        
+        // A name may have been tried only once, or twice with one attempt rejected as overloaded
+        long attempts = sequence.get();
+        long names = (attempts + 1) / 2;
+        System.out.println("signup, " + threads + " threads: " + accepted.sum() / seconds + " signups/s, "
+                + duplicates.sum() + " duplicates rejected, " + overloaded.sum() + " rejected as overloaded");
+        System.out.println(accepted.sum() <= names ? "OK: no username was registered twice"
+                : "FAILED: " + (accepted.sum() - names) + " usernames were registered twice");
+    }
+}
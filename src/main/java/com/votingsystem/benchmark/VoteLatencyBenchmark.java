@@ -0,0 +1,145 @@
+package com.votingsystem.benchmark;
+
+import com.votingsystem.common.RateLimitExceededException;
+import com.votingsystem.common.ServerOverloadedException;
+import com.votingsystem.common.VotingService;
+
+import java.rmi.registry.LocateRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load generator measuring the latency of small vote calls against a running server
+ * 
+ * Every thread registers its own user and votes back and forth between two options of
+ * a poll as fast as it can. Run it against servers started with different socket
+ * options to compare throughput and tail latency.
+ * 
+ * Optional reader threads poll the results of the same poll in a loop, to check that a
+ * server with admission control sheds those reads before it sheds votes. Calls rejected
+ * by admission control are counted rather than timed.
+ * 
+ * Usage: VoteLatencyBenchmark [host[:port]] [threads] [seconds] [pollId] [readerThreads]
+ */
+public class VoteLatencyBenchmark {
+    
+    private static final String SERVICE_NAME = "VotingService";
+    
+    private static final LongAdder rejectedVotes = new LongAdder();
+    private static final LongAdder reads = new LongAdder();
+    private static final LongAdder rejectedReads = new LongAdder();
+    
+    public static void main(String[] args) throws Exception {
+        String hostAndPort = args.length > 0 ? args[0] : "localhost";
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        int pollId = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+        int readerThreads = args.length > 4 ? Integer.parseInt(args[4]) : 0;
+        
+        VotingService service = lookup(hostAndPort);
+        
+        // Warm up for a quarter of the run, then measure
+        run(service, threads, readerThreads, Math.max(1, seconds / 4), pollId, "warmup");
+        rejectedVotes.reset();
+        reads.reset();
+        rejectedReads.reset();
+        LatencyStats stats = run(service, threads, readerThreads, seconds, pollId, "measure");
+        
+        System.out.println(stats.summary("vote, " + threads + " threads", seconds * 1_000_000_000L));
+        System.out.println("rejected votes: " + rejectedVotes.sum() + ", results reads: " + reads.sum() 
+                + " (" + rejectedReads.sum() + " rejected)");
+    }
+    
+    /**
+     * Look up the voting service of a server
+     * 
+     * @param hostAndPort the server as host[:port]
+     * @return the voting service stub
+     * @throws Exception if the lookup fails
+     */
+    static VotingService lookup(String hostAndPort) throws Exception {
+        int colon = hostAndPort.lastIndexOf(':');
+        String host = colon > 0 ? hostAndPort.substring(0, colon) : hostAndPort;
+        int port = colon > 0 ? Integer.parseInt(hostAndPort.substring(colon + 1)) : 1099;
+        return (VotingService) LocateRegistry.getRegistry(host, port).lookup(SERVICE_NAME);
+    }
+    
+    private static LatencyStats run(VotingService service, int threads, int readerThreads, int seconds, int pollId, 
+            String phase) throws Exception {
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        CountDownLatch ready = new CountDownLatch(threads + readerThreads);
+        List<LatencyStats> perThread = new ArrayList<>();
+        List<Thread> workers = new ArrayList<>();
+        
+        for (int t = 0; t < threads; t++) {
+            LatencyStats stats = new LatencyStats();
+            perThread.add(stats);
+            String username = "bench-" + phase + "-" + t + "-" + System.nanoTime();
+            
+            Thread worker = new Thread(() -> {
+                try {
+                    service.signup(username, "benchmark");
+                    String token = service.login(username, "benchmark");
+                    ready.countDown();
+                    ready.await();
+                    
+                    int option = 1;
+                    while (System.nanoTime() < deadline) {
+                        long start = System.nanoTime();
+                        try {
+                            service.vote(token, pollId, option);
+                        } catch (ServerOverloadedException | RateLimitExceededException e) {
+                            rejectedVotes.increment();
+                            continue;
+                        }
+                        stats.record(System.nanoTime() - start);
+                        option = 3 - option;
+                    }
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        
+        List<Thread> readers = new ArrayList<>();
+        for (int t = 0; t < readerThreads; t++) {
+            String username = "reader-" + phase + "-" + t + "-" + System.nanoTime();
+            
+            Thread reader = new Thread(() -> {
+                try {
+                    service.signup(username, "benchmark");
+                    String token = service.login(username, "benchmark");
+                    ready.countDown();
+                    ready.await();
+                    
+                    while (System.nanoTime() < deadline) {
+                        reads.increment();
+                        try {
+                            service.getPollResults(token, pollId);
+                        } catch (ServerOverloadedException | RateLimitExceededException e) {
+                            rejectedReads.increment();
+                        }
+                    }
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            readers.add(reader);
+            reader.start();
+        }
+        
+        LatencyStats total = new LatencyStats();
+        for (int t = 0; t < threads; t++) {
+            workers.get(t).join();
+            total.merge(perThread.get(t));
+        }
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        return total;
+    }
+}
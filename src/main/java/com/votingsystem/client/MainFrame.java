@@ -2,12 +2,23 @@ package com.votingsystem.client;
 
 import com.votingsystem.common.Poll;
 import com.votingsystem.common.PollOption;
+import com.votingsystem.common.PollPage;
+import com.votingsystem.common.PollQuery;
+import com.votingsystem.common.PollResults;
+import com.votingsystem.common.PollSummary;
+import com.votingsystem.common.PollType;
+import com.votingsystem.common.PollView;
+import com.votingsystem.common.RankedResults;
 
 import javax.swing.*;
 import java.awt.*;
+import java.math.BigDecimal;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
 import java.util.ArrayList;
-import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -18,22 +29,44 @@ public class MainFrame extends JFrame {
     
     private static final Logger LOGGER = Logger.getLogger(MainFrame.class.getName());
     
+    // Number of polls fetched whenever the list is scrolled to its end
+    private static final int PAGE_SIZE = 50;
+    
     private VotingClient client;
     
-    private JList<Poll> pollList;
-    private DefaultListModel<Poll> pollListModel;
+    private JList<PollSummary> pollList;
+    private DefaultListModel<PollSummary> pollListModel;
+    private JCheckBox activeOnlyBox;
+    private JTextField titleFilterField;
     private JPanel pollDetailsPanel;
     private JPanel resultsPanel;
     private JButton voteButton;
     private JButton refreshButton;
     private JButton logoutButton;
     private JButton createPollButton;
+    private JButton voterWeightButton;
     private JLabel statusLabel;
     
     private Poll selectedPoll;
+    
+    // The selected poll with the user's vote and the results, fetched together when it is selected
+    private PollView pollView;
+    
+    // Listing being shown: its filter, the cursor of its next page (null once all are loaded),
+    // and a number that changes with every new listing so stale pages are dropped
+    private PollQuery pollQuery;
+    private String nextCursor;
+    private boolean loadingPage;
+    private int listingGeneration;
     private ButtonGroup optionGroup;
     private JRadioButton[] optionButtons;
     
+    // Rank chosen for every option of a ranked-choice poll, index 0 meaning unranked
+    private List<JComboBox<String>> rankBoxes;
+    
+    // Approval of every option of an approval poll
+    private List<JCheckBox> approvalBoxes;
+    
     // Admin panel components
     private JPanel adminPanel;
     private boolean isAdmin;
@@ -77,14 +110,41 @@ public class MainFrame extends JFrame {
         pollList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         pollList.addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting()) {
-                selectedPoll = pollList.getSelectedValue();
-                displayPollDetails();
+                // The list only holds summaries, so the rest of the poll is fetched once it is selected
+                PollSummary summary = pollList.getSelectedValue();
+                if (summary != null) {
+                    loadPollView(summary.getId());
+                } else {
+                    selectedPoll = null;
+                    pollView = null;
+                    displayPollDetails();
+                }
             }
         });
         
         JScrollPane pollScrollPane = new JScrollPane(pollList);
         pollScrollPane.setPreferredSize(new Dimension(250, 0));
         
+        // Load the next page once the list is scrolled close to its end
+        pollScrollPane.getVerticalScrollBar().addAdjustmentListener(e -> {
+            JScrollBar scrollBar = (JScrollBar) e.getAdjustable();
+            if (scrollBar.getValue() + scrollBar.getVisibleAmount() >= scrollBar.getMaximum() - scrollBar.getVisibleAmount() / 4) {
+                loadNextPage();
+            }
+        });
+        
+        // Filters of the poll list, applied by the server
+        JPanel filterPanel = new JPanel(new BorderLayout(5, 5));
+        titleFilterField = new JTextField();
+        titleFilterField.setToolTipText("Show polls with title words starting with this text (press Enter)");
+        titleFilterField.addActionListener(e -> loadPolls());
+        activeOnlyBox = new JCheckBox("Active only");
+        activeOnlyBox.addActionListener(e -> loadPolls());
+        filterPanel.add(new JLabel("Title:"), BorderLayout.WEST);
+        filterPanel.add(titleFilterField, BorderLayout.CENTER);
+        filterPanel.add(activeOnlyBox, BorderLayout.SOUTH);
+        
+        pollListPanel.add(filterPanel, BorderLayout.NORTH);
         pollListPanel.add(pollScrollPane, BorderLayout.CENTER);
         
         // Create the poll details panel
@@ -117,6 +177,10 @@ public class MainFrame extends JFrame {
             createPollButton = new JButton("Create Poll");
             createPollButton.addActionListener(e -> showCreatePollDialog());
             buttonPanel.add(createPollButton);
+            
+            voterWeightButton = new JButton("Set Voter Weight");
+            voterWeightButton.addActionListener(e -> showVoterWeightDialog());
+            buttonPanel.add(voterWeightButton);
         }
         
         // Create the status label
@@ -174,25 +238,52 @@ public class MainFrame extends JFrame {
         resultsPanel.revalidate();
         resultsPanel.repaint();
         
-        // Load the polls in a background thread
-        SwingWorker<List<Poll>, Void> worker = new SwingWorker<List<Poll>, Void>() {
+        // Start a new listing with the current filters
+        String titlePrefix = titleFilterField.getText().trim();
+        pollQuery = new PollQuery(activeOnlyBox.isSelected(), titlePrefix.isEmpty() ? null : titlePrefix, null, null);
+        nextCursor = null;
+        listingGeneration++;
+        loadPage(null);
+    }
+    
+    private void loadNextPage() {
+        if (nextCursor != null && !loadingPage) {
+            loadPage(nextCursor);
+        }
+    }
+    
+    private void loadPage(String cursor) {
+        loadingPage = true;
+        int generation = listingGeneration;
+        PollQuery query = pollQuery;
+        
+        // Load the page in a background thread
+        SwingWorker<PollPage, Void> worker = new SwingWorker<PollPage, Void>() {
             @Override
-            protected List<Poll> doInBackground() throws Exception {
-                return client.getAvailablePolls();
+            protected PollPage doInBackground() throws Exception {
+                return client.getPolls(query, cursor, PAGE_SIZE);
             }
             
             @Override
             protected void done() {
+                // The filters changed while the page was loading
+                if (generation != listingGeneration) {
+                    return;
+                }
+                
                 try {
-                    List<Poll> polls = get();
+                    PollPage page = get();
                     
-                    if (polls != null) {
+                    if (page != null) {
                         // Add the polls to the list
-                        for (Poll poll : polls) {
+                        for (PollSummary poll : page.getPolls()) {
                             pollListModel.addElement(poll);
                         }
+                        nextCursor = page.getNextCursor();
                         
-                        statusLabel.setText("Polls loaded successfully");
+                        statusLabel.setText(nextCursor != null 
+                                ? pollListModel.size() + " polls loaded, scroll down for more" 
+                                : "Polls loaded successfully");
                     } else {
                         statusLabel.setText("Failed to load polls. Please try again.");
                     }
@@ -200,6 +291,7 @@ public class MainFrame extends JFrame {
                     LOGGER.log(Level.SEVERE, "Error loading polls", e);
                     statusLabel.setText("Error loading polls: " + e.getMessage());
                 } finally {
+                    loadingPage = false;
                     refreshButton.setEnabled(true);
                 }
             }
@@ -208,6 +300,46 @@ public class MainFrame extends JFrame {
         worker.execute();
     }
     
+    private void loadPollView(int pollId) {
+        // Load the poll, the user's vote and the results in a background thread, in one call
+        SwingWorker<PollView, Void> worker = new SwingWorker<PollView, Void>() {
+            @Override
+            protected PollView doInBackground() throws Exception {
+                return client.getPollView(pollId);
+            }
+            
+            @Override
+            protected void done() {
+                // Another poll was selected while this one was loading
+                PollSummary summary = pollList.getSelectedValue();
+                if (summary == null || summary.getId() != pollId) {
+                    return;
+                }
+                
+                try {
+                    PollView view = get();
+                    
+                    if (view != null) {
+                        pollView = view;
+                        selectedPoll = view.getPoll();
+                    } else {
+                        pollView = null;
+                        selectedPoll = null;
+                        statusLabel.setText("Failed to load the poll. Please try again.");
+                    }
+                } catch (Exception e) {
+                    LOGGER.log(Level.SEVERE, "Error loading poll", e);
+                    pollView = null;
+                    selectedPoll = null;
+                    statusLabel.setText("Error loading poll: " + e.getMessage());
+                }
+                displayPollDetails();
+            }
+        };
+        
+        worker.execute();
+    }
+    
     private void displayPollDetails() {
         // Clear the details panel
         pollDetailsPanel.removeAll();
@@ -246,19 +378,33 @@ public class MainFrame extends JFrame {
         optionButtons = new JRadioButton[options.size()];
         
         // Get the user's current vote for this poll
-        int userVote = client.getUserVote(selectedPoll.getId());
-        boolean hasVoted = (userVote != -1);
+        int userVote = pollView.getUserVote();
+        boolean hasVoted = pollView.hasVoted();
+        
+        // Ranked-choice polls show the user's whole ranking rather than their first choice
+        boolean ranked = selectedPoll.getType() == PollType.RANKED;
+        int[] userRanking = ranked ? pollView.getUserChoices() : null;
+        boolean approval = selectedPoll.getType() == PollType.APPROVAL;
+        int[] userApprovals = approval ? pollView.getUserChoices() : null;
         
         // Create a label to show if user has already voted
         JLabel voteStatusLabel = new JLabel();
-        if (hasVoted) {
-            String optionText = "Unknown";
-            for (PollOption option : options) {
-                if (option.getId() == userVote) {
-                    optionText = option.getText();
-                    break;
-                }
+        if (userRanking != null) {
+            List<String> rankedNames = new ArrayList<>();
+            for (int optionId : userRanking) {
+                rankedNames.add(client.getOptionNameById(selectedPoll, optionId));
             }
+            voteStatusLabel.setText("Your ranking: " + String.join(" > ", rankedNames) + ". You can change it below.");
+            voteStatusLabel.setForeground(new Color(0, 128, 0)); // Dark green
+        } else if (userApprovals != null) {
+            List<String> approvedNames = new ArrayList<>();
+            for (int optionId : userApprovals) {
+                approvedNames.add(client.getOptionNameById(selectedPoll, optionId));
+            }
+            voteStatusLabel.setText("You approved of: " + String.join(", ", approvedNames) + ". You can change your vote below.");
+            voteStatusLabel.setForeground(new Color(0, 128, 0)); // Dark green
+        } else if (hasVoted) {
+            String optionText = client.getOptionNameById(selectedPoll, userVote);
             voteStatusLabel.setText("You have voted for: " + optionText + ". You can change your vote below.");
             voteStatusLabel.setForeground(new Color(0, 128, 0)); // Dark green
         } else {
@@ -267,8 +413,46 @@ public class MainFrame extends JFrame {
         }
         headerPanel.add(voteStatusLabel, BorderLayout.SOUTH);
         
+        rankBoxes = new ArrayList<>();
+        approvalBoxes = new ArrayList<>();
+        String[] rankChoices = new String[options.size() + 1];
+        rankChoices[0] = "-";
+        for (int rank = 1; rank < rankChoices.length; rank++) {
+            rankChoices[rank] = String.valueOf(rank);
+        }
+        
         for (int i = 0; i < options.size(); i++) {
             PollOption option = options.get(i);
+            
+            if (ranked) {
+                // One rank picker per option, preset to the user's current ranking
+                JComboBox<String> rankBox = new JComboBox<>(rankChoices);
+                for (int rank = 0; userRanking != null && rank < userRanking.length; rank++) {
+                    if (userRanking[rank] == option.getId()) {
+                        rankBox.setSelectedIndex(rank + 1);
+                    }
+                }
+                
+                JPanel rankPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+                rankPanel.add(rankBox);
+                rankPanel.add(new JLabel(option.getText()));
+                optionsPanel.add(rankPanel);
+                rankBoxes.add(rankBox);
+                continue;
+            }
+            
+            if (approval) {
+                JCheckBox approvalBox = new JCheckBox(option.getText());
+                for (int k = 0; userApprovals != null && k < userApprovals.length; k++) {
+                    if (userApprovals[k] == option.getId()) {
+                        approvalBox.setSelected(true);
+                    }
+                }
+                optionsPanel.add(approvalBox);
+                approvalBoxes.add(approvalBox);
+                continue;
+            }
+            
             JRadioButton optionButton = new JRadioButton(option.getText());
             optionButton.setActionCommand(String.valueOf(option.getId()));
             
@@ -293,101 +477,158 @@ public class MainFrame extends JFrame {
         voteButton.setEnabled(true);
         voteButton.setText(hasVoted ? "Change Vote" : "Vote");
         
-        // Load the results
-        loadResults();
+        // Show the results that came with the poll
+        showResults();
     }
     
-    private void loadResults() {
+    private void showResults() {
         // Clear the results panel
         resultsPanel.removeAll();
         
-        // Load the results in a background thread
-        SwingWorker<Map<Integer, Integer>, Void> worker = new SwingWorker<Map<Integer, Integer>, Void>() {
-            @Override
-            protected Map<Integer, Integer> doInBackground() throws Exception {
-                return client.getPollResults(selectedPoll.getId());
+        PollResults results = pollView.getResults();
+        
+        // Instant-runoff rounds, sent along with the first preferences for ranked-choice polls
+        RankedResults rankedResults = pollView.getRankedResults();
+        
+        // Create the results panel
+        JPanel resultsContentPanel = new JPanel(new BorderLayout(10, 10));
+        
+        // Create a panel for the results
+        JPanel resultsListPanel = new JPanel(new GridLayout(0, 1, 5, 5));
+        
+        int totalVotes = results.getTotalVotes();
+        
+        // Add the results
+        for (int i = 0; i < results.getOptionCount(); i++) {
+            int votes = results.getVotes(i);
+            
+            String optionName = client.getOptionNameById(selectedPoll, results.getOptionId(i));
+            double percentage = results.isWeighted() ? results.getWeightedPercentage(i)
+                    : results.getPercentage(i);
+            
+            JPanel resultPanel = new JPanel(new BorderLayout(5, 5));
+            resultPanel.add(new JLabel(optionName), BorderLayout.WEST);
+            
+            JProgressBar progressBar = new JProgressBar(0, 100);
+            progressBar.setValue((int) percentage);
+            progressBar.setStringPainted(true);
+            if (results.isWeighted()) {
+                progressBar.setString(String.format("%d votes, weight %s (%.1f%%)", votes,
+                        formatWeight(results.getWeightedVotes(i)), percentage));
+            } else {
+                progressBar.setString(String.format("%d votes (%.1f%%)", votes, percentage));
             }
             
-            @Override
-            protected void done() {
-                try {
-                    Map<Integer, Integer> results = get();
-                    
-                    if (results != null) {
-                        // Create the results panel
-                        JPanel resultsContentPanel = new JPanel(new BorderLayout(10, 10));
-                        
-                        // Create a panel for the results
-                        JPanel resultsListPanel = new JPanel(new GridLayout(0, 1, 5, 5));
-                        
-                        // Calculate the total votes
-                        int totalVotes = 0;
-                        for (int votes : results.values()) {
-                            totalVotes += votes;
-                        }
-                        
-                        // Add the results
-                        for (Map.Entry<Integer, Integer> entry : results.entrySet()) {
-                            int optionId = entry.getKey();
-                            int votes = entry.getValue();
-                            
-                            String optionName = client.getOptionNameById(selectedPoll, optionId);
-                            double percentage = totalVotes > 0 ? (votes * 100.0) / totalVotes : 0;
-                            
-                            JPanel resultPanel = new JPanel(new BorderLayout(5, 5));
-                            resultPanel.add(new JLabel(optionName), BorderLayout.WEST);
-                            
-                            JProgressBar progressBar = new JProgressBar(0, 100);
-                            progressBar.setValue((int) percentage);
-                            progressBar.setStringPainted(true);
-                            progressBar.setString(String.format("%d votes (%.1f%%)", votes, percentage));
-                            
-                            resultPanel.add(progressBar, BorderLayout.CENTER);
-                            
-                            resultsListPanel.add(resultPanel);
-                        }
-                        
-                        resultsContentPanel.add(resultsListPanel, BorderLayout.CENTER);
-                        
-                        // Add a label for the total votes
-                        JLabel totalVotesLabel = new JLabel("Total votes: " + totalVotes);
-                        totalVotesLabel.setHorizontalAlignment(SwingConstants.CENTER);
-                        resultsContentPanel.add(totalVotesLabel, BorderLayout.SOUTH);
-                        
-                        // Add the results content panel to the results panel
-                        resultsPanel.add(resultsContentPanel, BorderLayout.CENTER);
-                        resultsPanel.revalidate();
-                        resultsPanel.repaint();
-                    }
-                } catch (Exception e) {
-                    LOGGER.log(Level.SEVERE, "Error loading results", e);
-                    JLabel errorLabel = new JLabel("Error loading results: " + e.getMessage());
-                    errorLabel.setHorizontalAlignment(SwingConstants.CENTER);
-                    resultsPanel.add(errorLabel, BorderLayout.CENTER);
-                    resultsPanel.revalidate();
-                    resultsPanel.repaint();
+            resultPanel.add(progressBar, BorderLayout.CENTER);
+            
+            resultsListPanel.add(resultPanel);
+        }
+        
+        resultsContentPanel.add(resultsListPanel, BorderLayout.CENTER);
+        
+        if (rankedResults != null) {
+            resultsListPanel.setBorder(BorderFactory.createTitledBorder("First preferences"));
+            resultsContentPanel.add(createRoundsPanel(rankedResults), BorderLayout.EAST);
+        }
+        
+        // Add a label for the total votes, and the winner once the poll has closed
+        String totalText = "Total votes: " + totalVotes;
+        if (results.isWeighted()) {
+            totalText += ", total weight: " + formatWeight(results.getWeightedTotal());
+        }
+        if (results.isClosed() && !results.getWinnerIds().isEmpty()) {
+            List<String> winners = new ArrayList<>();
+            for (int winnerId : results.getWinnerIds()) {
+                winners.add(client.getOptionNameById(selectedPoll, winnerId));
+            }
+            totalText += " - Poll closed, " + (winners.size() > 1 ? "tied: " : "winner: ")
+                    + String.join(", ", winners);
+        }
+        JLabel totalVotesLabel = new JLabel(totalText);
+        totalVotesLabel.setHorizontalAlignment(SwingConstants.CENTER);
+        resultsContentPanel.add(totalVotesLabel, BorderLayout.SOUTH);
+        
+        // Add the results content panel to the results panel
+        resultsPanel.add(resultsContentPanel, BorderLayout.CENTER);
+        resultsPanel.revalidate();
+        resultsPanel.repaint();
+    }
+    
+    private JComponent createRoundsPanel(RankedResults rankedResults) {
+        StringBuilder text = new StringBuilder();
+        List<RankedResults.Round> rounds = rankedResults.getRounds();
+        for (int r = 0; r < rounds.size(); r++) {
+            RankedResults.Round round = rounds.get(r);
+            text.append("Round ").append(r + 1).append(":\n");
+            for (int i = 0; i < rankedResults.getOptionCount(); i++) {
+                if (round.isContinuing(i)) {
+                    text.append("  ").append(client.getOptionNameById(selectedPoll, rankedResults.getOptionId(i)))
+                            .append(": ").append(round.getVotes(i)).append('\n');
                 }
             }
-        };
+            if (round.getExhaustedBallots() > 0) {
+                text.append("  Exhausted: ").append(round.getExhaustedBallots()).append('\n');
+            }
+            if (round.getEliminatedId() != -1) {
+                text.append("  Eliminated: ").append(client.getOptionNameById(selectedPoll, round.getEliminatedId()))
+                        .append('\n');
+            }
+        }
+        if (rankedResults.getWinnerId() != -1) {
+            text.append("Winner: ").append(client.getOptionNameById(selectedPoll, rankedResults.getWinnerId()));
+        }
         
-        worker.execute();
+        JTextArea roundsArea = new JTextArea(text.toString());
+        roundsArea.setEditable(false);
+        JScrollPane roundsScrollPane = new JScrollPane(roundsArea);
+        roundsScrollPane.setBorder(BorderFactory.createTitledBorder("Instant runoff"));
+        roundsScrollPane.setPreferredSize(new Dimension(220, 0));
+        return roundsScrollPane;
     }
     
     private void vote() {
-        // Get the selected option
-        ButtonModel selectedButton = optionGroup.getSelection();
+        int selectedOptionId = -1;
+        int[] selectedRanking = null;
+        int[] selectedApprovals = null;
         
-        if (selectedButton == null) {
-            statusLabel.setText("Please select an option");
-            return;
+        if (selectedPoll.getType() == PollType.RANKED) {
+            selectedRanking = collectRanking();
+            if (selectedRanking == null) {
+                return;
+            }
+        } else if (selectedPoll.getType() == PollType.APPROVAL) {
+            List<Integer> approved = new ArrayList<>();
+            for (int i = 0; i < approvalBoxes.size(); i++) {
+                if (approvalBoxes.get(i).isSelected()) {
+                    approved.add(selectedPoll.getOptions().get(i).getId());
+                }
+            }
+            if (approved.isEmpty()) {
+                statusLabel.setText("Please approve at least one option");
+                return;
+            }
+            selectedApprovals = new int[approved.size()];
+            for (int i = 0; i < selectedApprovals.length; i++) {
+                selectedApprovals[i] = approved.get(i);
+            }
+        } else {
+            // Get the selected option
+            ButtonModel selectedButton = optionGroup.getSelection();
+            
+            if (selectedButton == null) {
+                statusLabel.setText("Please select an option");
+                return;
+            }
+            
+            // Get the option ID
+            selectedOptionId = Integer.parseInt(selectedButton.getActionCommand());
         }
+        int optionId = selectedOptionId;
+        int[] ranking = selectedRanking;
+        int[] approvals = selectedApprovals;
         
-        // Get the option ID
-        int optionId = Integer.parseInt(selectedButton.getActionCommand());
-        
-        // Get the user's current vote
-        int currentVote = client.getUserVote(selectedPoll.getId());
-        boolean isChangingVote = (currentVote != -1);
+        // The user's current vote came with the poll
+        boolean isChangingVote = pollView.hasVoted();
         
         // Disable the vote button
         voteButton.setEnabled(false);
@@ -397,6 +638,12 @@ public class MainFrame extends JFrame {
         SwingWorker<Boolean, Void> worker = new SwingWorker<Boolean, Void>() {
             @Override
             protected Boolean doInBackground() throws Exception {
+                if (ranking != null) {
+                    return client.voteRanked(selectedPoll.getId(), ranking);
+                }
+                if (approvals != null) {
+                    return client.voteApproval(selectedPoll.getId(), approvals);
+                }
                 return client.vote(selectedPoll.getId(), optionId);
             }
             
@@ -412,8 +659,8 @@ public class MainFrame extends JFrame {
                         voteButton.setText("Change Vote");
                         voteButton.setEnabled(true);
                         
-                        // Reload the poll details to show the updated vote status
-                        displayPollDetails();
+                        // Reload the poll to show the updated vote status and results
+                        loadPollView(selectedPoll.getId());
                     } else {
                         statusLabel.setText(isChangingVote ? "Failed to change vote" : "Failed to submit vote");
                         voteButton.setEnabled(true);
@@ -429,6 +676,42 @@ public class MainFrame extends JFrame {
         worker.execute();
     }
     
+    private int[] collectRanking() {
+        List<PollOption> options = selectedPoll.getOptions();
+        
+        // Option ID at every rank, -1 for ranks nobody was given
+        int[] optionAtRank = new int[options.size() + 1];
+        Arrays.fill(optionAtRank, -1);
+        for (int i = 0; i < options.size(); i++) {
+            int rank = rankBoxes.get(i).getSelectedIndex();
+            if (rank == 0) {
+                continue;
+            }
+            if (optionAtRank[rank] != -1) {
+                statusLabel.setText("Each rank can only be given to one option");
+                return null;
+            }
+            optionAtRank[rank] = options.get(i).getId();
+        }
+        
+        List<Integer> ordered = new ArrayList<>();
+        for (int rank = 1; rank < optionAtRank.length; rank++) {
+            if (optionAtRank[rank] != -1) {
+                ordered.add(optionAtRank[rank]);
+            }
+        }
+        if (ordered.isEmpty()) {
+            statusLabel.setText("Please rank at least one option");
+            return null;
+        }
+        
+        int[] ranking = new int[ordered.size()];
+        for (int i = 0; i < ranking.length; i++) {
+            ranking[i] = ordered.get(i);
+        }
+        return ranking;
+    }
+    
     private void logout() {
         // Disable the logout button
         logoutButton.setEnabled(false);
@@ -477,7 +760,7 @@ public class MainFrame extends JFrame {
         
         // Create a dialog for poll creation
         JDialog createPollDialog = new JDialog(this, "Create New Poll", true);
-        createPollDialog.setSize(500, 400);
+        createPollDialog.setSize(500, 600);
         createPollDialog.setLocationRelativeTo(this);
         
         JPanel dialogPanel = new JPanel(new BorderLayout(10, 10));
@@ -498,6 +781,28 @@ public class MainFrame extends JFrame {
         formPanel.add(descLabel);
         formPanel.add(descField);
         
+        // Poll type
+        JLabel typeLabel = new JLabel("Poll Type:");
+        JComboBox<PollType> typeBox = new JComboBox<>(PollType.values());
+        formPanel.add(typeLabel);
+        formPanel.add(typeBox);
+        
+        JCheckBox weightedBox = new JCheckBox("Weighted (ballots count with their voter's weight)");
+        formPanel.add(weightedBox);
+        
+        // Schedule fields, left empty to open now and close a day later
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+        dateFormat.setLenient(false);
+        JLabel startLabel = new JLabel("Opens at (yyyy-MM-dd HH:mm, optional):");
+        JTextField startField = new JTextField(20);
+        formPanel.add(startLabel);
+        formPanel.add(startField);
+        
+        JLabel endLabel = new JLabel("Closes at (yyyy-MM-dd HH:mm, optional):");
+        JTextField endField = new JTextField(20);
+        formPanel.add(endLabel);
+        formPanel.add(endField);
+        
         // Options panel
         JPanel optionsPanel = new JPanel(new BorderLayout(5, 5));
         optionsPanel.setBorder(BorderFactory.createTitledBorder("Poll Options"));
@@ -555,9 +860,20 @@ public class MainFrame extends JFrame {
                 return;
             }
             
+            Date startDate;
+            Date endDate;
+            try {
+                startDate = startField.getText().trim().isEmpty() ? null : dateFormat.parse(startField.getText().trim());
+                endDate = endField.getText().trim().isEmpty() ? null : dateFormat.parse(endField.getText().trim());
+            } catch (ParseException ex) {
+                JOptionPane.showMessageDialog(createPollDialog, "Dates must be formatted as yyyy-MM-dd HH:mm", "Validation Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            
             // Create the poll
             createPollDialog.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
-            int pollId = client.createPoll(title, description, options);
+            int pollId = client.createPoll(title, description, options, startDate, endDate,
+                    (PollType) typeBox.getSelectedItem(), weightedBox.isSelected());
             createPollDialog.setCursor(Cursor.getDefaultCursor());
             
             if (pollId != -1) {
@@ -582,4 +898,53 @@ public class MainFrame extends JFrame {
         createPollDialog.add(dialogPanel);
         createPollDialog.setVisible(true);
     }
+    
+    /**
+     * Show dialog for setting the weight of a voter in weighted polls (admin only)
+     */
+    private void showVoterWeightDialog() {
+        if (!isAdmin) {
+            statusLabel.setText("Only administrators can set voter weights");
+            return;
+        }
+        
+        JTextField usernameField = new JTextField(20);
+        JTextField weightField = new JTextField("1", 20);
+        JPanel formPanel = new JPanel(new GridLayout(0, 1, 5, 5));
+        formPanel.add(new JLabel("Username:"));
+        formPanel.add(usernameField);
+        formPanel.add(new JLabel("Weight (up to 6 decimals):"));
+        formPanel.add(weightField);
+        
+        int choice = JOptionPane.showConfirmDialog(this, formPanel, "Set Voter Weight",
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        if (choice != JOptionPane.OK_OPTION) {
+            return;
+        }
+        
+        String username = usernameField.getText().trim();
+        BigDecimal weight;
+        try {
+            weight = new BigDecimal(weightField.getText().trim());
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Weight must be a number", "Validation Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        
+        if (client.setVoterWeight(username, weight)) {
+            statusLabel.setText("Weight of " + username + " set to " + weight.toPlainString());
+        } else {
+            JOptionPane.showMessageDialog(this, "Failed to set voter weight", "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+    
+    /**
+     * Format a fixed-point weight for display
+     * 
+     * @param weight the weight in units of 1/PollResults.WEIGHT_SCALE
+     * @return the weight as a decimal number without trailing zeros
+     */
+    private static String formatWeight(long weight) {
+        return BigDecimal.valueOf(weight, 6).stripTrailingZeros().toPlainString();
+    }
 }
@@ -1,20 +1,50 @@
 package com.votingsystem.client;
 
+import com.votingsystem.common.ConsistentHashRing;
 import com.votingsystem.common.Poll;
 import com.votingsystem.common.PollOption;
+import com.votingsystem.common.PollPage;
+import com.votingsystem.common.PollQuery;
+import com.votingsystem.common.PollResults;
+import com.votingsystem.common.PollSearchHit;
+import com.votingsystem.common.PollSummary;
+import com.votingsystem.common.PollType;
+import com.votingsystem.common.PollView;
+import com.votingsystem.common.RankedResults;
+import com.votingsystem.common.ResultBreakdown;
+import com.votingsystem.common.VoteSeries;
 import com.votingsystem.common.VotingService;
 
+import java.math.BigDecimal;
 import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Client class for the Voting System
+ * 
+ * The client can talk to a single server or to a sharded cluster. In a cluster every
+ * server owns a subset of the polls, chosen by a {@link ConsistentHashRing} over the
+ * shard indexes, and the client logs in to every shard and routes poll calls to the
+ * shard that owns the poll.
+ * 
+ * Each shard may also list read replicas. Poll lists and results are then read from
+ * a replica, falling back to the primary when the replica is unreachable or reports
+ * that it is further behind than its staleness bound. Writes and the user's own vote
+ * always go to the primary.
+ * 
+ * With the system property votingsystem.routing=user the servers are instead the
+ * nodes of an ingest group, which all accept votes for every poll. Each user is then
+ * bound to a home node chosen by hashing the username, and every call goes there.
  */
 public class VotingClient {
     
@@ -22,39 +52,105 @@ public class VotingClient {
     private static final int RMI_PORT = 1099;
     private static final String SERVICE_NAME = "VotingService";
     
-    private String serverHost;
-    private VotingService votingService;
-    private String sessionToken;
+    // Hosts and ports indexed by shard; entry 0 is the primary and the rest are replicas
+    private final String[][] serverHosts;
+    private final int[][] serverPorts;
+    private final ConsistentHashRing shardRing;
+    private final VotingService[] shards;
+    private final VotingService[][] replicas;
+    
+    // Session tokens indexed by shard, or null if not logged in
+    private String[] sessionTokens;
+    
+    // Session tokens indexed by shard and replica, null for replicas we are not logged in to
+    private String[][] replicaTokens;
+    
+    // Counter spreading reads over the replicas of a shard
+    private int nextReplica;
+    
+    // Shard receiving the next created poll, so new polls are spread over the cluster
+    private int nextCreateShard;
+    
+    // Whether calls are routed to the user's home node instead of the poll's shard
+    private final boolean routeByUser;
+    
+    // Home node of the current user when routing by user
+    private int homeShard;
+    
+    // Polls fetched in full by ID; nothing but their state changes once they are created
+    private final Map<Integer, Poll> pollDetails = new ConcurrentHashMap<>();
     
     /**
      * Constructor for the VotingClient
      * 
-     * @param serverHost the hostname of the RMI server
+     * @param serverHost the hostname of the RMI server, or a comma separated list of
+     *                   host[:port] entries ordered by shard index for a sharded cluster;
+     *                   each entry may be followed by |host[:port] read replicas
      */
     public VotingClient(String serverHost) {
-        this.serverHost = serverHost;
-        this.sessionToken = null;
+        String[] entries = serverHost.split(",");
+        this.serverHosts = new String[entries.length][];
+        this.serverPorts = new int[entries.length][];
+        this.replicas = new VotingService[entries.length][];
+        
+        for (int i = 0; i < entries.length; i++) {
+            String[] servers = entries[i].split("\\|");
+            serverHosts[i] = new String[servers.length];
+            serverPorts[i] = new int[servers.length];
+            replicas[i] = new VotingService[servers.length - 1];
+            
+            for (int j = 0; j < servers.length; j++) {
+                String server = servers[j].trim();
+                int colon = server.lastIndexOf(':');
+                if (colon > 0) {
+                    serverHosts[i][j] = server.substring(0, colon);
+                    serverPorts[i][j] = Integer.parseInt(server.substring(colon + 1));
+                } else {
+                    serverHosts[i][j] = server;
+                    serverPorts[i][j] = RMI_PORT;
+                }
+            }
+        }
+        
+        this.shardRing = new ConsistentHashRing(entries.length);
+        this.shards = new VotingService[entries.length];
+        this.sessionTokens = null;
+        this.replicaTokens = null;
+        this.routeByUser = "user".equals(System.getProperty("votingsystem.routing"));
     }
     
     /**
-     * Connect to the RMI server
+     * Connect to the RMI server, or to every shard of a cluster
      * 
      * @return true if connection is successful, false otherwise
      */
     public boolean connect() {
         try {
-            LOGGER.info("Connecting to RMI server at " + serverHost + ":" + RMI_PORT);
-            
             // Set security manager if needed
             if (System.getSecurityManager() == null) {
                 System.setSecurityManager(new SecurityManager());
             }
             
-            // Get the registry
-            Registry registry = LocateRegistry.getRegistry(serverHost, RMI_PORT);
-            
-            // Look up the remote object
-            votingService = (VotingService) registry.lookup(SERVICE_NAME);
+            for (int i = 0; i < shards.length; i++) {
+                LOGGER.info("Connecting to RMI server at " + serverHosts[i][0] + ":" + serverPorts[i][0]);
+                
+                // Get the registry
+                Registry registry = LocateRegistry.getRegistry(serverHosts[i][0], serverPorts[i][0]);
+                
+                // Look up the remote object
+                shards[i] = (VotingService) registry.lookup(SERVICE_NAME);
+                
+                // Replicas are optional, reads fall back to the primary if one is down
+                for (int j = 0; j < replicas[i].length; j++) {
+                    String host = serverHosts[i][j + 1];
+                    int port = serverPorts[i][j + 1];
+                    try {
+                        replicas[i][j] = (VotingService) LocateRegistry.getRegistry(host, port).lookup(SERVICE_NAME);
+                    } catch (RemoteException | NotBoundException e) {
+                        LOGGER.log(Level.WARNING, "Read replica at " + host + ":" + port + " is unavailable", e);
+                    }
+                }
+            }
             
             LOGGER.info("Connected to RMI server successfully");
             return true;
@@ -65,6 +161,75 @@ public class VotingClient {
         }
     }
     
+    /**
+     * Get the index of the shard owning a poll
+     * 
+     * @param pollId the ID of the poll
+     * @return the index of the owning shard
+     */
+    private int shardFor(int pollId) {
+        return routeByUser ? homeShard : shardRing.ownerOf(pollId);
+    }
+    
+    /**
+     * Check whether the current user has a session on a shard
+     * 
+     * @param shard the index of the shard
+     * @return true if calls may be sent to the shard
+     */
+    private boolean isActive(int shard) {
+        return !routeByUser || shard == homeShard;
+    }
+    
+    /**
+     * Check whether a shard holds a user's registration
+     * 
+     * @param shard the index of the shard
+     * @param username the user
+     * @return true if the user's weight and attributes must be set on the shard
+     */
+    private boolean holdsUser(int shard, String username) {
+        return !routeByUser || shard == shardRing.ownerOf(username.hashCode());
+    }
+    
+    /**
+     * A read-only call that can be served by a shard's primary or any of its replicas
+     */
+    private interface ReadCall<T> {
+        T call(VotingService service, String sessionToken) throws RemoteException;
+    }
+    
+    /**
+     * Perform a read-only call on a replica of a shard, falling back to the primary
+     * 
+     * @param shard the index of the shard
+     * @param call the call to perform
+     * @return the result of the call
+     * @throws RemoteException if the primary cannot be reached
+     */
+    private <T> T readFromShard(int shard, ReadCall<T> call) throws RemoteException {
+        VotingService[] shardReplicas = replicas[shard];
+        if (shardReplicas.length > 0) {
+            int replica = Math.floorMod(nextReplica++, shardReplicas.length);
+            String replicaToken = replicaTokens[shard][replica];
+            
+            if (replicaToken != null) {
+                try {
+                    return call.call(shardReplicas[replica], replicaToken);
+                } catch (SecurityException e) {
+                    // The replica session expired, stop using this replica until the next login
+                    LOGGER.log(Level.FINE, "Replica session expired, reading from primary", e);
+                    replicaTokens[shard][replica] = null;
+                } catch (RemoteException | IllegalStateException e) {
+                    // Unreachable or too stale, the primary always has current data
+                    LOGGER.log(Level.FINE, "Replica read failed, reading from primary", e);
+                }
+            }
+        }
+        
+        return call.call(shards[shard], sessionTokens[shard]);
+    }
+    
     /**
      * Register a new user
      * 
@@ -76,13 +241,29 @@ public class VotingClient {
         try {
             LOGGER.info("Attempting to register with username: " + username);
             
-            boolean result = votingService.signup(username, password);
-            
-            if (result) {
-                LOGGER.info("Registration successful");
+            // Every shard authenticates its own sessions, so the user is registered on all of them,
+            // while an ingest group only registers the user on their home node. If a shard refuses
+            // the user, the shards that already registered them are rolled back.
+            homeShard = shardRing.ownerOf(username.hashCode());
+            List<Integer> registered = new ArrayList<>();
+            try {
+                for (int i = 0; i < shards.length; i++) {
+                    if (isActive(i)) {
+                        if (!shards[i].signup(username, password)) {
+                            cancelSignup(registered, username, password);
+                            return false;
+                        }
+                        registered.add(i);
+                    }
+                }
+            } catch (RemoteException | RuntimeException e) {
+                // Includes the rate limit and overload refusals, which callers handle themselves
+                cancelSignup(registered, username, password);
+                throw e;
             }
             
-            return result;
+            LOGGER.info("Registration successful");
+            return true;
             
         } catch (RemoteException e) {
             LOGGER.log(Level.SEVERE, "Remote error during registration", e);
@@ -93,6 +274,23 @@ public class VotingClient {
         }
     }
     
+    /**
+     * Remove a registration from the shards that accepted it before another shard refused it
+     * 
+     * @param registered the indexes of the shards that registered the user
+     * @param username the username
+     * @param password the password
+     */
+    private void cancelSignup(List<Integer> registered, String username, String password) {
+        for (int shard : registered) {
+            try {
+                shards[shard].cancelSignup(username, password);
+            } catch (RemoteException | RuntimeException e) {
+                LOGGER.log(Level.SEVERE, "Could not roll back the registration of " + username + " on shard " + shard, e);
+            }
+        }
+    }
+    
     /**
      * Login to the voting system
      * 
@@ -104,7 +302,45 @@ public class VotingClient {
         try {
             LOGGER.info("Attempting to login with username: " + username);
             
-            sessionToken = votingService.login(username, password);
+            String[] tokens = new String[shards.length];
+            String[][] tokensByReplica = new String[shards.length][];
+            homeShard = shardRing.ownerOf(username.hashCode());
+            for (int i = 0; i < shards.length; i++) {
+                if (!isActive(i)) {
+                    tokensByReplica[i] = new String[replicas[i].length];
+                    continue;
+                }
+                tokens[i] = shards[i].login(username, password);
+                
+                // A replica that has not replicated the user yet is skipped until the next login
+                tokensByReplica[i] = new String[replicas[i].length];
+                for (int j = 0; j < replicas[i].length; j++) {
+                    if (replicas[i][j] == null) {
+                        continue;
+                    }
+                    try {
+                        tokensByReplica[i][j] = replicas[i][j].login(username, password);
+                    } catch (RemoteException | SecurityException e) {
+                        LOGGER.log(Level.WARNING, "Login to read replica failed, reading from primary", e);
+                    }
+                }
+            }
+            
+            // Administrators exist on every node of an ingest group, and manage the voters homed on any of them
+            if (routeByUser && shards[homeShard].isAdmin(tokens[homeShard])) {
+                for (int i = 0; i < shards.length; i++) {
+                    if (i == homeShard) {
+                        continue;
+                    }
+                    try {
+                        tokens[i] = shards[i].login(username, password);
+                    } catch (RemoteException | SecurityException e) {
+                        LOGGER.log(Level.WARNING, "Login to ingest node " + i + " failed", e);
+                    }
+                }
+            }
+            sessionTokens = tokens;
+            replicaTokens = tokensByReplica;
             
             LOGGER.info("Login successful");
             return true;
@@ -127,19 +363,119 @@ public class VotingClient {
         try {
             LOGGER.info("Getting available polls");
             
-            if (sessionToken == null) {
+            if (sessionTokens == null) {
                 LOGGER.warning("Not logged in");
                 return null;
             }
             
-            return votingService.getAvailablePolls(sessionToken);
+            // Merge the polls owned by every shard
+            List<Poll> polls = new ArrayList<>();
+            for (int i = 0; i < shards.length; i++) {
+                if (isActive(i)) {
+                    polls.addAll(readFromShard(i, VotingService::getAvailablePolls));
+                }
+            }
+            polls.sort(Comparator.comparingInt(Poll::getId));
+            return polls;
             
         } catch (RemoteException e) {
             LOGGER.log(Level.SEVERE, "Remote error while getting polls", e);
             return null;
         } catch (SecurityException e) {
             LOGGER.log(Level.WARNING, "Session error: " + e.getMessage(), e);
-            sessionToken = null;
+            sessionTokens = null;
+            return null;
+        }
+    }
+    
+    /**
+     * List one page of the polls matching a filter, ordered by end date
+     * 
+     * Every shard lists its own page from the same cursor, since a cursor names a position
+     * in the listing order that all shards share, and the pages are merged.
+     * 
+     * @param query the filter, or null to list every poll
+     * @param cursor the cursor returned with the previous page, or null for the first page
+     * @param limit the largest number of polls on the page
+     * @return the page of poll summaries, or null if an error occurs
+     */
+    public PollPage getPolls(PollQuery query, String cursor, int limit) {
+        try {
+            LOGGER.info("Listing polls");
+            
+            if (sessionTokens == null) {
+                LOGGER.warning("Not logged in");
+                return null;
+            }
+            
+            List<PollSummary> polls = new ArrayList<>();
+            boolean more = false;
+            for (int i = 0; i < shards.length; i++) {
+                if (isActive(i)) {
+                    PollPage page = readFromShard(i, (service, token) -> service.getPolls(token, query, cursor, limit));
+                    polls.addAll(page.getPolls());
+                    more |= page.getNextCursor() != null;
+                }
+            }
+            polls.sort(PollSummary.ORDER);
+            
+            if (polls.size() > limit) {
+                polls = polls.subList(0, limit);
+                more = true;
+            }
+            return new PollPage(polls, more ? PollPage.cursorAfter(polls.get(polls.size() - 1)) : null);
+            
+        } catch (RemoteException e) {
+            LOGGER.log(Level.SEVERE, "Remote error while listing polls", e);
+            return null;
+        } catch (SecurityException e) {
+            LOGGER.log(Level.WARNING, "Session error: " + e.getMessage(), e);
+            sessionTokens = null;
+            return null;
+        } catch (IllegalArgumentException e) {
+            LOGGER.log(Level.WARNING, "Listing error: " + e.getMessage(), e);
+            return null;
+        }
+    }
+    
+    /**
+     * Search the titles and descriptions of the polls
+     * 
+     * Every shard searches its own polls and the best hits of all shards are kept. Scores
+     * weigh words by how rare they are on each shard, so hits from different shards
+     * compare well when the shards hold similar polls.
+     * 
+     * @param query the words to look for, matching whole words or their start
+     * @param limit the largest number of polls to return
+     * @return the best matching polls, most relevant first, or null if an error occurs
+     */
+    public List<PollSearchHit> searchPolls(String query, int limit) {
+        try {
+            LOGGER.info("Searching polls for: " + query);
+            
+            if (sessionTokens == null) {
+                LOGGER.warning("Not logged in");
+                return null;
+            }
+            
+            List<PollSearchHit> hits = new ArrayList<>();
+            for (int i = 0; i < shards.length; i++) {
+                if (isActive(i)) {
+                    hits.addAll(readFromShard(i, (service, token) -> service.searchPolls(token, query, limit)));
+                }
+            }
+            hits.sort(Comparator.comparingDouble(PollSearchHit::getScore).reversed());
+            return hits.size() > limit ? new ArrayList<>(hits.subList(0, limit)) : hits;
+            
+        } catch (RemoteException e) {
+            LOGGER.log(Level.SEVERE, "Remote error while searching polls", e);
+            return null;
+        } catch (SecurityException e) {
+            LOGGER.log(Level.WARNING, "Session error: " + e.getMessage(), e);
+            sessionTokens = null;
+            return null;
+        } catch (IllegalArgumentException e) {
+            LOGGER.log(Level.WARNING, "Search error: " + e.getMessage(), e);
             return null;
         }
     }
@@ -155,19 +491,52 @@ public class VotingClient {
         try {
             LOGGER.info("Casting vote for poll " + pollId + ", option " + optionId);
             
-            if (sessionToken == null) {
+            if (sessionTokens == null) {
+                LOGGER.warning("Not logged in");
+                return false;
+            }
+            
+            int shard = shardFor(pollId);
+            return shards[shard].vote(sessionTokens[shard], pollId, optionId);
+            
+        } catch (RemoteException e) {
+            LOGGER.log(Level.SEVERE, "Remote error while voting", e);
+            return false;
+        } catch (SecurityException e) {
+            LOGGER.log(Level.WARNING, "Session error: " + e.getMessage(), e);
+            sessionTokens = null;
+            return false;
+        } catch (IllegalArgumentException e) {
+            LOGGER.log(Level.WARNING, "Voting error: " + e.getMessage(), e);
+            return false;
+        }
+    }
+    
+    /**
+     * Cast or replace a ranked ballot in a ranked-choice poll
+     * 
+     * @param pollId the ID of the poll
+     * @param optionIds the IDs of the ranked options, most preferred first
+     * @return true if the ballot is cast successfully, false otherwise
+     */
+    public boolean voteRanked(int pollId, int[] optionIds) {
+        try {
+            LOGGER.info("Casting ranked ballot for poll " + pollId);
+            
+            if (sessionTokens == null) {
                 LOGGER.warning("Not logged in");
                 return false;
             }
             
-            return votingService.vote(sessionToken, pollId, optionId);
+            int shard = shardFor(pollId);
+            return shards[shard].voteRanked(sessionTokens[shard], pollId, optionIds);
             
         } catch (RemoteException e) {
             LOGGER.log(Level.SEVERE, "Remote error while voting", e);
             return false;
         } catch (SecurityException e) {
             LOGGER.log(Level.WARNING, "Session error: " + e.getMessage(), e);
-            sessionToken = null;
+            sessionTokens = null;
             return false;
         } catch (IllegalArgumentException e) {
             LOGGER.log(Level.WARNING, "Voting error: " + e.getMessage(), e);
@@ -175,6 +544,130 @@ public class VotingClient {
         }
     }
     
+    /**
+     * Cast or replace an approval ballot in an approval poll
+     * 
+     * @param pollId the ID of the poll
+     * @param optionIds the IDs of every option the user approves of
+     * @return true if the ballot is cast successfully, false otherwise
+     */
+    public boolean voteApproval(int pollId, int[] optionIds) {
+        try {
+            LOGGER.info("Casting approval ballot for poll " + pollId);
+            
+            if (sessionTokens == null) {
+                LOGGER.warning("Not logged in");
+                return false;
+            }
+            
+            int shard = shardFor(pollId);
+            return shards[shard].voteApproval(sessionTokens[shard], pollId, optionIds);
+            
+        } catch (RemoteException e) {
+            LOGGER.log(Level.SEVERE, "Remote error while voting", e);
+            return false;
+        } catch (SecurityException e) {
+            LOGGER.log(Level.WARNING, "Session error: " + e.getMessage(), e);
+            sessionTokens = null;
+            return false;
+        } catch (IllegalArgumentException e) {
+            LOGGER.log(Level.WARNING, "Voting error: " + e.getMessage(), e);
+            return false;
+        }
+    }
+    
+    /**
+     * Get the options the user previously approved of in an approval poll
+     * 
+     * @param pollId the ID of the poll
+     * @return the IDs of the approved options, or null if the user hasn't voted or an error occurs
+     */
+    public int[] getUserApprovals(int pollId) {
+        try {
+            LOGGER.info("Getting user approvals for poll " + pollId);
+            
+            if (sessionTokens == null) {
+                LOGGER.warning("Not logged in");
+                return null;
+            }
+            
+            int shard = shardFor(pollId);
+            return shards[shard].getUserApprovals(sessionTokens[shard], pollId);
+            
+        } catch (RemoteException e) {
+            LOGGER.log(Level.SEVERE, "Remote error while getting user approvals", e);
+            return null;
+        } catch (SecurityException e) {
+            LOGGER.log(Level.WARNING, "Session error: " + e.getMessage(), e);
+            sessionTokens = null;
+            return null;
+        } catch (IllegalArgumentException e) {
+            LOGGER.log(Level.WARNING, "Poll error: " + e.getMessage(), e);
+            return null;
+        }
+    }
+    
+    /**
+     * Get the ranking the user previously submitted in a ranked-choice poll
+     * 
+     * @param pollId the ID of the poll
+     * @return the IDs of the ranked options, most preferred first, or null if the user hasn't voted or an error occurs
+     */
+    public int[] getUserRanking(int pollId) {
+        try {
+            LOGGER.info("Getting user ranking for poll " + pollId);
+            
+            if (sessionTokens == null) {
+                LOGGER.warning("Not logged in");
+                return null;
+            }
+            
+            int shard = shardFor(pollId);
+            return shards[shard].getUserRanking(sessionTokens[shard], pollId);
+            
+        } catch (RemoteException e) {
+            LOGGER.log(Level.SEVERE, "Remote error while getting user ranking", e);
+            return null;
+        } catch (SecurityException e) {
+            LOGGER.log(Level.WARNING, "Session error: " + e.getMessage(), e);
+            sessionTokens = null;
+            return null;
+        } catch (IllegalArgumentException e) {
+            LOGGER.log(Level.WARNING, "Poll error: " + e.getMessage(), e);
+            return null;
+        }
+    }
+    
+    /**
+     * Get the round-by-round instant-runoff results of a ranked-choice poll
+     * 
+     * @param pollId the ID of the poll
+     * @return the results of every round, or null if an error occurs
+     */
+    public RankedResults getRankedResults(int pollId) {
+        try {
+            LOGGER.info("Getting ranked results for poll " + pollId);
+            
+            if (sessionTokens == null) {
+                LOGGER.warning("Not logged in");
+                return null;
+            }
+            
+            return readFromShard(shardFor(pollId), (service, token) -> service.getRankedResults(token, pollId));
+            
+        } catch (RemoteException e) {
+            LOGGER.log(Level.SEVERE, "Remote error while getting ranked results", e);
+            return null;
+        } catch (SecurityException e) {
+            LOGGER.log(Level.WARNING, "Session error: " + e.getMessage(), e);
+            sessionTokens = null;
+            return null;
+        } catch (IllegalArgumentException e) {
+            LOGGER.log(Level.WARNING, "Poll error: " + e.getMessage(), e);
+            return null;
+        }
+    }
+    
     /**
      * Get the results of a specific poll
      * 
@@ -185,19 +678,188 @@ public class VotingClient {
         try {
             LOGGER.info("Getting results for poll " + pollId);
             
-            if (sessionToken == null) {
+            if (sessionTokens == null) {
                 LOGGER.warning("Not logged in");
                 return null;
             }
             
-            return votingService.getPollResults(sessionToken, pollId);
+            return readFromShard(shardFor(pollId), (service, token) -> service.getPollResults(token, pollId));
             
         } catch (RemoteException e) {
             LOGGER.log(Level.SEVERE, "Remote error while getting poll results", e);
             return null;
         } catch (SecurityException e) {
             LOGGER.log(Level.WARNING, "Session error: " + e.getMessage(), e);
-            sessionToken = null;
+            sessionTokens = null;
+            return null;
+        } catch (IllegalArgumentException e) {
+            LOGGER.log(Level.WARNING, "Poll error: " + e.getMessage(), e);
+            return null;
+        }
+    }
+    
+    /**
+     * Get the whole of a poll, with its description and options
+     * 
+     * Polls are cached once fetched, since only their state changes after they are
+     * created; the state of a cached poll is the one it had when it was first fetched.
+     * 
+     * @param pollId the ID of the poll
+     * @return the poll, or null if retrieval failed
+     */
+    public Poll getPollDetails(int pollId) {
+        Poll cached = pollDetails.get(pollId);
+        if (cached != null) {
+            return cached;
+        }
+        
+        try {
+            LOGGER.info("Getting details of poll " + pollId);
+            
+            if (sessionTokens == null) {
+                LOGGER.warning("Not logged in");
+                return null;
+            }
+            
+            Poll poll = readFromShard(shardFor(pollId), (service, token) -> service.getPollDetails(token, pollId));
+            pollDetails.put(pollId, poll);
+            return poll;
+            
+        } catch (RemoteException e) {
+            LOGGER.log(Level.SEVERE, "Remote error while getting poll details", e);
+            return null;
+        } catch (SecurityException e) {
+            LOGGER.log(Level.WARNING, "Session error: " + e.getMessage(), e);
+            sessionTokens = null;
+            return null;
+        } catch (IllegalArgumentException e) {
+            LOGGER.log(Level.WARNING, "Poll error: " + e.getMessage(), e);
+            return null;
+        }
+    }
+    
+    /**
+     * Get a poll together with the user's vote in it and its current results, in one call
+     * 
+     * @param pollId the ID of the poll
+     * @return the poll, the user's vote and the results, or null if retrieval failed
+     */
+    public PollView getPollView(int pollId) {
+        try {
+            LOGGER.info("Getting view of poll " + pollId);
+            
+            if (sessionTokens == null) {
+                LOGGER.warning("Not logged in");
+                return null;
+            }
+            
+            // Asked of the primary like the user's vote, since a replica may not have the user's latest vote yet
+            int shard = shardFor(pollId);
+            PollView view = shards[shard].getPollView(sessionTokens[shard], pollId);
+            pollDetails.put(pollId, view.getPoll());
+            return view;
+            
+        } catch (RemoteException e) {
+            LOGGER.log(Level.SEVERE, "Remote error while getting poll view", e);
+            return null;
+        } catch (SecurityException e) {
+            LOGGER.log(Level.WARNING, "Session error: " + e.getMessage(), e);
+            sessionTokens = null;
+            return null;
+        } catch (IllegalArgumentException e) {
+            LOGGER.log(Level.WARNING, "Poll error: " + e.getMessage(), e);
+            return null;
+        }
+    }
+    
+    /**
+     * Get a summary of the results of a specific poll
+     * 
+     * @param pollId the ID of the poll
+     * @return the results of the poll, or null if retrieval failed
+     */
+    public PollResults getPollResultSummary(int pollId) {
+        try {
+            LOGGER.info("Getting result summary for poll " + pollId);
+            
+            if (sessionTokens == null) {
+                LOGGER.warning("Not logged in");
+                return null;
+            }
+            
+            return readFromShard(shardFor(pollId), (service, token) -> service.getPollResultSummary(token, pollId));
+            
+        } catch (RemoteException e) {
+            LOGGER.log(Level.SEVERE, "Remote error while getting poll results", e);
+            return null;
+        } catch (SecurityException e) {
+            LOGGER.log(Level.WARNING, "Session error: " + e.getMessage(), e);
+            sessionTokens = null;
+            return null;
+        } catch (IllegalArgumentException e) {
+            LOGGER.log(Level.WARNING, "Poll error: " + e.getMessage(), e);
+            return null;
+        }
+    }
+    
+    /**
+     * Get the number of votes cast for every option of a poll over the last buckets of time
+     * 
+     * @param pollId the ID of the poll
+     * @param resolution the width of the buckets
+     * @param buckets the number of most recent buckets
+     * @return the votes per option and bucket, or null if an error occurs
+     */
+    public VoteSeries getVoteSeries(int pollId, VoteSeries.Resolution resolution, int buckets) {
+        try {
+            LOGGER.info("Getting vote series for poll " + pollId);
+            
+            if (sessionTokens == null) {
+                LOGGER.warning("Not logged in");
+                return null;
+            }
+            
+            return readFromShard(shardFor(pollId), 
+                    (service, token) -> service.getVoteSeries(token, pollId, resolution, buckets));
+            
+        } catch (RemoteException e) {
+            LOGGER.log(Level.SEVERE, "Remote error while getting vote series", e);
+            return null;
+        } catch (SecurityException e) {
+            LOGGER.log(Level.WARNING, "Session error: " + e.getMessage(), e);
+            sessionTokens = null;
+            return null;
+        } catch (IllegalArgumentException e) {
+            LOGGER.log(Level.WARNING, "Poll error: " + e.getMessage(), e);
+            return null;
+        }
+    }
+    
+    /**
+     * Get the results of a poll broken down by the value of a voter attribute
+     * 
+     * @param pollId the ID of the poll
+     * @param attribute the name of the attribute, such as "region"
+     * @return the votes of every option per attribute value, or null if an error occurs
+     */
+    public ResultBreakdown getResultBreakdown(int pollId, String attribute) {
+        try {
+            LOGGER.info("Getting result breakdown for poll " + pollId + " by " + attribute);
+            
+            if (sessionTokens == null) {
+                LOGGER.warning("Not logged in");
+                return null;
+            }
+            
+            return readFromShard(shardFor(pollId), 
+                    (service, token) -> service.getResultBreakdown(token, pollId, attribute));
+            
+        } catch (RemoteException e) {
+            LOGGER.log(Level.SEVERE, "Remote error while getting result breakdown", e);
+            return null;
+        } catch (SecurityException e) {
+            LOGGER.log(Level.WARNING, "Session error: " + e.getMessage(), e);
+            sessionTokens = null;
             return null;
         } catch (IllegalArgumentException e) {
             LOGGER.log(Level.WARNING, "Poll error: " + e.getMessage(), e);
@@ -214,15 +876,33 @@ public class VotingClient {
         try {
             LOGGER.info("Logging out");
             
-            if (sessionToken == null) {
+            if (sessionTokens == null) {
                 LOGGER.warning("Not logged in");
                 return false;
             }
             
-            boolean result = votingService.logout(sessionToken);
+            boolean result = true;
+            for (int i = 0; i < shards.length; i++) {
+                if (sessionTokens[i] == null) {
+                    continue;
+                }
+                result &= shards[i].logout(sessionTokens[i]);
+                
+                for (int j = 0; j < replicas[i].length; j++) {
+                    if (replicaTokens[i][j] != null) {
+                        try {
+                            replicas[i][j].logout(replicaTokens[i][j]);
+                        } catch (RemoteException e) {
+                            LOGGER.log(Level.WARNING, "Logout from read replica failed", e);
+                        }
+                    }
+                }
+            }
             
             if (result) {
-                sessionToken = null;
+                sessionTokens = null;
+                replicaTokens = null;
+                pollDetails.clear();
             }
             
             return result;
@@ -239,7 +919,7 @@ public class VotingClient {
      * @return true if logged in, false otherwise
      */
     public boolean isLoggedIn() {
-        return sessionToken != null;
+        return sessionTokens != null;
     }
     
     /**
@@ -252,19 +932,20 @@ public class VotingClient {
         try {
             LOGGER.info("Getting user vote for poll " + pollId);
             
-            if (sessionToken == null) {
+            if (sessionTokens == null) {
                 LOGGER.warning("Not logged in");
                 return -1;
             }
             
-            return votingService.getUserVote(sessionToken, pollId);
+            int shard = shardFor(pollId);
+            return shards[shard].getUserVote(sessionTokens[shard], pollId);
             
         } catch (RemoteException e) {
             LOGGER.log(Level.SEVERE, "Remote error while getting user vote", e);
             return -1;
         } catch (SecurityException e) {
             LOGGER.log(Level.WARNING, "Session error: " + e.getMessage(), e);
-            sessionToken = null;
+            sessionTokens = null;
             return -1;
         } catch (IllegalArgumentException e) {
             LOGGER.log(Level.WARNING, "Error getting user vote: " + e.getMessage(), e);
@@ -281,19 +962,108 @@ public class VotingClient {
         try {
             LOGGER.info("Checking if user is admin");
             
-            if (sessionToken == null) {
+            if (sessionTokens == null) {
                 LOGGER.warning("Not logged in");
                 return false;
             }
             
-            return votingService.isAdmin(sessionToken);
+            int shard = routeByUser ? homeShard : 0;
+            return shards[shard].isAdmin(sessionTokens[shard]);
             
         } catch (RemoteException e) {
             LOGGER.log(Level.SEVERE, "Remote error while checking admin status", e);
             return false;
         } catch (SecurityException e) {
             LOGGER.log(Level.WARNING, "Session error: " + e.getMessage(), e);
-            sessionToken = null;
+            sessionTokens = null;
+            return false;
+        }
+    }
+    
+    /**
+     * Set the weight that a user's ballots carry in weighted polls (admin only)
+     * 
+     * @param username the user whose weight to set
+     * @param weight the weight, between 0 and 1,000,000 with at most 6 decimals
+     * @return true if the weight was set, false otherwise
+     */
+    public boolean setVoterWeight(String username, BigDecimal weight) {
+        try {
+            LOGGER.info("Setting weight of user " + username + " to " + weight);
+            
+            if (sessionTokens == null) {
+                LOGGER.warning("Not logged in");
+                return false;
+            }
+            
+            // Users are registered on every shard, or only on their home node in an ingest group,
+            // and their weights are kept with their registration
+            boolean result = true;
+            for (int i = 0; i < shards.length; i++) {
+                if (!holdsUser(i, username)) {
+                    continue;
+                }
+                if (sessionTokens[i] == null) {
+                    LOGGER.warning("Not logged in to the node holding user " + username);
+                    result = false;
+                    continue;
+                }
+                result &= shards[i].setVoterWeight(sessionTokens[i], username, weight);
+            }
+            return result;
+            
+        } catch (RemoteException e) {
+            LOGGER.log(Level.SEVERE, "Remote error while setting voter weight", e);
+            return false;
+        } catch (SecurityException e) {
+            LOGGER.log(Level.WARNING, "Security error: " + e.getMessage(), e);
+            return false;
+        } catch (IllegalArgumentException e) {
+            LOGGER.log(Level.WARNING, "Invalid voter weight: " + e.getMessage(), e);
+            return false;
+        }
+    }
+    
+    /**
+     * Set the attributes, such as region or department, that a user's ballots are counted under (admin only)
+     * 
+     * @param username the user whose attributes to set
+     * @param attributes the attributes (name -> value), replacing the user's previous ones
+     * @return true if the attributes were set, false otherwise
+     */
+    public boolean setVoterAttributes(String username, Map<String, String> attributes) {
+        try {
+            LOGGER.info("Setting attributes of user " + username + " to " + attributes);
+            
+            if (sessionTokens == null) {
+                LOGGER.warning("Not logged in");
+                return false;
+            }
+            
+            // Users are registered on every shard, or only on their home node in an ingest group,
+            // and their attributes are kept with their registration
+            boolean result = true;
+            for (int i = 0; i < shards.length; i++) {
+                if (!holdsUser(i, username)) {
+                    continue;
+                }
+                if (sessionTokens[i] == null) {
+                    LOGGER.warning("Not logged in to the node holding user " + username);
+                    result = false;
+                    continue;
+                }
+                result &= shards[i].setVoterAttributes(sessionTokens[i], username, attributes);
+            }
+            return result;
+            
+        } catch (RemoteException e) {
+            LOGGER.log(Level.SEVERE, "Remote error while setting voter attributes", e);
+            return false;
+        } catch (SecurityException e) {
+            LOGGER.log(Level.WARNING, "Security error: " + e.getMessage(), e);
+            return false;
+        } catch (IllegalArgumentException e) {
+            LOGGER.log(Level.WARNING, "Invalid voter attributes: " + e.getMessage(), e);
             return false;
         }
     }
@@ -307,15 +1077,65 @@ public class VotingClient {
      * @return the ID of the newly created poll, or -1 if creation failed
      */
     public int createPoll(String title, String description, List<String> options) {
+        return createPoll(title, description, options, null, null);
+    }
+    
+    /**
+     * Create a new poll that opens and closes at the given dates (admin only)
+     * 
+     * @param title the title of the poll
+     * @param description the description of the poll
+     * @param options the list of options for the poll
+     * @param startDate when the poll opens, or null to open it immediately
+     * @param endDate when the poll closes, or null to close it one day after it opens
+     * @return the ID of the newly created poll, or -1 if creation failed
+     */
+    public int createPoll(String title, String description, List<String> options, Date startDate, Date endDate) {
+        return createPoll(title, description, options, startDate, endDate, PollType.PLURALITY);
+    }
+    
+    /**
+     * Create a new poll of the given type that opens and closes at the given dates (admin only)
+     * 
+     * @param title the title of the poll
+     * @param description the description of the poll
+     * @param options the list of options for the poll
+     * @param startDate when the poll opens, or null to open it immediately
+     * @param endDate when the poll closes, or null to close it one day after it opens
+     * @param type how the poll's ballots are filled in and counted
+     * @return the ID of the newly created poll, or -1 if creation failed
+     */
+    public int createPoll(String title, String description, List<String> options, Date startDate, Date endDate,
+            PollType type) {
+        return createPoll(title, description, options, startDate, endDate, type, false);
+    }
+    
+    /**
+     * Create a new poll of the given type, optionally weighted, that opens and closes at the given dates (admin only)
+     * 
+     * @param title the title of the poll
+     * @param description the description of the poll
+     * @param options the list of options for the poll
+     * @param startDate when the poll opens, or null to open it immediately
+     * @param endDate when the poll closes, or null to close it one day after it opens
+     * @param type how the poll's ballots are filled in and counted
+     * @param weighted whether ballots count with their voter's weight
+     * @return the ID of the newly created poll, or -1 if creation failed
+     */
+    public int createPoll(String title, String description, List<String> options, Date startDate, Date endDate,
+            PollType type, boolean weighted) {
         try {
             LOGGER.info("Creating poll: " + title);
             
-            if (sessionToken == null) {
+            if (sessionTokens == null) {
                 LOGGER.warning("Not logged in");
                 return -1;
             }
             
-            return votingService.createPoll(sessionToken, title, description, options);
+            int shard = routeByUser ? homeShard : nextCreateShard;
+            nextCreateShard = (nextCreateShard + 1) % shards.length;
+            return shards[shard].createPoll(sessionTokens[shard], title, description, options, startDate, endDate, type,
+                    weighted);
             
         } catch (RemoteException e) {
             LOGGER.log(Level.SEVERE, "Remote error while creating poll", e);
@@ -323,6 +1143,9 @@ public class VotingClient {
         } catch (SecurityException e) {
             LOGGER.log(Level.WARNING, "Security error: " + e.getMessage(), e);
             return -1;
+        } catch (IllegalArgumentException e) {
+            LOGGER.log(Level.WARNING, "Invalid poll: " + e.getMessage(), e);
+            return -1;
         }
     }
     
@@ -334,11 +1157,7 @@ public class VotingClient {
      * @return the name of the option, or "Unknown" if not found
      */
     public String getOptionNameById(Poll poll, int optionId) {
-        for (PollOption option : poll.getOptions()) {
-            if (option.getId() == optionId) {
-                return option.getText();
-            }
-        }
-        return "Unknown";
+        PollOption option = poll.getOptionById(optionId);
+        return option != null ? option.getText() : "Unknown";
     }
 }
@@ -0,0 +1,398 @@
+package com.votingsystem.common;
+
+import java.io.EOFException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * RMI socket factory compressing large messages on the wire
+ * 
+ * Everything written between two flushes is sent as one frame. RMI flushes once per
+ * call or reply, so a frame is a whole marshalled message: frames of at least the
+ * threshold size are deflated, while small ones such as vote calls are sent as they
+ * are to avoid paying for compression. Frames carry a type byte, so each side decides
+ * on its own whether to compress and can always read what the other side sends.
+ * 
+ * Clients can override the threshold for their own requests with the system property
+ * votingsystem.compressThreshold, e.g. -1 to never compress requests.
+ */
+public class CompressingSocketFactory extends TunedSocketFactory {
+    
+    private static final long serialVersionUID = 1L;
+    
+    private static final int FRAME_RAW = 0;
+    private static final int FRAME_DEFLATED = 1;
+    
+    // Largest frame buffered before it is sent without waiting for a flush
+    private static final int MAX_FRAME_SIZE = 1 << 20;
+    
+    // Traffic through compressing sockets of this JVM, for benchmarks
+    private static final LongAdder BYTES_BEFORE_COMPRESSION = new LongAdder();
+    private static final LongAdder BYTES_ON_WIRE = new LongAdder();
+    private static final LongAdder COMPRESSION_NANOS = new LongAdder();
+    
+    private final int threshold;
+    
+    /**
+     * Constructor for the CompressingSocketFactory
+     * 
+     * @param tcpNoDelay whether to disable Nagle's algorithm so small calls are sent immediately
+     * @param sendBufferSize the socket send buffer size in bytes, or 0 for the OS default
+     * @param receiveBufferSize the socket receive buffer size in bytes, or 0 for the OS default
+     * @param backlog the maximum queue of pending connections on the server, or 0 for the default
+     * @param threshold the smallest message size in bytes that is compressed, negative to never compress
+     */
+    public CompressingSocketFactory(boolean tcpNoDelay, int sendBufferSize, int receiveBufferSize, int backlog, 
+            int threshold) {
+        super(tcpNoDelay, sendBufferSize, receiveBufferSize, backlog);
+        this.threshold = threshold;
+    }
+    
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+        // The client side may pick its own threshold for the requests it sends
+        int clientThreshold = Integer.getInteger("votingsystem.compressThreshold", threshold);
+        Socket socket = new CompressingSocket(clientThreshold);
+        configure(socket);
+        socket.connect(new InetSocketAddress(host, port));
+        return socket;
+    }
+    
+    @Override
+    protected Socket newSocket() {
+        return new CompressingSocket(threshold);
+    }
+    
+    /**
+     * Get the number of message bytes written or read before compression or after decompression
+     * 
+     * @return the uncompressed byte count
+     */
+    public static long getBytesBeforeCompression() {
+        return BYTES_BEFORE_COMPRESSION.sum();
+    }
+    
+    /**
+     * Get the number of frame bytes written to or read from the network
+     * 
+     * @return the on-wire byte count
+     */
+    public static long getBytesOnWire() {
+        return BYTES_ON_WIRE.sum();
+    }
+    
+    /**
+     * Get the time spent compressing and decompressing frames
+     * 
+     * @return the CPU time in nanoseconds
+     */
+    public static long getCompressionNanos() {
+        return COMPRESSION_NANOS.sum();
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        return super.equals(o) && threshold == ((CompressingSocketFactory) o).threshold;
+    }
+    
+    @Override
+    public int hashCode() {
+        return 31 * super.hashCode() + threshold;
+    }
+    
+    /**
+     * Socket whose streams read and write compressed frames
+     */
+    private static class CompressingSocket extends Socket {
+        
+        private final int threshold;
+        private InputStream inputStream;
+        private OutputStream outputStream;
+        
+        CompressingSocket(int threshold) {
+            this.threshold = threshold;
+        }
+        
+        @Override
+        public synchronized InputStream getInputStream() throws IOException {
+            if (inputStream == null) {
+                inputStream = new FrameInputStream(super.getInputStream());
+            }
+            return inputStream;
+        }
+        
+        @Override
+        public synchronized OutputStream getOutputStream() throws IOException {
+            if (outputStream == null) {
+                outputStream = new FrameOutputStream(super.getOutputStream(), threshold);
+            }
+            return outputStream;
+        }
+    }
+    
+    /**
+     * Output stream buffering writes until a flush and sending them as one frame
+     * 
+     * The buffers keep room for the frame header in front of the data, so every
+     * frame goes to the socket in a single write.
+     */
+    private static class FrameOutputStream extends FilterOutputStream {
+        
+        // Type byte, length and, for deflated frames, the original length
+        private static final int RAW_HEADER_SIZE = 5;
+        private static final int DEFLATED_HEADER_SIZE = 9;
+        
+        private final int threshold;
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private byte[] buffer = new byte[8192];
+        private byte[] compressed = new byte[0];
+        private int count;
+        
+        FrameOutputStream(OutputStream out, int threshold) {
+            super(out);
+            this.threshold = threshold;
+        }
+        
+        @Override
+        public void write(int b) throws IOException {
+            ensureCapacity(1);
+            buffer[RAW_HEADER_SIZE + count++] = (byte) b;
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            // Large writes are split, so no frame is larger than the reader accepts
+            while (len > 0) {
+                int n = Math.min(len, Math.max(MAX_FRAME_SIZE - count, 1));
+                ensureCapacity(n);
+                System.arraycopy(b, off, buffer, RAW_HEADER_SIZE + count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+        
+        private void ensureCapacity(int extra) throws IOException {
+            if (count + extra > MAX_FRAME_SIZE && count > 0) {
+                writeFrame();
+            }
+            if (RAW_HEADER_SIZE + count + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, RAW_HEADER_SIZE + count + extra));
+            }
+        }
+        
+        @Override
+        public void flush() throws IOException {
+            if (count > 0) {
+                writeFrame();
+            }
+            out.flush();
+        }
+        
+        private void writeFrame() throws IOException {
+            BYTES_BEFORE_COMPRESSION.add(count);
+            
+            if (threshold >= 0 && count >= threshold) {
+                long start = System.nanoTime();
+                deflater.reset();
+                deflater.setInput(buffer, RAW_HEADER_SIZE, count);
+                deflater.finish();
+                
+                if (compressed.length < DEFLATED_HEADER_SIZE + count) {
+                    compressed = new byte[DEFLATED_HEADER_SIZE + count];
+                }
+                int compressedLength = deflater.deflate(compressed, DEFLATED_HEADER_SIZE, count);
+                COMPRESSION_NANOS.add(System.nanoTime() - start);
+                
+                // Only send the compressed form if it fit in fewer bytes than the original
+                if (deflater.finished() && compressedLength < count) {
+                    compressed[0] = FRAME_DEFLATED;
+                    putInt(compressed, 1, compressedLength);
+                    putInt(compressed, 5, count);
+                    out.write(compressed, 0, DEFLATED_HEADER_SIZE + compressedLength);
+                    BYTES_ON_WIRE.add(DEFLATED_HEADER_SIZE + compressedLength);
+                    count = 0;
+                    return;
+                }
+            }
+            
+            buffer[0] = FRAME_RAW;
+            putInt(buffer, 1, count);
+            out.write(buffer, 0, RAW_HEADER_SIZE + count);
+            BYTES_ON_WIRE.add(RAW_HEADER_SIZE + count);
+            count = 0;
+        }
+        
+        private static void putInt(byte[] b, int offset, int value) {
+            b[offset] = (byte) (value >>> 24);
+            b[offset + 1] = (byte) (value >>> 16);
+            b[offset + 2] = (byte) (value >>> 8);
+            b[offset + 3] = (byte) value;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                deflater.end();
+            }
+        }
+    }
+    
+    /**
+     * Input stream reading frames and serving their decompressed content
+     */
+    private static class FrameInputStream extends InputStream {
+        
+        private final InputStream in;
+        private final Inflater inflater = new Inflater();
+        private byte[] frame = new byte[8192];
+        private byte[] compressed = new byte[0];
+        private int position;
+        private int limit;
+        
+        FrameInputStream(InputStream in) {
+            this.in = in;
+        }
+        
+        @Override
+        public int read() throws IOException {
+            if (position == limit && !readFrame()) {
+                return -1;
+            }
+            return frame[position++] & 0xff;
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (position == limit && !readFrame()) {
+                return -1;
+            }
+            int n = Math.min(len, limit - position);
+            System.arraycopy(frame, position, b, off, n);
+            position += n;
+            return n;
+        }
+        
+        @Override
+        public int available() {
+            return limit - position;
+        }
+        
+        /**
+         * Read the next non-empty frame
+         * 
+         * @return false if the stream ended between frames
+         * @throws IOException if the stream ended inside a frame or a frame is corrupt
+         */
+        private boolean readFrame() throws IOException {
+            do {
+                int type = in.read();
+                if (type < 0) {
+                    return false;
+                }
+                int length = readLength();
+                
+                if (type == FRAME_RAW) {
+                    ensureFrameCapacity(length);
+                    readFully(frame, length);
+                    limit = length;
+                    BYTES_ON_WIRE.add(5 + length);
+                } else if (type == FRAME_DEFLATED) {
+                    int originalLength = readLength();
+                    if (compressed.length < length) {
+                        compressed = new byte[length];
+                    }
+                    readFully(compressed, length);
+                    ensureFrameCapacity(originalLength);
+                    
+                    long start = System.nanoTime();
+                    inflater.reset();
+                    inflater.setInput(compressed, 0, length);
+                    try {
+                        limit = inflater.inflate(frame, 0, originalLength);
+                    } catch (DataFormatException e) {
+                        throw new IOException("Corrupt compressed frame", e);
+                    }
+                    if (!inflater.finished() || limit != originalLength) {
+                        throw new IOException("Compressed frame does not inflate to its declared length of " + originalLength);
+                    }
+                    COMPRESSION_NANOS.add(System.nanoTime() - start);
+                    BYTES_ON_WIRE.add(9 + length);
+                } else {
+                    throw new IOException("Unknown frame type: " + type);
+                }
+                
+                BYTES_BEFORE_COMPRESSION.add(limit);
+                position = 0;
+            } while (limit == 0);
+            
+            return true;
+        }
+        
+        private void ensureFrameCapacity(int length) {
+            if (frame.length < length) {
+                frame = new byte[length];
+            }
+        }
+        
+        /**
+         * Read a frame length, refusing one the writer never produces before anything is allocated for it
+         * 
+         * @return the length
+         * @throws IOException if the stream ended or the length is out of range
+         */
+        private int readLength() throws IOException {
+            int length = readInt();
+            if (length < 0 || length > MAX_FRAME_SIZE) {
+                throw new IOException("Frame length out of range: " + length);
+            }
+            return length;
+        }
+        
+        private int readInt() throws IOException {
+            int value = 0;
+            for (int i = 0; i < 4; i++) {
+                int b = in.read();
+                if (b < 0) {
+                    throw new EOFException("Stream ended inside a frame header");
+                }
+                value = (value << 8) | b;
+            }
+            return value;
+        }
+        
+        private void readFully(byte[] b, int length) throws IOException {
+            int read = 0;
+            while (read < length) {
+                int n = in.read(b, read, length - read);
+                if (n < 0) {
+                    throw new EOFException("Stream ended inside a frame");
+                }
+                read += n;
+            }
+        }
+        
+        @Override
+        public void close() throws IOException {
+            try {
+                in.close();
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.votingsystem.common;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Consistent hash ring mapping poll IDs to the server node that owns them
+ *
+ * Each node is placed on the ring at a number of virtual positions so polls spread
+ * evenly, and nodes are identified by their index so clients and servers build the
+ * same ring regardless of how they address each other. Adding a node only moves the
+ * polls that land on its new positions.
+ */
+public class ConsistentHashRing {
+    
+    private static final int VIRTUAL_NODES_PER_NODE = 128;
+    
+    // Keeps virtual node positions from coinciding with the hashes of small poll IDs
+    private static final int NODE_SEED = 0x9E3779B9;
+    
+    private final int nodeCount;
+    private final TreeMap<Integer, Integer> ring;
+    
+    /**
+     * Build a ring for a cluster of nodes
+     *
+     * @param nodeCount the number of nodes in the cluster
+     * @throws IllegalArgumentException if the node count is not positive
+     */
+    public ConsistentHashRing(int nodeCount) throws IllegalArgumentException {
+        if (nodeCount < 1) {
+            throw new IllegalArgumentException("Node count must be positive");
+        }
+        
+        this.nodeCount = nodeCount;
+        this.ring = new TreeMap<>();
+        
+        for (int node = 0; node < nodeCount; node++) {
+            for (int replica = 0; replica < VIRTUAL_NODES_PER_NODE; replica++) {
+                ring.put(mix(((node << 16) | replica) ^ NODE_SEED), node);
+            }
+        }
+    }
+    
+    /**
+     * Get the number of nodes in the cluster
+     *
+     * @return the node count
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+    
+    /**
+     * Get the index of the node owning a poll
+     *
+     * @param pollId the ID of the poll
+     * @return the index of the owning node
+     */
+    public int ownerOf(int pollId) {
+        if (nodeCount == 1) {
+            return 0;
+        }
+        
+        Map.Entry<Integer, Integer> entry = ring.ceilingEntry(mix(pollId));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+    
+    /**
+     * Spread the bits of a value over the whole int range (MurmurHash3 finalizer)
+     *
+     * @param value the value to mix
+     * @return the mixed hash
+     */
+    private static int mix(int value) {
+        int h = value;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
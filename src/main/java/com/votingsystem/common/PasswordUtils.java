@@ -1,18 +1,57 @@
 package com.votingsystem.common;
 
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
 
 /**
  * Utility class for password hashing and verification
+ * 
+ * Clients send a SHA-256 hash of the password, which the server stores only after
+ * deriving a salted PBKDF2 key from it. The stored form is
+ * pbkdf2-sha256$&lt;iterations&gt;$&lt;salt&gt;$&lt;key&gt; with the salt and key in hex, so the
+ * iteration count can be raised later without invalidating existing hashes. Servers keep
+ * it packed into {@value #PACKED_HASH_LENGTH} bytes (iterations, salt and key) instead, see
+ * {@link #packStoredHash(String)}.
  */
 public class PasswordUtils {
     
     private static final Logger LOGGER = Logger.getLogger(PasswordUtils.class.getName());
     
+    private static final String KDF_ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final String KDF_PREFIX = "pbkdf2-sha256";
+    private static final int SALT_LENGTH = 16;
+    private static final int KEY_LENGTH = 32;
+    
+    /** Default number of PBKDF2 iterations for new stored hashes */
+    public static final int DEFAULT_ITERATIONS = 100_000;
+    
+    /** Length of a packed stored hash: a 4 byte iteration count, the salt and the key */
+    public static final int PACKED_HASH_LENGTH = 4 + SALT_LENGTH + KEY_LENGTH;
+    
+    private static final SecureRandom RANDOM = new SecureRandom();
+    
+    // Looking up a MessageDigest goes through the security providers, so each thread keeps its own
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(PasswordUtils::newSha256);
+    
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEX_VALUES = new byte[128];
+    
+    static {
+        Arrays.fill(HEX_VALUES, (byte) -1);
+        for (int i = 0; i < 16; i++) {
+            HEX_VALUES[HEX_DIGITS[i]] = (byte) i;
+            HEX_VALUES[Character.toUpperCase(HEX_DIGITS[i])] = (byte) i;
+        }
+    }
+    
     /**
      * Hash a password using SHA-256
      * 
@@ -20,16 +59,185 @@ public class PasswordUtils {
      * @return the hashed password as a hex string, or null if hashing fails
      */
     public static String hashPassword(String password) {
+        byte[] hash = digest(password);
+        return hash != null ? bytesToHex(hash) : null;
+    }
+    
+    private static byte[] digest(String password) {
+        MessageDigest digest = SHA_256.get();
+        if (digest == null) {
+            return null;
+        }
+        // digest() resets the instance, so it is ready for the next call on this thread
+        return digest.digest(password.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private static MessageDigest newSha256() {
         try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(password.getBytes(StandardCharsets.UTF_8));
-            return bytesToHex(hash);
+            return MessageDigest.getInstance("SHA-256");
         } catch (NoSuchAlgorithmException e) {
             LOGGER.log(Level.SEVERE, "Error hashing password", e);
             return null;
         }
     }
     
+    /**
+     * Derive the stored form of a password with a new random salt
+     * 
+     * This is deliberately slow, so servers should run it off the threads serving votes.
+     * 
+     * @param password the password, as hashed by the client
+     * @param iterations the number of PBKDF2 iterations
+     * @return the stored hash
+     */
+    public static String createStoredHash(String password, int iterations) {
+        byte[] salt = new byte[SALT_LENGTH];
+        RANDOM.nextBytes(salt);
+        byte[] key = deriveKey(password, salt, iterations);
+        return KDF_PREFIX + "$" + iterations + "$" + bytesToHex(salt) + "$" + bytesToHex(key);
+    }
+    
+    /**
+     * Verify a password against its stored form
+     * 
+     * The derived keys are compared in constant time, so the comparison doesn't reveal
+     * how many leading bytes matched.
+     * 
+     * @param password the password, as hashed by the client
+     * @param storedHash the stored hash created by {@link #createStoredHash(String, int)}
+     * @return true if the password matches, false otherwise or if the stored hash is malformed
+     */
+    public static boolean verifyStoredHash(String password, String storedHash) {
+        byte[] packedHash;
+        try {
+            packedHash = packStoredHash(storedHash);
+        } catch (IllegalArgumentException e) {
+            LOGGER.warning("Malformed stored password hash");
+            return false;
+        }
+        return verifyStoredHash(password, packedHash);
+    }
+    
+    /**
+     * Verify a password against its packed stored form
+     * 
+     * @param password the password, as hashed by the client
+     * @param packedHash the stored hash packed by {@link #packStoredHash(String)}
+     * @return true if the password matches, false otherwise
+     */
+    public static boolean verifyStoredHash(String password, byte[] packedHash) {
+        int iterations = ((packedHash[0] & 0xff) << 24) | ((packedHash[1] & 0xff) << 16) 
+                | ((packedHash[2] & 0xff) << 8) | (packedHash[3] & 0xff);
+        byte[] salt = Arrays.copyOfRange(packedHash, 4, 4 + SALT_LENGTH);
+        byte[] expected = Arrays.copyOfRange(packedHash, 4 + SALT_LENGTH, PACKED_HASH_LENGTH);
+        return MessageDigest.isEqual(deriveKey(password, salt, iterations), expected);
+    }
+    
+    /**
+     * Pack the text form of a stored hash into {@value #PACKED_HASH_LENGTH} bytes
+     * 
+     * @param storedHash the stored hash created by {@link #createStoredHash(String, int)}
+     * @return the iteration count, salt and key packed into one array
+     * @throws IllegalArgumentException if the stored hash is malformed
+     */
+    public static byte[] packStoredHash(String storedHash) throws IllegalArgumentException {
+        String[] parts = storedHash.split("\\$");
+        if (parts.length != 4 || !parts[0].equals(KDF_PREFIX)) {
+            throw new IllegalArgumentException("Not a " + KDF_PREFIX + " hash");
+        }
+        
+        int iterations;
+        try {
+            iterations = Integer.parseInt(parts[1]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid iteration count");
+        }
+        byte[] salt = hexToBytes(parts[2]);
+        byte[] key = hexToBytes(parts[3]);
+        if (iterations < 1 || salt.length != SALT_LENGTH || key.length != KEY_LENGTH) {
+            throw new IllegalArgumentException("Invalid iteration count, salt or key length");
+        }
+        
+        byte[] packedHash = new byte[PACKED_HASH_LENGTH];
+        packedHash[0] = (byte) (iterations >>> 24);
+        packedHash[1] = (byte) (iterations >>> 16);
+        packedHash[2] = (byte) (iterations >>> 8);
+        packedHash[3] = (byte) iterations;
+        System.arraycopy(salt, 0, packedHash, 4, SALT_LENGTH);
+        System.arraycopy(key, 0, packedHash, 4 + SALT_LENGTH, KEY_LENGTH);
+        return packedHash;
+    }
+    
+    /**
+     * Turn a packed stored hash back into its text form
+     * 
+     * @param packedHash the stored hash packed by {@link #packStoredHash(String)}
+     * @return the stored hash, as created by {@link #createStoredHash(String, int)}
+     */
+    public static String unpackStoredHash(byte[] packedHash) {
+        int iterations = ((packedHash[0] & 0xff) << 24) | ((packedHash[1] & 0xff) << 16) 
+                | ((packedHash[2] & 0xff) << 8) | (packedHash[3] & 0xff);
+        return KDF_PREFIX + "$" + iterations + "$" + bytesToHex(Arrays.copyOfRange(packedHash, 4, 4 + SALT_LENGTH)) 
+                + "$" + bytesToHex(Arrays.copyOfRange(packedHash, 4 + SALT_LENGTH, PACKED_HASH_LENGTH));
+    }
+    
+    /**
+     * Check whether a string has the form of a stored hash
+     * 
+     * @param storedHash the string to check
+     * @return true if it can be passed to {@link #verifyStoredHash(String, String)}
+     */
+    public static boolean isStoredHash(String storedHash) {
+        if (storedHash == null) {
+            return false;
+        }
+        try {
+            packStoredHash(storedHash);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+    
+    private static byte[] deriveKey(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, KEY_LENGTH * 8);
+        try {
+            return SecretKeyFactory.getInstance(KDF_ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2 is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+    
+    /**
+     * Convert a hexadecimal string to bytes
+     * 
+     * @param hex the hexadecimal string
+     * @return the bytes
+     * @throws IllegalArgumentException if the string is not valid hexadecimal
+     */
+    private static byte[] hexToBytes(String hex) throws IllegalArgumentException {
+        if (hex.length() % 2 != 0) {
+            throw new IllegalArgumentException("Odd length hex string");
+        }
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int high = hexValue(hex.charAt(2 * i));
+            int low = hexValue(hex.charAt(2 * i + 1));
+            bytes[i] = (byte) ((high << 4) | low);
+        }
+        return bytes;
+    }
+    
+    private static int hexValue(char c) throws IllegalArgumentException {
+        int value = c < HEX_VALUES.length ? HEX_VALUES[c] : -1;
+        if (value < 0) {
+            throw new IllegalArgumentException("Invalid hex string");
+        }
+        return value;
+    }
+    
     /**
      * Convert bytes to hexadecimal string
      * 
@@ -37,26 +245,35 @@ public class PasswordUtils {
      * @return the hexadecimal string
      */
     private static String bytesToHex(byte[] bytes) {
-        StringBuilder hexString = new StringBuilder();
-        for (byte b : bytes) {
-            String hex = Integer.toHexString(0xff & b);
-            if (hex.length() == 1) {
-                hexString.append('0');
-            }
-            hexString.append(hex);
+        byte[] hex = new byte[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[2 * i] = HEX_DIGITS[(bytes[i] >> 4) & 0xf];
+            hex[2 * i + 1] = HEX_DIGITS[bytes[i] & 0xf];
         }
-        return hexString.toString();
+        // The string copies the buffer, but compact strings store Latin-1 bytes as they are, so nothing is decoded
+        return new String(hex, StandardCharsets.ISO_8859_1);
     }
     
     /**
      * Verify if a password matches a hash
      * 
+     * The digests are compared in constant time, so the comparison doesn't reveal how
+     * many leading bytes matched.
+     * 
      * @param password the password to verify
      * @param hash the hash to verify against
      * @return true if the password matches the hash, false otherwise
      */
     public static boolean verifyPassword(String password, String hash) {
-        String passwordHash = hashPassword(password);
-        return passwordHash != null && passwordHash.equals(hash);
+        byte[] passwordHash = digest(password);
+        if (passwordHash == null || hash == null) {
+            return false;
+        }
+        
+        try {
+            return MessageDigest.isEqual(passwordHash, hexToBytes(hash));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
     }
 }
@@ -2,6 +2,7 @@ package com.votingsystem.common;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 
@@ -18,6 +19,15 @@ public class Poll implements Serializable {
     private List<PollOption> options;
     private Date startDate;
     private Date endDate;
+    private PollType type = PollType.PLURALITY;
+    private boolean weighted;
+    
+    // Set by the server's poll scheduler at the start and end dates
+    private volatile PollState state = PollState.SCHEDULED;
+    
+    // Position of every option in the options list by option ID, -1 for unused IDs.
+    // Built once the options are known and discarded whenever they change.
+    private transient volatile int[] optionIndex;
     
     public Poll() {
         this.options = new ArrayList<>();
@@ -63,10 +73,66 @@ public class Poll implements Serializable {
 
     public void setOptions(List<PollOption> options) {
         this.options = options;
+        this.optionIndex = null;
     }
     
     public void addOption(PollOption option) {
         this.options.add(option);
+        this.optionIndex = null;
+    }
+    
+    /**
+     * Build the index used to look up options by ID, instead of on the first lookup
+     */
+    public void indexOptions() {
+        optionIndex();
+    }
+    
+    /**
+     * Get the position of an option in the options list
+     * 
+     * @param optionId the ID of the option
+     * @return the position of the option, or -1 if the poll has no option with that ID
+     */
+    public int indexOfOption(int optionId) {
+        int[] index = optionIndex();
+        return optionId >= 0 && optionId < index.length ? index[optionId] : -1;
+    }
+    
+    /**
+     * Get an option by its ID
+     * 
+     * @param optionId the ID of the option
+     * @return the option, or null if the poll has no option with that ID
+     */
+    public PollOption getOptionById(int optionId) {
+        int position = indexOfOption(optionId);
+        return position >= 0 ? options.get(position) : null;
+    }
+    
+    private int[] optionIndex() {
+        int[] index = optionIndex;
+        if (index != null) {
+            return index;
+        }
+        
+        // Option IDs are small and dense (1 to n for polls created by the server), so an array indexed by ID is enough
+        int maxOptionId = -1;
+        for (PollOption option : options) {
+            if (option.getId() < 0) {
+                throw new IllegalStateException("Option IDs must not be negative: " + option.getId());
+            }
+            maxOptionId = Math.max(maxOptionId, option.getId());
+        }
+        
+        index = new int[maxOptionId + 1];
+        Arrays.fill(index, -1);
+        for (int i = 0; i < options.size(); i++) {
+            index[options.get(i).getId()] = i;
+        }
+        
+        optionIndex = index;
+        return index;
     }
     
     public Date getStartDate() {
@@ -85,9 +151,37 @@ public class Poll implements Serializable {
         this.endDate = endDate;
     }
     
+    public PollType getType() {
+        return type;
+    }
+    
+    public void setType(PollType type) {
+        this.type = type;
+    }
+    
+    /**
+     * Check whether every voter counts with their own weight rather than as one vote
+     * 
+     * @return true if the poll is weighted
+     */
+    public boolean isWeighted() {
+        return weighted;
+    }
+    
+    public void setWeighted(boolean weighted) {
+        this.weighted = weighted;
+    }
+    
+    public PollState getState() {
+        return state;
+    }
+    
+    public void setState(PollState state) {
+        this.state = state;
+    }
+    
     public boolean isActive() {
-        Date now = new Date();
-        return now.after(startDate) && now.before(endDate);
+        return state == PollState.OPEN;
     }
     
     @Override
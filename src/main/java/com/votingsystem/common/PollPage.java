@@ -0,0 +1,75 @@
+package com.votingsystem.common;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * One page of a poll listing, with the cursor to ask for the next page
+ *
+ * A page holds summaries of its polls; the rest of a poll is fetched when it is needed.
+ * Listings are ordered by end date, then by poll ID. A cursor names the last poll of a
+ * page in that order, so it stays valid while polls are created and works on every
+ * shard alike.
+ */
+public final class PollPage implements Serializable {
+    
+    private static final long serialVersionUID = 1L;
+    
+    /** Order of the polls in a listing: soonest end date first, then by poll ID */
+    public static final Comparator<Poll> ORDER = Comparator.comparingLong((Poll poll) -> poll.getEndDate().getTime())
+            .thenComparingInt(Poll::getId);
+    
+    private final List<PollSummary> polls;
+    private final String nextCursor;
+    
+    /**
+     * Constructor for the PollPage
+     *
+     * @param polls the summaries of the polls on the page, in listing order
+     * @param nextCursor the cursor of the next page, or null if this is the last page
+     */
+    public PollPage(List<PollSummary> polls, String nextCursor) {
+        this.polls = Collections.unmodifiableList(new ArrayList<>(polls));
+        this.nextCursor = nextCursor;
+    }
+    
+    public List<PollSummary> getPolls() {
+        return polls;
+    }
+    
+    /**
+     * Get the cursor of the next page
+     *
+     * @return the cursor, or null if there are no more polls
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+    
+    /**
+     * Get the cursor of the page that continues after a poll
+     *
+     * @param poll the last poll seen
+     * @return the cursor of the polls after it in listing order
+     */
+    public static String cursorAfter(Poll poll) {
+        return cursorAfter(poll.getEndDate().getTime(), poll.getId());
+    }
+    
+    /**
+     * Get the cursor of the page that continues after a listed poll
+     *
+     * @param poll the summary of the last poll seen
+     * @return the cursor of the polls after it in listing order
+     */
+    public static String cursorAfter(PollSummary poll) {
+        return cursorAfter(poll.getEndDate().getTime(), poll.getId());
+    }
+    
+    private static String cursorAfter(long endMillis, int pollId) {
+        return endMillis + ":" + pollId;
+    }
+}
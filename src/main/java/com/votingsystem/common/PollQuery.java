@@ -0,0 +1,50 @@
+package com.votingsystem.common;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * Filter of a poll listing
+ *
+ * Every criterion is optional; a listing returns the polls that match all criteria that are set.
+ */
+public final class PollQuery implements Serializable {
+    
+    private static final long serialVersionUID = 1L;
+    
+    private final boolean activeOnly;
+    private final String titlePrefix;
+    private final Date endsAfter;
+    private final Date endsBefore;
+    
+    /**
+     * Constructor for the PollQuery
+     *
+     * @param activeOnly whether to list only the polls open for voting
+     * @param titlePrefix text that words of the title must start with, ignoring case, or null for any title
+     * @param endsAfter the time after which the polls must end, or null for no lower bound
+     * @param endsBefore the time before which the polls must end, or null for no upper bound
+     */
+    public PollQuery(boolean activeOnly, String titlePrefix, Date endsAfter, Date endsBefore) {
+        this.activeOnly = activeOnly;
+        this.titlePrefix = titlePrefix;
+        this.endsAfter = endsAfter;
+        this.endsBefore = endsBefore;
+    }
+    
+    public boolean isActiveOnly() {
+        return activeOnly;
+    }
+    
+    public String getTitlePrefix() {
+        return titlePrefix;
+    }
+    
+    public Date getEndsAfter() {
+        return endsAfter;
+    }
+    
+    public Date getEndsBefore() {
+        return endsBefore;
+    }
+}
@@ -0,0 +1,312 @@
+package com.votingsystem.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable summary of a poll's results: the votes and share of every option, the total and the winner
+ *
+ * Every option has both a headcount and a weighted total. Weights are fixed-point
+ * numbers in units of 1/{@value #WEIGHT_SCALE}, so weighted totals add up exactly. In
+ * polls that are not weighted every voter weighs 1, and the winner is always the option
+ * with the highest weighted total.
+ *
+ * Everything is computed once when the summary is created. The results of a closed poll
+ * never change, so the server keeps a single summary per closed poll and hands out the
+ * same instance to every caller. Summaries are sent over the wire in a compact encoding
+ * that is also computed once, so serving a closed poll's results costs a copy of a
+ * small byte array no matter how many clients ask for them.
+ */
+public final class PollResults implements Serializable {
+    
+    private static final long serialVersionUID = 1L;
+    
+    /** Fixed-point scale of voter weights: a weight of 1 is stored as this many units */
+    public static final long WEIGHT_SCALE = 1_000_000L;
+    
+    private final int pollId;
+    private final boolean closed;
+    private final boolean weighted;
+    private final int[] optionIds;
+    private final int[] votes;
+    private final long[] weightedVotes;
+    private final double[] percentages;
+    private final double[] weightedPercentages;
+    private final int totalVotes;
+    private final long weightedTotal;
+    private final List<Integer> winnerIds;
+    private final Map<Integer, Integer> counts;
+    
+    // Encoded form sent over the wire, computed the first time the summary is sent
+    private transient volatile byte[] encoded;
+    
+    /**
+     * Constructor for the PollResults
+     *
+     * @param poll the poll the results belong to
+     * @param counts the number of votes of every option (optionId -> count)
+     * @param closed whether the poll is closed and the results are final
+     */
+    public PollResults(Poll poll, Map<Integer, Integer> counts, boolean closed) {
+        this(poll, counts, null, closed);
+    }
+    
+    /**
+     * Constructor for the PollResults of a weighted poll
+     *
+     * @param poll the poll the results belong to
+     * @param counts the number of votes of every option (optionId -> count)
+     * @param weightedCounts the fixed-point weighted total of every option (optionId -> weight),
+     *                       or null if every voter weighs 1
+     * @param closed whether the poll is closed and the results are final
+     */
+    public PollResults(Poll poll, Map<Integer, Integer> counts, Map<Integer, Long> weightedCounts, boolean closed) {
+        this(poll.getId(), closed, weightedCounts != null, optionIdsOf(poll), votesOf(poll, counts),
+                weightedVotesOf(poll, counts, weightedCounts));
+    }
+    
+    private PollResults(int pollId, boolean closed, boolean weighted, int[] optionIds, int[] votes,
+            long[] weightedVotes) {
+        this.pollId = pollId;
+        this.closed = closed;
+        this.weighted = weighted;
+        this.optionIds = optionIds;
+        this.votes = votes;
+        this.weightedVotes = weightedVotes;
+        
+        int total = 0;
+        long totalWeight = 0;
+        long maxWeight = 0;
+        for (int i = 0; i < votes.length; i++) {
+            total += votes[i];
+            totalWeight += weightedVotes[i];
+            maxWeight = Math.max(maxWeight, weightedVotes[i]);
+        }
+        this.totalVotes = total;
+        this.weightedTotal = totalWeight;
+        
+        this.percentages = new double[votes.length];
+        this.weightedPercentages = new double[votes.length];
+        List<Integer> winners = new ArrayList<>();
+        Map<Integer, Integer> countMap = new LinkedHashMap<>();
+        for (int i = 0; i < votes.length; i++) {
+            percentages[i] = total > 0 ? (votes[i] * 100.0) / total : 0;
+            weightedPercentages[i] = totalWeight > 0 ? (weightedVotes[i] * 100.0) / totalWeight : 0;
+            if (totalWeight > 0 && weightedVotes[i] == maxWeight) {
+                winners.add(optionIds[i]);
+            }
+            countMap.put(optionIds[i], votes[i]);
+        }
+        this.winnerIds = Collections.unmodifiableList(winners);
+        this.counts = Collections.unmodifiableMap(countMap);
+    }
+    
+    private static int[] optionIdsOf(Poll poll) {
+        List<PollOption> options = poll.getOptions();
+        int[] ids = new int[options.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = options.get(i).getId();
+        }
+        return ids;
+    }
+    
+    private static int[] votesOf(Poll poll, Map<Integer, Integer> counts) {
+        List<PollOption> options = poll.getOptions();
+        int[] votes = new int[options.size()];
+        for (int i = 0; i < votes.length; i++) {
+            Integer count = counts != null ? counts.get(options.get(i).getId()) : null;
+            votes[i] = count != null ? count : 0;
+        }
+        return votes;
+    }
+    
+    private static long[] weightedVotesOf(Poll poll, Map<Integer, Integer> counts, Map<Integer, Long> weightedCounts) {
+        List<PollOption> options = poll.getOptions();
+        long[] weights = new long[options.size()];
+        for (int i = 0; i < weights.length; i++) {
+            int optionId = options.get(i).getId();
+            if (weightedCounts != null) {
+                Long weight = weightedCounts.get(optionId);
+                weights[i] = weight != null ? weight : 0;
+            } else {
+                Integer count = counts != null ? counts.get(optionId) : null;
+                weights[i] = count != null ? count * WEIGHT_SCALE : 0;
+            }
+        }
+        return weights;
+    }
+    
+    public int getPollId() {
+        return pollId;
+    }
+    
+    /**
+     * Check whether the poll is closed, in which case the results are final
+     *
+     * @return true if the results will not change anymore
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+    
+    /**
+     * Check whether voters carry individual weights in this poll
+     *
+     * @return true if the weighted totals may differ from the headcounts
+     */
+    public boolean isWeighted() {
+        return weighted;
+    }
+    
+    public int getTotalVotes() {
+        return totalVotes;
+    }
+    
+    /**
+     * Get the sum of the weights of every vote
+     *
+     * @return the total weight in units of 1/{@value #WEIGHT_SCALE}
+     */
+    public long getWeightedTotal() {
+        return weightedTotal;
+    }
+    
+    /**
+     * Get the number of options, which are in the same order as in the poll
+     *
+     * @return the number of options
+     */
+    public int getOptionCount() {
+        return optionIds.length;
+    }
+    
+    public int getOptionId(int index) {
+        return optionIds[index];
+    }
+    
+    public int getVotes(int index) {
+        return votes[index];
+    }
+    
+    public double getPercentage(int index) {
+        return percentages[index];
+    }
+    
+    /**
+     * Get the weighted total of an option
+     *
+     * @param index the position of the option in the poll
+     * @return the sum of the weights of the option's voters in units of 1/{@value #WEIGHT_SCALE}
+     */
+    public long getWeightedVotes(int index) {
+        return weightedVotes[index];
+    }
+    
+    public double getWeightedPercentage(int index) {
+        return weightedPercentages[index];
+    }
+    
+    /**
+     * Get the options with the highest weighted total, which are the ones with the most votes unless the poll is weighted
+     *
+     * @return the IDs of the leading options, more than one if they are tied, or an empty list if nobody voted
+     */
+    public List<Integer> getWinnerIds() {
+        return winnerIds;
+    }
+    
+    /**
+     * Get the number of votes of every option
+     *
+     * @return an unmodifiable map of option ID to vote count, in the poll's option order
+     */
+    public Map<Integer, Integer> getCounts() {
+        return counts;
+    }
+    
+    private Object writeReplace() {
+        byte[] data = encoded;
+        if (data == null) {
+            data = encode();
+            encoded = data;
+        }
+        return new Encoded(data);
+    }
+    
+    private void readObject(ObjectInputStream in) throws InvalidObjectException {
+        throw new InvalidObjectException("PollResults are sent in their encoded form");
+    }
+    
+    private byte[] encode() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(10 + 16 * optionIds.length);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(pollId);
+            out.writeBoolean(closed);
+            out.writeBoolean(weighted);
+            out.writeInt(optionIds.length);
+            for (int i = 0; i < optionIds.length; i++) {
+                out.writeInt(optionIds[i]);
+                out.writeInt(votes[i]);
+                out.writeLong(weightedVotes[i]);
+            }
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    private static PollResults decode(byte[] data) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        int pollId = in.readInt();
+        boolean closed = in.readBoolean();
+        boolean weighted = in.readBoolean();
+        int optionCount = in.readInt();
+        if (optionCount < 0 || optionCount > data.length / 16) {
+            throw new InvalidObjectException("Invalid option count: " + optionCount);
+        }
+        int[] optionIds = new int[optionCount];
+        int[] votes = new int[optionCount];
+        long[] weightedVotes = new long[optionCount];
+        for (int i = 0; i < optionCount; i++) {
+            optionIds[i] = in.readInt();
+            votes[i] = in.readInt();
+            weightedVotes[i] = in.readLong();
+        }
+        
+        PollResults results = new PollResults(pollId, closed, weighted, optionIds, votes, weightedVotes);
+        results.encoded = data;
+        return results;
+    }
+    
+    /**
+     * Serialized form of a PollResults
+     */
+    private static final class Encoded implements Serializable {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final byte[] data;
+        
+        Encoded(byte[] data) {
+            this.data = data;
+        }
+        
+        private Object readResolve() throws IOException {
+            return decode(data);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.votingsystem.common;
+
+import java.io.Serializable;
+
+/**
+ * A poll found by a search, with how well it matches the query
+ */
+public final class PollSearchHit implements Serializable {
+    
+    private static final long serialVersionUID = 1L;
+    
+    private final Poll poll;
+    private final double score;
+    
+    /**
+     * Constructor for the PollSearchHit
+     *
+     * @param poll the poll found
+     * @param score the relevance of the poll, higher is better
+     */
+    public PollSearchHit(Poll poll, double score) {
+        this.poll = poll;
+        this.score = score;
+    }
+    
+    public Poll getPoll() {
+        return poll;
+    }
+    
+    /**
+     * Get the relevance of the poll to the query
+     *
+     * Scores rise with how often and where the query's words occur and fall with how many
+     * polls contain them; they are only comparable between hits of the same query.
+     *
+     * @return the score, higher is better
+     */
+    public double getScore() {
+        return score;
+    }
+}
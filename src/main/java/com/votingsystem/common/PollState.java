@@ -0,0 +1,16 @@
+package com.votingsystem.common;
+
+/**
+ * Lifecycle state of a poll, moved forward by the server at the poll's start and end dates
+ */
+public enum PollState {
+    
+    /** The poll has been created but its start date has not been reached yet */
+    SCHEDULED,
+    
+    /** The poll is accepting votes */
+    OPEN,
+    
+    /** The poll's end date has passed and its results are final */
+    CLOSED
+}
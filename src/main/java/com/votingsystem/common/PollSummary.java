@@ -0,0 +1,67 @@
+package com.votingsystem.common;
+
+import java.io.Serializable;
+import java.util.Comparator;
+import java.util.Date;
+
+/**
+ * The few fields of a poll that a listing shows, without its description and options
+ *
+ * The rest of a poll is fetched when it is selected, so listing a catalog of elections
+ * with long option lists only moves the titles.
+ */
+public final class PollSummary implements Serializable {
+    
+    private static final long serialVersionUID = 1L;
+    
+    /** Order of the summaries in a listing, the same as {@link PollPage#ORDER} */
+    public static final Comparator<PollSummary> ORDER = Comparator.comparingLong((PollSummary poll) -> poll.getEndDate().getTime())
+            .thenComparingInt(PollSummary::getId);
+    
+    private final int id;
+    private final String title;
+    private final PollState state;
+    private final Date endDate;
+    
+    /**
+     * Constructor for the PollSummary
+     *
+     * @param poll the poll to summarize
+     */
+    public PollSummary(Poll poll) {
+        this.id = poll.getId();
+        this.title = poll.getTitle();
+        this.state = poll.getState();
+        this.endDate = new Date(poll.getEndDate().getTime());
+    }
+    
+    public int getId() {
+        return id;
+    }
+    
+    public String getTitle() {
+        return title;
+    }
+    
+    /**
+     * Get the state of the poll when it was listed
+     *
+     * @return the state
+     */
+    public PollState getState() {
+        return state;
+    }
+    
+    public boolean isActive() {
+        return state == PollState.OPEN;
+    }
+    
+    public Date getEndDate() {
+        return endDate;
+    }
+    
+    @Override
+    public String toString() {
+        return title;
+    }
+}
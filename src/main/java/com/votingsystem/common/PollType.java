@@ -0,0 +1,16 @@
+package com.votingsystem.common;
+
+/**
+ * How voters fill in the ballot of a poll and how the ballots are counted
+ */
+public enum PollType {
+    
+    /** Every voter picks a single option and the option with the most votes wins */
+    PLURALITY,
+    
+    /** Voters rank the options in order of preference and the winner is found by instant runoff */
+    RANKED,
+    
+    /** Voters approve any number of options and the option approved by the most voters wins */
+    APPROVAL
+}
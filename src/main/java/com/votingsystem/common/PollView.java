@@ -0,0 +1,78 @@
+package com.votingsystem.common;
+
+import java.io.Serializable;
+
+/**
+ * Everything a client shows for a selected poll: the poll, the caller's vote and the results
+ *
+ * The vote, the results and the ballots of a ranked-choice poll's instant-runoff count
+ * are read together under the poll's lock, so the results always include the vote shown.
+ */
+public final class PollView implements Serializable {
+    
+    private static final long serialVersionUID = 1L;
+    
+    private final Poll poll;
+    private final int userVote;
+    private final int[] userChoices;
+    private final PollResults results;
+    private final RankedResults rankedResults;
+    
+    /**
+     * Constructor for the PollView
+     *
+     * @param poll the poll
+     * @param userVote the ID of the option the caller voted for, or -1 if they haven't voted
+     * @param userChoices the caller's ranking or approved options, or null
+     * @param results the current results of the poll
+     * @param rankedResults the instant-runoff count of a ranked-choice poll, or null
+     */
+    public PollView(Poll poll, int userVote, int[] userChoices, PollResults results, RankedResults rankedResults) {
+        this.poll = poll;
+        this.userVote = userVote;
+        this.userChoices = userChoices;
+        this.results = results;
+        this.rankedResults = rankedResults;
+    }
+    
+    public Poll getPoll() {
+        return poll;
+    }
+    
+    /**
+     * Get the option the caller voted for, their first choice or first approved option
+     * in ranked-choice and approval polls
+     *
+     * @return the option ID, or -1 if the caller hasn't voted in this poll
+     */
+    public int getUserVote() {
+        return userVote;
+    }
+    
+    public boolean hasVoted() {
+        return userVote != -1;
+    }
+    
+    /**
+     * Get the caller's whole ballot in a ranked-choice or approval poll
+     *
+     * @return the IDs of the ranked options, most preferred first, or of the approved
+     *         options, or null if the caller hasn't voted or the poll takes single votes
+     */
+    public int[] getUserChoices() {
+        return userChoices;
+    }
+    
+    public PollResults getResults() {
+        return results;
+    }
+    
+    /**
+     * Get the instant-runoff count of a ranked-choice poll
+     *
+     * @return the rounds of the count, or null if the poll isn't ranked-choice
+     */
+    public RankedResults getRankedResults() {
+        return rankedResults;
+    }
+}
@@ -0,0 +1,124 @@
+package com.votingsystem.common;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Round-by-round results of an instant-runoff count of a ranked-choice poll
+ *
+ * Every round counts each ballot for its highest-ranked option still in the race. If an
+ * option holds a majority of the ballots that are not exhausted, it wins; otherwise the
+ * option with the fewest votes is eliminated and its ballots move to their next choice.
+ */
+public final class RankedResults implements Serializable {
+    
+    private static final long serialVersionUID = 1L;
+    
+    private final int pollId;
+    private final int[] optionIds;
+    private final List<Round> rounds;
+    private final int winnerId;
+    private final int ballotCount;
+    private final int distinctRankings;
+    
+    /**
+     * Constructor for the RankedResults
+     *
+     * @param pollId the ID of the poll
+     * @param optionIds the IDs of the poll's options, in the poll's order
+     * @param rounds the rounds of the count, in order
+     * @param winnerId the ID of the winning option, or -1 if nobody voted
+     * @param ballotCount the number of ballots counted
+     * @param distinctRankings the number of different rankings among the ballots
+     */
+    public RankedResults(int pollId, int[] optionIds, List<Round> rounds, int winnerId, int ballotCount,
+            int distinctRankings) {
+        this.pollId = pollId;
+        this.optionIds = optionIds.clone();
+        this.rounds = Collections.unmodifiableList(rounds);
+        this.winnerId = winnerId;
+        this.ballotCount = ballotCount;
+        this.distinctRankings = distinctRankings;
+    }
+    
+    public int getPollId() {
+        return pollId;
+    }
+    
+    public int getOptionCount() {
+        return optionIds.length;
+    }
+    
+    public int getOptionId(int index) {
+        return optionIds[index];
+    }
+    
+    public List<Round> getRounds() {
+        return rounds;
+    }
+    
+    /**
+     * Get the winner of the count
+     *
+     * @return the ID of the winning option, or -1 if nobody voted
+     */
+    public int getWinnerId() {
+        return winnerId;
+    }
+    
+    public int getBallotCount() {
+        return ballotCount;
+    }
+    
+    public int getDistinctRankings() {
+        return distinctRankings;
+    }
+    
+    /**
+     * A single round of the count
+     */
+    public static final class Round implements Serializable {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final int[] votes;
+        private final int exhaustedBallots;
+        private final int eliminatedId;
+        
+        /**
+         * Constructor for the Round
+         *
+         * @param votes the votes of every option by position in the poll, -1 for options eliminated in earlier rounds
+         * @param exhaustedBallots the number of ballots with no option left in the race
+         * @param eliminatedId the ID of the option eliminated after this round, or -1 if the round decided the count
+         */
+        public Round(int[] votes, int exhaustedBallots, int eliminatedId) {
+            this.votes = votes.clone();
+            this.exhaustedBallots = exhaustedBallots;
+            this.eliminatedId = eliminatedId;
+        }
+        
+        /**
+         * Get the votes of an option in this round
+         *
+         * @param index the position of the option in the poll
+         * @return the number of ballots counted for the option, or -1 if it was eliminated in an earlier round
+         */
+        public int getVotes(int index) {
+            return votes[index];
+        }
+        
+        public boolean isContinuing(int index) {
+            return votes[index] >= 0;
+        }
+        
+        public int getExhaustedBallots() {
+            return exhaustedBallots;
+        }
+        
+        public int getEliminatedId() {
+            return eliminatedId;
+        }
+    }
+}
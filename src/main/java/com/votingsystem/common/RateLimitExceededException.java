@@ -0,0 +1,14 @@
+package com.votingsystem.common;
+
+/**
+ * Thrown when the server rejects a call because the calling user or host sent more
+ * calls than its rate limit allows; the call was not executed
+ */
+public class RateLimitExceededException extends IllegalStateException {
+    
+    private static final long serialVersionUID = 1L;
+    
+    public RateLimitExceededException(String message) {
+        super(message);
+    }
+}
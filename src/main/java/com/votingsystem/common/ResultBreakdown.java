@@ -0,0 +1,80 @@
+package com.votingsystem.common;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Results of a poll broken down by the value of one voter attribute, such as region or department
+ *
+ * Segment 0 holds the voters who don't have the attribute.
+ */
+public final class ResultBreakdown implements Serializable {
+    
+    private static final long serialVersionUID = 1L;
+    
+    private final int pollId;
+    private final String attribute;
+    private final List<String> segments;
+    private final int[] optionIds;
+    private final int[][] votes;
+    
+    /**
+     * Constructor for the ResultBreakdown
+     *
+     * @param pollId the ID of the poll
+     * @param attribute the name of the attribute
+     * @param segments the values of the attribute by segment, null for voters without the attribute first
+     * @param optionIds the IDs of the poll's options, in the poll's order
+     * @param votes the votes of every option by position in the poll, per segment
+     */
+    public ResultBreakdown(int pollId, String attribute, List<String> segments, int[] optionIds, int[][] votes) {
+        this.pollId = pollId;
+        this.attribute = attribute;
+        this.segments = Collections.unmodifiableList(new ArrayList<>(segments));
+        this.optionIds = optionIds;
+        this.votes = votes;
+    }
+    
+    public int getPollId() {
+        return pollId;
+    }
+    
+    public String getAttribute() {
+        return attribute;
+    }
+    
+    public int getSegmentCount() {
+        return segments.size();
+    }
+    
+    /**
+     * Get the attribute value of a segment
+     *
+     * @param segment the index of the segment
+     * @return the value, or null for the voters without the attribute
+     */
+    public String getSegment(int segment) {
+        return segments.get(segment);
+    }
+    
+    public int getOptionCount() {
+        return optionIds.length;
+    }
+    
+    public int getOptionId(int index) {
+        return optionIds[index];
+    }
+    
+    /**
+     * Get the votes for an option in a segment
+     *
+     * @param segment the index of the segment
+     * @param index the position of the option in the poll
+     * @return the number of votes for the option from voters in the segment
+     */
+    public int getVotes(int segment, int index) {
+        return votes[segment][index];
+    }
+}
@@ -0,0 +1,14 @@
+package com.votingsystem.common;
+
+/**
+ * Thrown when the server rejects a call because it is already handling as many
+ * calls as it allows; the call was not executed and may be retried later
+ */
+public class ServerOverloadedException extends IllegalStateException {
+    
+    private static final long serialVersionUID = 1L;
+    
+    public ServerOverloadedException(String message) {
+        super(message);
+    }
+}
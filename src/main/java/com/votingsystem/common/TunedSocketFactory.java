@@ -0,0 +1,119 @@
+package com.votingsystem.common;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.rmi.server.RMIClientSocketFactory;
+import java.rmi.server.RMIServerSocketFactory;
+import java.util.Objects;
+
+/**
+ * RMI socket factory applying TCP options to both ends of every connection
+ *
+ * The server exports its remote objects with this factory, and RMI ships the factory
+ * to clients inside the stubs, so client sockets get the same options without any
+ * client configuration. RMI reuses connections to an endpoint only when the socket
+ * factories are equal, which is why equality is based on the options.
+ */
+public class TunedSocketFactory implements RMIClientSocketFactory, RMIServerSocketFactory, Serializable {
+    
+    private static final long serialVersionUID = 1L;
+    
+    private final boolean tcpNoDelay;
+    private final int sendBufferSize;
+    private final int receiveBufferSize;
+    private final int backlog;
+    
+    /**
+     * Constructor for the TunedSocketFactory
+     *
+     * @param tcpNoDelay whether to disable Nagle's algorithm so small calls are sent immediately
+     * @param sendBufferSize the socket send buffer size in bytes, or 0 for the OS default
+     * @param receiveBufferSize the socket receive buffer size in bytes, or 0 for the OS default
+     * @param backlog the maximum queue of pending connections on the server, or 0 for the default
+     */
+    public TunedSocketFactory(boolean tcpNoDelay, int sendBufferSize, int receiveBufferSize, int backlog) {
+        this.tcpNoDelay = tcpNoDelay;
+        this.sendBufferSize = sendBufferSize;
+        this.receiveBufferSize = receiveBufferSize;
+        this.backlog = backlog;
+    }
+    
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+        Socket socket = newSocket();
+        configure(socket);
+        socket.connect(new InetSocketAddress(host, port));
+        return socket;
+    }
+    
+    @Override
+    public ServerSocket createServerSocket(int port) throws IOException {
+        ServerSocket serverSocket = new ServerSocket() {
+            @Override
+            public Socket accept() throws IOException {
+                Socket socket = newSocket();
+                implAccept(socket);
+                configure(socket);
+                return socket;
+            }
+        };
+        
+        // The receive buffer must be sized before binding to allow a large TCP window
+        if (receiveBufferSize > 0) {
+            serverSocket.setReceiveBufferSize(receiveBufferSize);
+        }
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(port), backlog);
+        return serverSocket;
+    }
+    
+    /**
+     * Create an unconnected socket, overridden by factories wrapping the socket streams
+     *
+     * @return a new unconnected socket
+     * @throws IOException if the socket cannot be created
+     */
+    protected Socket newSocket() throws IOException {
+        return new Socket();
+    }
+    
+    /**
+     * Apply the TCP options to a socket
+     *
+     * @param socket the socket to configure
+     * @throws IOException if an option cannot be set
+     */
+    protected void configure(Socket socket) throws IOException {
+        socket.setTcpNoDelay(tcpNoDelay);
+        socket.setKeepAlive(true);
+        if (sendBufferSize > 0) {
+            socket.setSendBufferSize(sendBufferSize);
+        }
+        if (receiveBufferSize > 0) {
+            socket.setReceiveBufferSize(receiveBufferSize);
+        }
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        TunedSocketFactory that = (TunedSocketFactory) o;
+        return tcpNoDelay == that.tcpNoDelay
+                && sendBufferSize == that.sendBufferSize
+                && receiveBufferSize == that.receiveBufferSize
+                && backlog == that.backlog;
+    }
+    
+    @Override
+    public int hashCode() {
+        return Objects.hash(getClass(), tcpNoDelay, sendBufferSize, receiveBufferSize, backlog);
+    }
+}
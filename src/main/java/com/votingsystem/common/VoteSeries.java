@@ -0,0 +1,125 @@
+package com.votingsystem.common;
+
+import java.io.Serializable;
+
+/**
+ * Votes cast in a poll over time, counted per option in consecutive time buckets of fixed width
+ *
+ * Buckets are aligned to multiples of their width since the epoch. The last bucket is
+ * the one that holds the time the series was taken, so it may still be filling up.
+ */
+public final class VoteSeries implements Serializable {
+    
+    private static final long serialVersionUID = 1L;
+    
+    /**
+     * Width of the buckets of a series, and how far back the server keeps them
+     */
+    public enum Resolution {
+        
+        /** One bucket per second for the last hour */
+        SECOND(1000L, 3600),
+        
+        /** One bucket per minute for the last day */
+        MINUTE(60 * 1000L, 1440);
+        
+        private final long bucketMillis;
+        private final int bucketCount;
+        
+        Resolution(long bucketMillis, int bucketCount) {
+            this.bucketMillis = bucketMillis;
+            this.bucketCount = bucketCount;
+        }
+        
+        public long getBucketMillis() {
+            return bucketMillis;
+        }
+        
+        /**
+         * Get the number of buckets the server keeps at this resolution
+         *
+         * @return the number of the most recent buckets available
+         */
+        public int getBucketCount() {
+            return bucketCount;
+        }
+    }
+    
+    private final int pollId;
+    private final Resolution resolution;
+    private final long startMillis;
+    private final int[] optionIds;
+    private final int[][] votes;
+    
+    /**
+     * Constructor for the VoteSeries
+     *
+     * @param pollId the ID of the poll
+     * @param resolution the width of the buckets
+     * @param startMillis the start time of the first bucket
+     * @param optionIds the IDs of the poll's options, in the poll's order
+     * @param votes the votes of every option by position in the poll, per bucket in time order
+     */
+    public VoteSeries(int pollId, Resolution resolution, long startMillis, int[] optionIds, int[][] votes) {
+        this.pollId = pollId;
+        this.resolution = resolution;
+        this.startMillis = startMillis;
+        this.optionIds = optionIds;
+        this.votes = votes;
+    }
+    
+    public int getPollId() {
+        return pollId;
+    }
+    
+    public Resolution getResolution() {
+        return resolution;
+    }
+    
+    public int getBucketCount() {
+        return votes.length;
+    }
+    
+    /**
+     * Get the start time of a bucket
+     *
+     * @param bucket the index of the bucket, 0 being the oldest
+     * @return the time in milliseconds since the epoch
+     */
+    public long getBucketStart(int bucket) {
+        return startMillis + bucket * resolution.getBucketMillis();
+    }
+    
+    public int getOptionCount() {
+        return optionIds.length;
+    }
+    
+    public int getOptionId(int index) {
+        return optionIds[index];
+    }
+    
+    /**
+     * Get the votes for an option in a bucket
+     *
+     * @param bucket the index of the bucket, 0 being the oldest
+     * @param index the position of the option in the poll
+     * @return the number of votes cast for the option during the bucket
+     */
+    public int getVotes(int bucket, int index) {
+        return votes[bucket][index];
+    }
+    
+    /**
+     * Get the votes for all options in a bucket
+     *
+     * @param bucket the index of the bucket, 0 being the oldest
+     * @return the number of votes cast during the bucket
+     */
+    public int getTotalVotes(int bucket) {
+        int total = 0;
+        for (int count : votes[bucket]) {
+            total += count;
+        }
+        return total;
+    }
+}
@@ -1,7 +1,9 @@
 package com.votingsystem.common;
 
+import java.math.BigDecimal;
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 
@@ -21,6 +23,20 @@ public interface VotingService extends Remote {
      */
     boolean signup(String username, String password) throws RemoteException, SecurityException;
     
+    /**
+     * Remove an account that was just registered, when registering it on another shard failed
+     * 
+     * Only an account that has not voted yet can be removed, by presenting its password.
+     * 
+     * @param username the username
+     * @param password the password the account was registered with
+     * @return true if the account was removed
+     * @throws RemoteException if a remote communication error occurs
+     * @throws SecurityException if the username or password is wrong
+     * @throws IllegalStateException if the user has already voted
+     */
+    boolean cancelSignup(String username, String password) throws RemoteException, SecurityException, IllegalStateException;
+    
     /**
      * Authenticate a user with username and password
      * 
@@ -42,6 +58,68 @@ public interface VotingService extends Remote {
      */
     List<Poll> getAvailablePolls(String sessionToken) throws RemoteException, SecurityException;
     
+    /**
+     * List one page of the polls matching a filter, ordered by end date
+     * 
+     * @param sessionToken the session token obtained from login
+     * @param query the filter, or null to list every poll
+     * @param cursor the cursor returned with the previous page, or null for the first page
+     * @param limit the largest number of polls on the page, at most 500
+     * @return the summaries of the polls on the page and the cursor of the next one
+     * @throws RemoteException if a remote communication error occurs
+     * @throws SecurityException if the session token is invalid
+     * @throws IllegalArgumentException if the cursor is malformed or the limit is out of range
+     */
+    PollPage getPolls(String sessionToken, PollQuery query, String cursor, int limit) 
+            throws RemoteException, SecurityException, IllegalArgumentException;
+    
+    /**
+     * Search the titles and descriptions of the polls
+     * 
+     * A poll matches if it contains every word of the query, either as a whole word or as
+     * the start of a longer one. Words in the title count more than words in the
+     * description, and rare words more than common ones.
+     * 
+     * @param sessionToken the session token obtained from login
+     * @param query the words to look for
+     * @param limit the largest number of polls to return, at most 100
+     * @return the best matching polls with their scores, most relevant first
+     * @throws RemoteException if a remote communication error occurs
+     * @throws SecurityException if the session token is invalid
+     * @throws IllegalArgumentException if the query is null or the limit is out of range
+     */
+    List<PollSearchHit> searchPolls(String sessionToken, String query, int limit) 
+            throws RemoteException, SecurityException, IllegalArgumentException;
+    
+    /**
+     * Get the whole of a poll, including its description and options
+     * 
+     * @param sessionToken the session token obtained from login
+     * @param pollId the ID of the poll
+     * @return the poll
+     * @throws RemoteException if a remote communication error occurs
+     * @throws SecurityException if the session token is invalid
+     * @throws IllegalArgumentException if the poll does not exist
+     */
+    Poll getPollDetails(String sessionToken, int pollId) 
+            throws RemoteException, SecurityException, IllegalArgumentException;
+    
+    /**
+     * Get a poll together with the caller's vote in it and its current results
+     * 
+     * The vote and the results are read at the same moment, so a client can show a
+     * selected poll with one call instead of asking for each of them separately.
+     * 
+     * @param sessionToken the session token obtained from login
+     * @param pollId the ID of the poll
+     * @return the poll, the caller's vote and the results
+     * @throws RemoteException if a remote communication error occurs
+     * @throws SecurityException if the session token is invalid
+     * @throws IllegalArgumentException if the poll does not exist
+     */
+    PollView getPollView(String sessionToken, int pollId) 
+            throws RemoteException, SecurityException, IllegalArgumentException;
+    
     /**
      * Cast a vote for a specific poll or change an existing vote
      * 
@@ -56,6 +134,21 @@ public interface VotingService extends Remote {
     boolean vote(String sessionToken, int pollId, int optionId) 
             throws RemoteException, SecurityException, IllegalArgumentException;
     
+    /**
+     * Cast a ranked ballot in a ranked-choice poll or replace an existing one
+     * 
+     * @param sessionToken the session token obtained from login
+     * @param pollId the ID of the poll
+     * @param optionIds the IDs of the ranked options, most preferred first; options may be left unranked
+     * @return true if the ballot was successfully cast or replaced, false otherwise
+     * @throws RemoteException if a remote communication error occurs
+     * @throws SecurityException if the session token is invalid
+     * @throws IllegalArgumentException if the poll doesn't exist or isn't ranked-choice, or the ranking
+     *         is empty, names an option twice or names an option that doesn't exist
+     */
+    boolean voteRanked(String sessionToken, int pollId, int[] optionIds) 
+            throws RemoteException, SecurityException, IllegalArgumentException;
+    
     /**
      * Get the results of a specific poll
      * 
@@ -69,6 +162,52 @@ public interface VotingService extends Remote {
     Map<Integer, Integer> getPollResults(String sessionToken, int pollId) 
             throws RemoteException, SecurityException, IllegalArgumentException;
     
+    /**
+     * Get a summary of the results of a specific poll, with the share of every option and the winner
+     * 
+     * @param sessionToken the session token obtained from login
+     * @param pollId the ID of the poll
+     * @return the results of the poll, final if the poll is closed
+     * @throws RemoteException if a remote communication error occurs
+     * @throws SecurityException if the session token is invalid
+     * @throws IllegalArgumentException if the poll doesn't exist
+     */
+    PollResults getPollResultSummary(String sessionToken, int pollId) 
+            throws RemoteException, SecurityException, IllegalArgumentException;
+    
+    /**
+     * Get the number of votes cast for every option of a poll over the last buckets of time
+     * 
+     * Changed votes count as a vote for the new option at the time of the change.
+     * Series are only kept while a poll is open, so a closed poll's series has no votes.
+     * 
+     * @param sessionToken the session token obtained from login
+     * @param pollId the ID of the poll
+     * @param resolution the width of the buckets
+     * @param buckets the number of most recent buckets, at most resolution.getBucketCount()
+     * @return the votes per option and bucket, oldest bucket first
+     * @throws RemoteException if a remote communication error occurs
+     * @throws SecurityException if the session token is invalid
+     * @throws IllegalArgumentException if the poll doesn't exist, has more options than series are kept for,
+     *         or the number of buckets is out of range
+     */
+    VoteSeries getVoteSeries(String sessionToken, int pollId, VoteSeries.Resolution resolution, int buckets) 
+            throws RemoteException, SecurityException, IllegalArgumentException;
+    
+    /**
+     * Get the results of a poll broken down by the value of a voter attribute
+     * 
+     * @param sessionToken the session token obtained from login
+     * @param pollId the ID of the poll
+     * @param attribute the name of the attribute, such as "region"
+     * @return the votes of every option per attribute value
+     * @throws RemoteException if a remote communication error occurs
+     * @throws SecurityException if the session token is invalid
+     * @throws IllegalArgumentException if the poll doesn't exist or no voter has the attribute
+     */
+    ResultBreakdown getResultBreakdown(String sessionToken, int pollId, String attribute) 
+            throws RemoteException, SecurityException, IllegalArgumentException;
+    
     /**
      * Logout the user
      * 
@@ -91,6 +230,60 @@ public interface VotingService extends Remote {
     int getUserVote(String sessionToken, int pollId) 
             throws RemoteException, SecurityException, IllegalArgumentException;
     
+    /**
+     * Cast an approval ballot in an approval poll or replace an existing one
+     * 
+     * @param sessionToken the session token obtained from login
+     * @param pollId the ID of the poll
+     * @param optionIds the IDs of every option the user approves of
+     * @return true if the ballot was successfully cast or replaced, false otherwise
+     * @throws RemoteException if a remote communication error occurs
+     * @throws SecurityException if the session token is invalid
+     * @throws IllegalArgumentException if the poll doesn't exist or isn't an approval poll, or no
+     *         option or an option that doesn't exist is approved
+     */
+    boolean voteApproval(String sessionToken, int pollId, int[] optionIds) 
+            throws RemoteException, SecurityException, IllegalArgumentException;
+    
+    /**
+     * Get the options that the user previously approved of in an approval poll
+     * 
+     * @param sessionToken the session token obtained from login
+     * @param pollId the ID of the poll
+     * @return the IDs of the approved options, or null if the user hasn't voted in this poll
+     * @throws RemoteException if a remote communication error occurs
+     * @throws SecurityException if the session token is invalid
+     * @throws IllegalArgumentException if the poll doesn't exist or isn't an approval poll
+     */
+    int[] getUserApprovals(String sessionToken, int pollId) 
+            throws RemoteException, SecurityException, IllegalArgumentException;
+    
+    /**
+     * Get the ranking that the user previously submitted in a ranked-choice poll
+     * 
+     * @param sessionToken the session token obtained from login
+     * @param pollId the ID of the poll
+     * @return the IDs of the ranked options, most preferred first, or null if the user hasn't voted in this poll
+     * @throws RemoteException if a remote communication error occurs
+     * @throws SecurityException if the session token is invalid
+     * @throws IllegalArgumentException if the poll doesn't exist or isn't ranked-choice
+     */
+    int[] getUserRanking(String sessionToken, int pollId) 
+            throws RemoteException, SecurityException, IllegalArgumentException;
+    
+    /**
+     * Count a ranked-choice poll by instant runoff
+     * 
+     * @param sessionToken the session token obtained from login
+     * @param pollId the ID of the poll
+     * @return the results of every round of the count
+     * @throws RemoteException if a remote communication error occurs
+     * @throws SecurityException if the session token is invalid
+     * @throws IllegalArgumentException if the poll doesn't exist or isn't ranked-choice
+     */
+    RankedResults getRankedResults(String sessionToken, int pollId) 
+            throws RemoteException, SecurityException, IllegalArgumentException;
+    
     /**
      * Check if the user is an admin
      * 
@@ -114,4 +307,112 @@ public interface VotingService extends Remote {
      */
     int createPoll(String sessionToken, String title, String description, List<String> options) 
             throws RemoteException, SecurityException;
+    
+    /**
+     * Create a new poll that opens and closes at the given dates (admin only)
+     * 
+     * @param sessionToken the session token obtained from login
+     * @param title the title of the poll
+     * @param description the description of the poll
+     * @param options the list of options for the poll
+     * @param startDate when the poll opens, or null to open it immediately
+     * @param endDate when the poll closes, or null to close it one day after it opens
+     * @return the ID of the newly created poll, or -1 if creation failed
+     * @throws RemoteException if a remote communication error occurs
+     * @throws SecurityException if the session token is invalid or the user is not an admin
+     * @throws IllegalArgumentException if the end date is not after the start date or has already passed
+     */
+    int createPoll(String sessionToken, String title, String description, List<String> options, 
+            Date startDate, Date endDate) throws RemoteException, SecurityException, IllegalArgumentException;
+    
+    /**
+     * Create a new poll of the given type that opens and closes at the given dates (admin only)
+     * 
+     * @param sessionToken the session token obtained from login
+     * @param title the title of the poll
+     * @param description the description of the poll
+     * @param options the list of options for the poll
+     * @param startDate when the poll opens, or null to open it immediately
+     * @param endDate when the poll closes, or null to close it one day after it opens
+     * @param type how the poll's ballots are filled in and counted
+     * @return the ID of the newly created poll, or -1 if creation failed
+     * @throws RemoteException if a remote communication error occurs
+     * @throws SecurityException if the session token is invalid or the user is not an admin
+     * @throws IllegalArgumentException if the end date is not after the start date or has already passed
+     */
+    int createPoll(String sessionToken, String title, String description, List<String> options, 
+            Date startDate, Date endDate, PollType type) 
+            throws RemoteException, SecurityException, IllegalArgumentException;
+    
+    /**
+     * Create a new poll of the given type in which every voter may count with their own weight (admin only)
+     * 
+     * @param sessionToken the session token obtained from login
+     * @param title the title of the poll
+     * @param description the description of the poll
+     * @param options the list of options for the poll
+     * @param startDate when the poll opens, or null to open it immediately
+     * @param endDate when the poll closes, or null to close it one day after it opens
+     * @param type how the poll's ballots are filled in and counted
+     * @param weighted whether ballots count with their voter's weight, see {@link #setVoterWeight}
+     * @return the ID of the newly created poll, or -1 if creation failed
+     * @throws RemoteException if a remote communication error occurs
+     * @throws SecurityException if the session token is invalid or the user is not an admin
+     * @throws IllegalArgumentException if the dates are invalid or a ranked-choice poll is to be weighted
+     */
+    int createPoll(String sessionToken, String title, String description, List<String> options, 
+            Date startDate, Date endDate, PollType type, boolean weighted) 
+            throws RemoteException, SecurityException, IllegalArgumentException;
+    
+    /**
+     * Set the weight that a user's ballots carry in weighted polls (admin only)
+     * 
+     * The weight applies to ballots cast from now on; ballots already cast keep the
+     * weight they were cast with until the user changes them. Users start with a weight of 1.
+     * 
+     * @param sessionToken the session token obtained from login
+     * @param username the user whose weight to set
+     * @param weight the weight, between 0 and 1,000,000 with at most 6 decimals
+     * @return true if the weight was set
+     * @throws RemoteException if a remote communication error occurs
+     * @throws SecurityException if the session token is invalid or the user is not an admin
+     * @throws IllegalArgumentException if the user doesn't exist or the weight is out of range
+     */
+    boolean setVoterWeight(String sessionToken, String username, BigDecimal weight) 
+            throws RemoteException, SecurityException, IllegalArgumentException;
+    
+    /**
+     * Set the attributes, such as region or department, that results can be broken down by (admin only)
+     * 
+     * The attributes replace the ones the user had before and apply to ballots cast from
+     * now on. There can be at most 4 attribute names with 63 values each.
+     * 
+     * @param sessionToken the session token obtained from login
+     * @param username the user whose attributes to set
+     * @param attributes the attributes (name -> value); attributes left out or empty are cleared
+     * @return true if the attributes were set
+     * @throws RemoteException if a remote communication error occurs
+     * @throws SecurityException if the session token is invalid or the user is not an admin
+     * @throws IllegalArgumentException if the user doesn't exist or there would be too many attributes or values
+     */
+    boolean setVoterAttributes(String sessionToken, String username, Map<String, String> attributes) 
+            throws RemoteException, SecurityException, IllegalArgumentException;
+    
+    /**
+     * Register a batch of users in one call (admin only)
+     * 
+     * The passwords are given in their stored form (see PasswordUtils.createStoredHash), so
+     * the key derivation is done by the importing tool rather than the server. Users that
+     * already exist are skipped.
+     * 
+     * @param sessionToken the session token obtained from login
+     * @param usernames the usernames to register
+     * @param storedHashes the stored password hashes, in the same order as the usernames
+     * @return the number of users registered
+     * @throws RemoteException if a remote communication error occurs
+     * @throws SecurityException if the session token is invalid or the user is not an admin
+     * @throws IllegalArgumentException if the arrays differ in length or a stored hash is malformed
+     */
+    int importUsers(String sessionToken, String[] usernames, String[] storedHashes) 
+            throws RemoteException, SecurityException, IllegalArgumentException;
 }
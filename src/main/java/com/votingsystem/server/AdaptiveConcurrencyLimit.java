@@ -0,0 +1,133 @@
+package com.votingsystem.server;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrency limit that adapts to the latency measured on the server
+ *
+ * Follows the gradient approach: call latencies are averaged over short windows, and a
+ * slow moving average of the windows is taken as the latency of the server under its
+ * usual load. While the latest window stays close to that baseline the limit grows by
+ * a small queue allowance, and once calls start waiting (on locks, the CPU or the vote
+ * log) the window average rises above the baseline and the limit shrinks in proportion.
+ * Comparing averages rather than single calls keeps the limit stable when cheap and
+ * expensive methods are mixed.
+ *
+ * Every completed call reports a sample, so sampling takes no lock: samples go into
+ * striped adders, and the call that closes a window by moving its start forward with a
+ * compare-and-set is the only one to read them and recompute the limit. A sample that
+ * races the close may count towards either window.
+ */
+public class AdaptiveConcurrencyLimit {
+    
+    // A window closes after this time, once it holds enough samples to be meaningful
+    private static final long WINDOW_NANOS = 100_000_000L;
+    private static final int MIN_WINDOW_SAMPLES = 10;
+    
+    // Weight of a window in the baseline, which then spans about a minute of windows
+    private static final double BASELINE_WEIGHT = 1.0 / 600;
+    
+    // How much slower than the baseline calls may get before the limit shrinks
+    private static final double TOLERANCE = 1.5;
+    
+    // Weight of a new target when smoothing the limit
+    private static final double SMOOTHING = 0.2;
+    
+    private final int minLimit;
+    private final int maxLimit;
+    
+    private volatile double limit;
+    
+    // Only written by the call that closed the last window
+    private volatile double baselineLatencyNanos;
+    
+    // Current window
+    private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+    private final LongAdder windowLatencyNanos = new LongAdder();
+    private final LongAdder windowSamples = new LongAdder();
+    private final LongAccumulator windowMaxInFlight = new LongAccumulator(Math::max, 0);
+    
+    /**
+     * Constructor for the AdaptiveConcurrencyLimit
+     *
+     * @param initialLimit the limit to start with
+     * @param minLimit the lowest the limit may fall to
+     * @param maxLimit the highest the limit may grow to
+     */
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+    
+    /**
+     * Get the current limit
+     *
+     * @return the number of calls allowed to run at the same time
+     */
+    public int getLimit() {
+        return (int) limit;
+    }
+    
+    /**
+     * Get the latency currently taken as the latency of the server under its usual load
+     *
+     * @return the baseline latency in nanoseconds, or 0 if no call has completed yet
+     */
+    public long getBaselineLatencyNanos() {
+        return (long) baselineLatencyNanos;
+    }
+    
+    /**
+     * Update the limit with the latency of a completed call
+     *
+     * @param latencyNanos the time the call spent on the server
+     * @param inFlight the number of calls running when the call started
+     */
+    public void onSample(long latencyNanos, int inFlight) {
+        windowLatencyNanos.add(latencyNanos);
+        windowSamples.increment();
+        windowMaxInFlight.accumulate(inFlight);
+        
+        // The clock is checked first, so the adders are only summed once the window is due to close
+        long now = System.nanoTime();
+        long start = windowStart.get();
+        if (now - start < WINDOW_NANOS || windowSamples.sum() < MIN_WINDOW_SAMPLES 
+                || !windowStart.compareAndSet(start, now)) {
+            return;
+        }
+        
+        long samples = windowSamples.sumThenReset();
+        double shortLatencyNanos = Math.max(1.0, (double) windowLatencyNanos.sumThenReset() / Math.max(1, samples));
+        long maxInFlight = windowMaxInFlight.getThenReset();
+        
+        double baseline = baselineLatencyNanos;
+        if (baseline == 0) {
+            baselineLatencyNanos = shortLatencyNanos;
+            return;
+        }
+        baseline += (shortLatencyNanos - baseline) * BASELINE_WEIGHT;
+        
+        // After a long overload the baseline itself has crept up, so let it recover faster
+        if (baseline > shortLatencyNanos * 2) {
+            baseline *= 0.95;
+        }
+        baselineLatencyNanos = baseline;
+        
+        double current = limit;
+        
+        // Don't grow the limit while the server isn't using most of it
+        if (maxInFlight < current / 2) {
+            return;
+        }
+        
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * baseline / shortLatencyNanos));
+        double queueAllowance = Math.sqrt(current);
+        double target = current * gradient + queueAllowance;
+        double updated = current * (1 - SMOOTHING) + target * SMOOTHING;
+        
+        limit = Math.max(minLimit, Math.min(maxLimit, updated));
+    }
+}
@@ -0,0 +1,294 @@
+package com.votingsystem.server;
+
+import com.votingsystem.common.RateLimitExceededException;
+import com.votingsystem.common.ServerOverloadedException;
+import com.votingsystem.common.VotingService;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.rmi.server.RemoteServer;
+import java.rmi.server.ServerNotActiveException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.ObjectName;
+
+/**
+ * Admission control placed in front of the voting service
+ *
+ * Every remote call first passes a token bucket for the calling host and one for the
+ * calling user, then takes one of a fixed number
+ * of concurrency slots. Calls over a limit are rejected immediately with a
+ * {@link RateLimitExceededException} or {@link ServerOverloadedException} instead of
+ * queueing behind the calls already running, which keeps latency bounded for the
+ * calls that are admitted.
+ *
+ * The user is the owner of the session a call presents, or the username passed to
+ * signup, cancelSignup and login. A call with an unknown or expired session gets no bucket of its
+ * own, since the service refuses it anyway, so made-up tokens can't fill the bucket
+ * map; the host's bucket still limits it.
+ *
+ * The concurrency limit is either fixed or adapted to the latency measured on the
+ * server (see {@link AdaptiveConcurrencyLimit}). Each method has a {@link Priority}
+ * that decides which share of the limit its calls may use, so that as the server
+ * fills up, calls such as getPollResults are shed while votes are still admitted.
+ */
+public class AdmissionControl implements InvocationHandler, AdmissionControlMXBean {
+    
+    private static final Logger LOGGER = Logger.getLogger(AdmissionControl.class.getName());
+    private static final String MBEAN_NAME = "com.votingsystem:type=AdmissionControl";
+    
+    private static final int MIN_ADAPTIVE_LIMIT = 4;
+    private static final int DEFAULT_MAX_ADAPTIVE_LIMIT = 1000;
+    
+    /**
+     * Priority of a method, deciding which share of the concurrency limit its calls may use
+     */
+    public enum Priority {
+        HIGH(1.0),
+        NORMAL(0.9),
+        LOW(0.6);
+        
+        private final double share;
+        
+        Priority(double share) {
+            this.share = share;
+        }
+    }
+    
+    /**
+     * Get the priority of a method when none is configured
+     *
+     * Votes and the calls needed to cast them come first, while reads that clients can
+     * repeat later are shed first.
+     *
+     * @param methodName the name of a VotingService method
+     * @return the default priority of the method
+     */
+    public static Priority defaultPriority(String methodName) {
+        switch (methodName) {
+            case "vote":
+            case "voteRanked":
+            case "voteApproval":
+            case "login":
+            case "signup":
+            case "cancelSignup":
+            case "logout":
+                return Priority.HIGH;
+            case "getAvailablePolls":
+            case "getPolls":
+            case "searchPolls":
+            case "getPollDetails":
+            case "getPollView":
+            case "getPollResults":
+            case "getPollResultSummary":
+            case "getRankedResults":
+            case "getVoteSeries":
+            case "getResultBreakdown":
+                return Priority.LOW;
+            default:
+                return Priority.NORMAL;
+        }
+    }
+    
+    private final VotingServiceImpl target;
+    private final int maxConcurrentCalls;
+    private final double userRate;
+    private final int userBurst;
+    private final double hostRate;
+    private final int hostBurst;
+    private final Map<String, Priority> methodPriorities;
+    private final AdaptiveConcurrencyLimit adaptiveLimit;
+    
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder shedCalls = new LongAdder();
+    private final LongAdder rateLimitedCalls = new LongAdder();
+    private final Map<String, TokenBucket> userBuckets = new ConcurrentHashMap<>();
+    private final Map<String, TokenBucket> hostBuckets = new ConcurrentHashMap<>();
+    
+    /**
+     * Constructor for the AdmissionControl
+     *
+     * @param target the service admitted calls are passed to
+     * @param config the server configuration holding the limits
+     */
+    public AdmissionControl(VotingServiceImpl target, ServerConfig config) {
+        this.target = target;
+        this.maxConcurrentCalls = config.getMaxConcurrentCalls();
+        this.userRate = config.getUserRate();
+        this.userBurst = config.getUserBurst();
+        this.hostRate = config.getHostRate();
+        this.hostBurst = config.getHostBurst();
+        this.methodPriorities = config.getMethodPriorities();
+        
+        if (config.getAdaptiveConcurrency() > 0) {
+            int maxLimit = maxConcurrentCalls > 0 ? maxConcurrentCalls : DEFAULT_MAX_ADAPTIVE_LIMIT;
+            this.adaptiveLimit = new AdaptiveConcurrencyLimit(config.getAdaptiveConcurrency(), 
+                    MIN_ADAPTIVE_LIMIT, maxLimit);
+        } else {
+            this.adaptiveLimit = null;
+        }
+        
+        startBucketCleanupThread();
+        registerMBean();
+    }
+    
+    /**
+     * Wrap a service so every call goes through admission control
+     *
+     * @param target the service to protect
+     * @param config the server configuration holding the limits
+     * @return a proxy implementing the voting service
+     */
+    public static VotingService wrap(VotingServiceImpl target, ServerConfig config) {
+        return (VotingService) Proxy.newProxyInstance(VotingService.class.getClassLoader(),
+                new Class<?>[] { VotingService.class }, new AdmissionControl(target, config));
+    }
+    
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            return invokeTarget(method, args);
+        }
+        
+        long now = System.nanoTime();
+        
+        if (hostRate > 0) {
+            String host = clientHost();
+            if (host != null && !acquire(hostBuckets, host, hostRate, hostBurst, now)) {
+                rateLimitedCalls.increment();
+                LOGGER.warning("Rate limit exceeded for host: " + host);
+                throw new RateLimitExceededException("Too many requests from this host, please slow down");
+            }
+        }
+        
+        if (userRate > 0 && args != null && args.length > 0 && args[0] instanceof String) {
+            // The first argument is the session token, or the username for signup and login
+            String caller = isAuthentication(method) ? (String) args[0] : target.sessionOwner((String) args[0]);
+            if (caller != null && !acquire(userBuckets, caller, userRate, userBurst, now)) {
+                rateLimitedCalls.increment();
+                LOGGER.warning("Rate limit exceeded for user: " + caller);
+                throw new RateLimitExceededException("Too many requests, please slow down");
+            }
+        }
+        
+        int limit = getConcurrencyLimit();
+        if (limit <= 0) {
+            return invokeTarget(method, args);
+        }
+        
+        Priority priority = methodPriorities.getOrDefault(method.getName(), defaultPriority(method.getName()));
+        int allowed = Math.max(1, (int) (limit * priority.share));
+        
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= allowed) {
+                shedCalls.increment();
+                LOGGER.warning("Server overloaded, rejecting call to " + method.getName());
+                throw new ServerOverloadedException("Server is busy, please try again shortly");
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        
+        long start = System.nanoTime();
+        try {
+            return invokeTarget(method, args);
+        } finally {
+            inFlight.decrementAndGet();
+            if (adaptiveLimit != null) {
+                adaptiveLimit.onSample(System.nanoTime() - start, current + 1);
+            }
+        }
+    }
+    
+    @Override
+    public int getConcurrencyLimit() {
+        return adaptiveLimit != null ? adaptiveLimit.getLimit() : maxConcurrentCalls;
+    }
+    
+    @Override
+    public int getInFlightCalls() {
+        return inFlight.get();
+    }
+    
+    @Override
+    public long getBaselineLatencyMicros() {
+        return adaptiveLimit != null ? adaptiveLimit.getBaselineLatencyNanos() / 1000 : 0;
+    }
+    
+    @Override
+    public long getShedCalls() {
+        return shedCalls.sum();
+    }
+    
+    @Override
+    public long getRateLimitedCalls() {
+        return rateLimitedCalls.sum();
+    }
+    
+    private Object invokeTarget(Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+    
+    private static boolean isAuthentication(Method method) {
+        return method.getName().equals("login") || method.getName().equals("signup") 
+                || method.getName().equals("cancelSignup");
+    }
+    
+    private static boolean acquire(Map<String, TokenBucket> buckets, String key, double rate, int burst, long now) {
+        TokenBucket bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = buckets.computeIfAbsent(key, k -> new TokenBucket(rate, burst));
+        }
+        return bucket.tryAcquire(now);
+    }
+    
+    private static String clientHost() {
+        try {
+            return RemoteServer.getClientHost();
+        } catch (ServerNotActiveException e) {
+            // Not called through RMI
+            return null;
+        }
+    }
+    
+    private void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(MBEAN_NAME));
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Could not register admission control metrics", e);
+        }
+    }
+    
+    private void startBucketCleanupThread() {
+        Thread cleanupThread = new Thread(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(60 * 1000); // Check every minute
+                    
+                    // A full bucket behaves exactly like a new one, so it can be dropped
+                    long now = System.nanoTime();
+                    userBuckets.values().removeIf(bucket -> bucket.isFull(now));
+                    hostBuckets.values().removeIf(bucket -> bucket.isFull(now));
+                } catch (InterruptedException e) {
+                    LOGGER.log(Level.SEVERE, "Rate limit cleanup thread interrupted", e);
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        });
+        
+        cleanupThread.setDaemon(true);
+        cleanupThread.start();
+    }
+}
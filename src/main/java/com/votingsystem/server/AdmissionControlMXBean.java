@@ -0,0 +1,44 @@
+package com.votingsystem.server;
+
+/**
+ * Management interface of {@link AdmissionControl}, registered with the platform MBean
+ * server as com.votingsystem:type=AdmissionControl so the limits can be watched with
+ * JConsole or any other JMX client
+ */
+public interface AdmissionControlMXBean {
+    
+    /**
+     * Get the number of calls allowed to run at the same time
+     *
+     * @return the current concurrency limit, or 0 if there is no limit
+     */
+    int getConcurrencyLimit();
+    
+    /**
+     * Get the number of calls currently running
+     *
+     * @return the number of calls in flight
+     */
+    int getInFlightCalls();
+    
+    /**
+     * Get the latency the adaptive limit takes as the latency of the server under its usual load
+     *
+     * @return the baseline latency in microseconds, or 0 if the limit is not adaptive
+     */
+    long getBaselineLatencyMicros();
+    
+    /**
+     * Get the number of calls rejected because the server was at its concurrency limit
+     *
+     * @return the number of shed calls since startup
+     */
+    long getShedCalls();
+    
+    /**
+     * Get the number of calls rejected by a rate limit
+     *
+     * @return the number of rate limited calls since startup
+     */
+    long getRateLimitedCalls();
+}
@@ -0,0 +1,129 @@
+package com.votingsystem.server;
+
+import com.votingsystem.common.Poll;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ballots of an approval poll, where every voter approves any number of options
+ *
+ * A ballot is a bitset over the positions of the poll's options, stored as an array of
+ * 64-bit words: a single word, 8 bytes of ballot data, for polls with up to 64 options.
+ * When a voter changes their ballot only the bits that differ between the old and the
+ * new ballot touch the counters. Every option has its own LongAdder, so reading the
+ * totals never waits for voters.
+ */
+public class ApprovalTally {
+    
+    private final Poll poll;
+    private final int optionCount;
+    
+    // Ballot of every voter (username -> approved option positions as a bitset)
+    private final Map<String, long[]> ballots = new ConcurrentHashMap<>();
+    
+    // Number of approvals of every option by position
+    private final LongAdder[] approvals;
+    
+    /**
+     * Constructor for the ApprovalTally
+     *
+     * @param poll the approval poll
+     */
+    public ApprovalTally(Poll poll) {
+        this.poll = poll;
+        this.optionCount = poll.getOptions().size();
+        this.approvals = new LongAdder[optionCount];
+        for (int i = 0; i < optionCount; i++) {
+            approvals[i] = new LongAdder();
+        }
+    }
+    
+    /**
+     * Build a ballot from the positions of the approved options
+     *
+     * @param positions the positions in the poll of the approved options
+     * @return the ballot as a bitset
+     */
+    public long[] ballotOf(int[] positions) {
+        long[] bits = new long[(optionCount + 63) >>> 6];
+        for (int position : positions) {
+            bits[position >>> 6] |= 1L << position;
+        }
+        return bits;
+    }
+    
+    /**
+     * Record a voter's ballot, replacing the one they cast before
+     *
+     * Callers serialize ballots of the same poll, so the counters and the logs of the
+     * changes stay in step.
+     *
+     * @param username the voter
+     * @param bits the approved option positions as a bitset, see {@link #ballotOf(int[])}
+     * @return the voter's previous ballot, or null if this is their first ballot
+     */
+    public long[] cast(String username, long[] bits) {
+        long[] previous = ballots.put(username, bits);
+        
+        for (int w = 0; w < bits.length; w++) {
+            long old = previous != null ? previous[w] : 0;
+            
+            for (long added = bits[w] & ~old; added != 0; added &= added - 1) {
+                approvals[(w << 6) + Long.numberOfTrailingZeros(added)].increment();
+            }
+            for (long removed = old & ~bits[w]; removed != 0; removed &= removed - 1) {
+                approvals[(w << 6) + Long.numberOfTrailingZeros(removed)].decrement();
+            }
+        }
+        return previous;
+    }
+    
+    /**
+     * Get a voter's ballot
+     *
+     * @param username the voter
+     * @return the approved option positions as a bitset, or null if the voter has not voted
+     */
+    public long[] getBallot(String username) {
+        return ballots.get(username);
+    }
+    
+    /**
+     * List the options approved on one ballot but not on another
+     *
+     * @param bits a ballot
+     * @param minus the ballot whose approvals are left out, or null to list every approval of the first
+     * @return the positions of the options, in ascending order
+     */
+    public static int[] difference(long[] bits, long[] minus) {
+        int count = 0;
+        for (int w = 0; w < bits.length; w++) {
+            count += Long.bitCount(bits[w] & ~(minus != null ? minus[w] : 0));
+        }
+        
+        int[] positions = new int[count];
+        int i = 0;
+        for (int w = 0; w < bits.length; w++) {
+            for (long word = bits[w] & ~(minus != null ? minus[w] : 0); word != 0; word &= word - 1) {
+                positions[i++] = (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+        }
+        return positions;
+    }
+    
+    /**
+     * Get the number of approvals of every option
+     *
+     * @return a map of option IDs to approval counts
+     */
+    public Map<Integer, Integer> totals() {
+        Map<Integer, Integer> totals = new HashMap<>();
+        for (int i = 0; i < optionCount; i++) {
+            totals.put(poll.getOptions().get(i).getId(), (int) approvals[i].sum());
+        }
+        return totals;
+    }
+}
@@ -0,0 +1,144 @@
+package com.votingsystem.server;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Short-lived cache of credentials that recently passed the slow password check
+ *
+ * A login that matches a cached credential skips the PBKDF2 derivation, so users who
+ * log in again and again (e.g. on shared kiosks) don't pay for it each time. Only
+ * successful logins are cached, so guessing a password stays as slow as before.
+ *
+ * The cache never holds the password itself: entries keep an HMAC of it under a key
+ * generated at startup, together with the stored hash it was verified against. An
+ * entry stops matching as soon as the user's stored hash changes, and entries expire
+ * after a fixed time and are evicted least recently used first once the cache is full.
+ */
+public class CredentialCache {
+    
+    private static final Logger LOGGER = Logger.getLogger(CredentialCache.class.getName());
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final SecretKeySpec macKey;
+    private final Map<String, Entry> entries;
+    
+    /**
+     * Constructor for the CredentialCache
+     *
+     * @param maxEntries the maximum number of cached credentials, or 0 to disable the cache
+     * @param ttlMillis how long a verified credential stays cached in milliseconds
+     */
+    public CredentialCache(int maxEntries, long ttlMillis) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        this.macKey = new SecretKeySpec(key, MAC_ALGORITHM);
+        
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+            
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > CredentialCache.this.maxEntries;
+            }
+        };
+        
+        LOGGER.info("Credential cache holds up to " + maxEntries + " entries for " + ttlMillis + " ms");
+    }
+    
+    /**
+     * Check whether a credential was recently verified against the user's current stored hash
+     *
+     * @param username the username
+     * @param password the password, as hashed by the client
+     * @param storedHash the user's current packed stored hash, or null if the user doesn't exist
+     * @return true if the credential can be accepted without verifying it again
+     */
+    public boolean contains(String username, String password, byte[] storedHash) {
+        if (maxEntries <= 0 || storedHash == null) {
+            return false;
+        }
+        
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(username);
+            if (entry == null) {
+                return false;
+            }
+            if (entry.expiresAt <= System.currentTimeMillis() || !Arrays.equals(entry.storedHash, storedHash)) {
+                entries.remove(username);
+                return false;
+            }
+        }
+        
+        return MessageDigest.isEqual(entry.credentialMac, mac(password));
+    }
+    
+    /**
+     * Remember a credential that was just verified
+     *
+     * @param username the username
+     * @param password the password, as hashed by the client
+     * @param storedHash the packed stored hash the password was verified against
+     */
+    public void put(String username, String password, byte[] storedHash) {
+        if (maxEntries <= 0) {
+            return;
+        }
+        
+        Entry entry = new Entry(mac(password), storedHash, System.currentTimeMillis() + ttlMillis);
+        synchronized (entries) {
+            entries.put(username, entry);
+        }
+    }
+    
+    /**
+     * Forget the cached credential of a user, e.g. when their password changes
+     *
+     * @param username the username
+     */
+    public void invalidate(String username) {
+        synchronized (entries) {
+            entries.remove(username);
+        }
+    }
+    
+    private byte[] mac(String password) {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(macKey);
+            return mac.doFinal(password.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is not available", e);
+        }
+    }
+    
+    /**
+     * A verified credential
+     */
+    private static class Entry {
+        
+        final byte[] credentialMac;
+        final byte[] storedHash;
+        final long expiresAt;
+        
+        Entry(byte[] credentialMac, byte[] storedHash, long expiresAt) {
+            this.credentialMac = credentialMac;
+            this.storedHash = storedHash;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
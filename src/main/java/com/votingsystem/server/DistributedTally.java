@@ -0,0 +1,252 @@
+package com.votingsystem.server;
+
+import com.votingsystem.common.Poll;
+import com.votingsystem.common.PollOption;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Poll tallies shared by a group of ingest nodes that all accept votes for the same polls
+ *
+ * Every poll has a PN-counter per option: each node only ever increments its own slot
+ * of the positive and negative counters, and states from other nodes are merged by
+ * taking the element-wise maximum. Merging is therefore commutative, associative and
+ * idempotent, so nodes can exchange states in any order and still converge on the same
+ * totals. A vote change is a decrement of the old option plus an increment of the new
+ * one, which stays correct because each user always votes through the same home node.
+ *
+ * The poll definitions travel with the counters, so polls created on one node become
+ * known to the others on the next exchange.
+ *
+ * A counter can never go down again once merged, so a received state is checked as a
+ * whole before any of it is merged: it must have one slot per node and per option of
+ * this node's counters, and no negative counts.
+ */
+public class DistributedTally {
+    
+    private final int nodeIndex;
+    private final int nodeCount;
+    private final Map<Integer, PollCounters> counters = new ConcurrentHashMap<>();
+    
+    /**
+     * Constructor for the DistributedTally
+     *
+     * @param nodeIndex the index of this node in the ingest group
+     * @param nodeCount the number of nodes in the ingest group
+     */
+    public DistributedTally(int nodeIndex, int nodeCount) {
+        this.nodeIndex = nodeIndex;
+        this.nodeCount = nodeCount;
+    }
+    
+    /**
+     * Start tracking a poll, if it isn't tracked already
+     *
+     * @param poll the poll to track
+     */
+    public void addPoll(Poll poll) {
+        counters.computeIfAbsent(poll.getId(), id -> new PollCounters(poll, nodeCount));
+    }
+    
+    /**
+     * Record a vote counted by this node
+     *
+     * @param pollId the ID of the poll
+     * @param optionId the ID of the option that received the vote, or -1 if an approval was only withdrawn
+     * @param previousOptionId the ID of the option the vote was moved from, or -1 for a first vote
+     */
+    public void recordVote(int pollId, int optionId, int previousOptionId) {
+        counters.get(pollId).recordVote(nodeIndex, optionId, previousOptionId);
+    }
+    
+    /**
+     * Get the merged totals of a poll over all nodes
+     *
+     * @param pollId the ID of the poll
+     * @return a map of option IDs to vote counts, or null if the poll isn't tracked
+     */
+    public Map<Integer, Integer> getTotals(int pollId) {
+        PollCounters pollCounters = counters.get(pollId);
+        return pollCounters != null ? pollCounters.totals() : null;
+    }
+    
+    /**
+     * Take a copy of the counters to send to another node
+     *
+     * @return the current state of every tracked poll
+     */
+    public State snapshot() {
+        Map<Integer, PollCounters> copy = new HashMap<>();
+        for (Map.Entry<Integer, PollCounters> entry : counters.entrySet()) {
+            copy.put(entry.getKey(), entry.getValue().copy());
+        }
+        return new State(copy);
+    }
+    
+    /**
+     * Merge the state of another node into this one
+     *
+     * @param state the state received from another node
+     * @return the polls that were not known to this node before the merge
+     * @throws IllegalArgumentException if the state doesn't fit this node's counters
+     */
+    public List<Poll> merge(State state) throws IllegalArgumentException {
+        validate(state);
+        List<Poll> newPolls = new ArrayList<>();
+        
+        for (Map.Entry<Integer, PollCounters> entry : state.counters.entrySet()) {
+            PollCounters theirs = entry.getValue();
+            PollCounters ours = counters.get(entry.getKey());
+            
+            if (ours == null) {
+                ours = new PollCounters(theirs.poll, nodeCount);
+                PollCounters existing = counters.putIfAbsent(entry.getKey(), ours);
+                if (existing != null) {
+                    ours = existing;
+                } else {
+                    newPolls.add(theirs.poll);
+                }
+            }
+            
+            ours.merge(theirs);
+        }
+        
+        return newPolls;
+    }
+    
+    private void validate(State state) throws IllegalArgumentException {
+        if (state == null || state.counters == null) {
+            throw new IllegalArgumentException("Tally state is empty");
+        }
+        for (Map.Entry<Integer, PollCounters> entry : state.counters.entrySet()) {
+            PollCounters theirs = entry.getValue();
+            if (entry.getKey() == null || theirs == null || theirs.poll == null 
+                    || theirs.poll.getId() != entry.getKey()) {
+                throw new IllegalArgumentException("Malformed counters for poll " + entry.getKey());
+            }
+            PollCounters ours = counters.get(entry.getKey());
+            theirs.checkShape(nodeCount, ours != null ? ours.optionSlots() : PollCounters.optionSlotsOf(theirs.poll));
+        }
+    }
+    
+    /**
+     * Counter state of a node, exchanged between the nodes of an ingest group
+     */
+    public static class State implements Serializable {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final Map<Integer, PollCounters> counters;
+        
+        State(Map<Integer, PollCounters> counters) {
+            this.counters = counters;
+        }
+    }
+    
+    /**
+     * PN-counters of every option of a poll, with one slot per node
+     */
+    private static class PollCounters implements Serializable {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final Poll poll;
+        
+        // Counters indexed by node and then by option ID
+        private final long[][] increments;
+        private final long[][] decrements;
+        
+        PollCounters(Poll poll, int nodeCount) {
+            this.poll = poll;
+            this.increments = new long[nodeCount][optionSlotsOf(poll)];
+            this.decrements = new long[nodeCount][optionSlotsOf(poll)];
+        }
+        
+        static int optionSlotsOf(Poll poll) {
+            int maxOptionId = 0;
+            for (PollOption option : poll.getOptions()) {
+                maxOptionId = Math.max(maxOptionId, option.getId());
+            }
+            return maxOptionId + 1;
+        }
+        
+        int optionSlots() {
+            return increments[0].length;
+        }
+        
+        /**
+         * Check that received counters have the given shape and no negative counts
+         *
+         * @param nodeCount the number of nodes
+         * @param optionSlots the number of option slots per node
+         * @throws IllegalArgumentException if they don't
+         */
+        void checkShape(int nodeCount, int optionSlots) throws IllegalArgumentException {
+            if (increments == null || decrements == null 
+                    || increments.length != nodeCount || decrements.length != nodeCount) {
+                throw new IllegalArgumentException("Counters of poll " + poll.getId() + " are not for " 
+                        + nodeCount + " nodes");
+            }
+            for (int node = 0; node < nodeCount; node++) {
+                checkRow(increments[node], optionSlots);
+                checkRow(decrements[node], optionSlots);
+            }
+        }
+        
+        private void checkRow(long[] row, int optionSlots) throws IllegalArgumentException {
+            if (row == null || row.length != optionSlots) {
+                throw new IllegalArgumentException("Counters of poll " + poll.getId() + " are not for " 
+                        + optionSlots + " option slots");
+            }
+            for (long count : row) {
+                if (count < 0) {
+                    throw new IllegalArgumentException("Counters of poll " + poll.getId() + " are negative");
+                }
+            }
+        }
+        
+        synchronized void recordVote(int node, int optionId, int previousOptionId) {
+            if (optionId != VoteLog.NO_OPTION) {
+                increments[node][optionId]++;
+            }
+            if (previousOptionId != VoteLog.NO_OPTION) {
+                decrements[node][previousOptionId]++;
+            }
+        }
+        
+        synchronized Map<Integer, Integer> totals() {
+            Map<Integer, Integer> totals = new HashMap<>();
+            for (PollOption option : poll.getOptions()) {
+                long total = 0;
+                for (int node = 0; node < increments.length; node++) {
+                    total += increments[node][option.getId()] - decrements[node][option.getId()];
+                }
+                totals.put(option.getId(), (int) total);
+            }
+            return totals;
+        }
+        
+        synchronized PollCounters copy() {
+            PollCounters copy = new PollCounters(poll, increments.length);
+            for (int node = 0; node < increments.length; node++) {
+                System.arraycopy(increments[node], 0, copy.increments[node], 0, increments[node].length);
+                System.arraycopy(decrements[node], 0, copy.decrements[node], 0, decrements[node].length);
+            }
+            return copy;
+        }
+        
+        synchronized void merge(PollCounters other) {
+            for (int node = 0; node < increments.length; node++) {
+                for (int option = 0; option < increments[node].length; option++) {
+                    increments[node][option] = Math.max(increments[node][option], other.increments[node][option]);
+                    decrements[node][option] = Math.max(decrements[node][option], other.decrements[node][option]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.votingsystem.server;
+
+import com.votingsystem.common.Poll;
+import com.votingsystem.common.PollResults;
+
+import java.io.Serializable;
+import java.util.Map;
+
+/**
+ * A change to the voting state, recorded by the primary in its {@link MutationLog}
+ * and replayed by read replicas in the same order
+ */
+public abstract class Mutation implements Serializable {
+    
+    private static final long serialVersionUID = 1L;
+    
+    /**
+     * Apply this mutation to a service
+     * 
+     * @param service the service to apply the mutation to
+     */
+    abstract void applyTo(VotingServiceImpl service);
+    
+    /**
+     * A user registered, with the stored form of their password so replicas don't derive it again
+     */
+    static class Signup extends Mutation {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final String username;
+        private final String password;
+        
+        Signup(String username, String password) {
+            this.username = username;
+            this.password = password;
+        }
+        
+        @Override
+        void applyTo(VotingServiceImpl service) {
+            service.applySignup(username, password);
+        }
+    }
+    
+    /**
+     * A registration was rolled back because another shard refused the user
+     */
+    static class CancelSignup extends Mutation {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final String username;
+        
+        CancelSignup(String username) {
+            this.username = username;
+        }
+        
+        @Override
+        void applyTo(VotingServiceImpl service) {
+            service.applyCancelSignup(username);
+        }
+    }
+    
+    /**
+     * A batch of users was imported, recorded as one mutation to keep large imports compact
+     */
+    static class ImportUsers extends Mutation {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final String[] usernames;
+        private final String[] storedHashes;
+        
+        ImportUsers(String[] usernames, String[] storedHashes) {
+            this.usernames = usernames;
+            this.storedHashes = storedHashes;
+        }
+        
+        @Override
+        void applyTo(VotingServiceImpl service) {
+            service.applyImportUsers(usernames, storedHashes);
+        }
+    }
+    
+    /**
+     * A poll was created
+     */
+    static class CreatePoll extends Mutation {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final Poll poll;
+        
+        CreatePoll(Poll poll) {
+            this.poll = poll;
+        }
+        
+        @Override
+        void applyTo(VotingServiceImpl service) {
+            service.applyCreatePoll(poll);
+        }
+    }
+    
+    /**
+     * A scheduled poll opened for voting
+     */
+    static class OpenPoll extends Mutation {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final int pollId;
+        
+        OpenPoll(int pollId) {
+            this.pollId = pollId;
+        }
+        
+        @Override
+        void applyTo(VotingServiceImpl service) {
+            service.applyOpenPoll(pollId);
+        }
+    }
+    
+    /**
+     * A poll closed, with the results it was frozen with, so replicas serve exactly the same ones
+     */
+    static class ClosePoll extends Mutation {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final int pollId;
+        private final PollResults finalResults;
+        
+        ClosePoll(int pollId, PollResults finalResults) {
+            this.pollId = pollId;
+            this.finalResults = finalResults;
+        }
+        
+        @Override
+        void applyTo(VotingServiceImpl service) {
+            service.applyClosePoll(pollId, finalResults);
+        }
+    }
+    
+    /**
+     * A user cast or changed their vote in a poll
+     */
+    static class Vote extends Mutation {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final String username;
+        private final int pollId;
+        private final int optionId;
+        
+        Vote(String username, int pollId, int optionId) {
+            this.username = username;
+            this.pollId = pollId;
+            this.optionId = optionId;
+        }
+        
+        @Override
+        void applyTo(VotingServiceImpl service) {
+            service.applyVote(username, pollId, optionId);
+        }
+    }
+    
+    /**
+     * A user cast or changed their ballot in a ranked-choice poll
+     */
+    static class RankedVote extends Mutation {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final String username;
+        private final int pollId;
+        private final int[] ranking;
+        
+        RankedVote(String username, int pollId, int[] ranking) {
+            this.username = username;
+            this.pollId = pollId;
+            this.ranking = ranking;
+        }
+        
+        @Override
+        void applyTo(VotingServiceImpl service) {
+            service.applyRankedVote(username, pollId, ranking);
+        }
+    }
+    
+    /**
+     * A user cast or changed their ballot in an approval poll
+     */
+    static class ApprovalVote extends Mutation {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final String username;
+        private final int pollId;
+        private final int[] approved;
+        
+        ApprovalVote(String username, int pollId, int[] approved) {
+            this.username = username;
+            this.pollId = pollId;
+            this.approved = approved;
+        }
+        
+        @Override
+        void applyTo(VotingServiceImpl service) {
+            service.applyApprovalVote(username, pollId, approved);
+        }
+    }
+    
+    /**
+     * The weight of a voter's future ballots in weighted polls was set
+     */
+    static class SetVoterWeight extends Mutation {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final String username;
+        private final long weight;
+        
+        SetVoterWeight(String username, long weight) {
+            this.username = username;
+            this.weight = weight;
+        }
+        
+        @Override
+        void applyTo(VotingServiceImpl service) {
+            service.applySetVoterWeight(username, weight);
+        }
+    }
+    
+    /**
+     * The attributes that a voter's future ballots are counted under were set
+     */
+    static class SetVoterAttributes extends Mutation {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final String username;
+        private final Map<String, String> attributes;
+        
+        SetVoterAttributes(String username, Map<String, String> attributes) {
+            this.username = username;
+            this.attributes = attributes;
+        }
+        
+        @Override
+        void applyTo(VotingServiceImpl service) {
+            service.applySetVoterAttributes(username, attributes);
+        }
+    }
+}
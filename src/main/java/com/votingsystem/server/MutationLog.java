@@ -0,0 +1,145 @@
+package com.votingsystem.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-memory window of the most recent {@link Mutation}s applied to a primary, in order
+ *
+ * Replicas read the log from the last sequence number they applied. Reads can wait
+ * for new mutations to arrive, so a replica polling in a loop receives mutations as
+ * soon as they are appended. Only the last mutations are kept, in a ring, so memory
+ * doesn't grow with the number of votes cast; a replica that falls further behind, or
+ * starts late, gets a {@link ReplicaSnapshot} of the primary instead.
+ *
+ * Appending takes no lock: a mutation claims the next sequence number and is then
+ * published in its slot of the ring. Readers return the mutations up to the first
+ * one not published yet, so they always see a gapless prefix of the log, and waiting
+ * readers are woken by unparking rather than through a monitor.
+ */
+public class MutationLog {
+    
+    private final AtomicReferenceArray<Entry> entries;
+    private final AtomicLong nextSequence = new AtomicLong();
+    
+    // Replica threads waiting for new mutations
+    private final Queue<Thread> waiters = new ConcurrentLinkedQueue<>();
+    
+    /**
+     * Constructor for the MutationLog
+     *
+     * @param capacity the number of most recent mutations kept
+     */
+    public MutationLog(int capacity) {
+        this.entries = new AtomicReferenceArray<>(capacity);
+    }
+    
+    /**
+     * Append a mutation to the log
+     *
+     * @param mutation the mutation to append
+     */
+    public void append(Mutation mutation) {
+        long sequence = nextSequence.getAndIncrement();
+        Entry entry = new Entry(sequence, mutation);
+        int slot = slotOf(sequence);
+        
+        // A writer a whole ring ahead may already have filled the slot, which then stays trimmed
+        Entry current = entries.get(slot);
+        while ((current == null || current.sequence < sequence) && !entries.compareAndSet(slot, current, entry)) {
+            current = entries.get(slot);
+        }
+        
+        for (Thread waiter : waiters) {
+            LockSupport.unpark(waiter);
+        }
+    }
+    
+    /**
+     * Get the sequence number the next appended mutation will get
+     *
+     * @return the number of mutations ever appended
+     */
+    public long nextSequence() {
+        return nextSequence.get();
+    }
+    
+    /**
+     * Read mutations starting at a sequence number, waiting for new ones if there are none yet
+     *
+     * @param fromSequence the sequence number of the first mutation to read
+     * @param maxCount the maximum number of mutations to return
+     * @param waitMillis how long to wait for a mutation to be appended if the log has none to return
+     * @return the mutations read, empty if none arrived while waiting
+     * @throws SnapshotRequiredException if the mutation at the sequence number is no longer, or was never, in the log
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public List<Mutation> read(long fromSequence, int maxCount, long waitMillis)
+            throws SnapshotRequiredException, InterruptedException {
+        List<Mutation> mutations = collect(fromSequence, maxCount);
+        if (!mutations.isEmpty()) {
+            return mutations;
+        }
+        
+        // Register before looking again, so a mutation appended in between still wakes us up
+        long deadline = System.nanoTime() + waitMillis * 1_000_000;
+        Thread current = Thread.currentThread();
+        waiters.add(current);
+        try {
+            while (true) {
+                mutations = collect(fromSequence, maxCount);
+                long remaining = deadline - System.nanoTime();
+                if (!mutations.isEmpty() || remaining <= 0) {
+                    return mutations;
+                }
+                LockSupport.parkNanos(this, remaining);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        } finally {
+            waiters.remove(current);
+        }
+    }
+    
+    private List<Mutation> collect(long fromSequence, int maxCount) throws SnapshotRequiredException {
+        long next = nextSequence.get();
+        if (fromSequence > next || fromSequence < next - entries.length()) {
+            throw new SnapshotRequiredException("Mutation " + fromSequence + " is not in the log");
+        }
+        
+        List<Mutation> mutations = new ArrayList<>();
+        for (long sequence = fromSequence; sequence < next && mutations.size() < maxCount; sequence++) {
+            Entry entry = entries.get(slotOf(sequence));
+            if (entry == null || entry.sequence < sequence) {
+                // Claimed but not published yet
+                break;
+            }
+            if (entry.sequence > sequence) {
+                throw new SnapshotRequiredException("Mutation " + sequence + " was trimmed from the log");
+            }
+            mutations.add(entry.mutation);
+        }
+        return mutations;
+    }
+    
+    private int slotOf(long sequence) {
+        return (int) (sequence % entries.length());
+    }
+    
+    private static final class Entry {
+        
+        final long sequence;
+        final Mutation mutation;
+        
+        Entry(long sequence, Mutation mutation) {
+            this.sequence = sequence;
+            this.mutation = mutation;
+        }
+    }
+}
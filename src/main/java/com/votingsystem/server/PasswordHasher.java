@@ -0,0 +1,106 @@
+package com.votingsystem.server;
+
+import com.votingsystem.common.PasswordUtils;
+import com.votingsystem.common.ServerOverloadedException;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Runs the slow password key derivation of signup and login on a bounded pool
+ *
+ * PBKDF2 costs tens of milliseconds of CPU per call, so a burst of logins hashed on the
+ * RMI threads would take the CPU away from vote calls. Here at most a fixed number of
+ * derivations run at once and a bounded number wait in the queue; once the queue is
+ * full, further signups and logins are rejected straight away with a
+ * {@link ServerOverloadedException}. The RMI thread of a login only waits for its result,
+ * leaving the remaining cores to the other calls.
+ */
+public class PasswordHasher {
+    
+    private static final Logger LOGGER = Logger.getLogger(PasswordHasher.class.getName());
+    
+    private final ThreadPoolExecutor executor;
+    private final int iterations;
+    
+    // Compared against when the username is unknown, so a failed login takes as long either way
+    private final byte[] dummyHash;
+    
+    /**
+     * Constructor for the PasswordHasher
+     *
+     * @param threads the number of derivations that may run at the same time
+     * @param queueSize the number of derivations that may wait for a thread
+     * @param iterations the number of PBKDF2 iterations for new stored hashes
+     */
+    public PasswordHasher(int threads, int queueSize, int iterations) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), task -> {
+                    Thread thread = new Thread(task, "password-hasher-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.iterations = iterations;
+        this.dummyHash = PasswordUtils.packStoredHash(PasswordUtils.createStoredHash("", iterations));
+        
+        LOGGER.info("Password hasher started with " + threads + " threads and a queue of " + queueSize);
+    }
+    
+    /**
+     * Derive the stored form of a new password
+     *
+     * @param password the password, as hashed by the client
+     * @return the stored hash
+     * @throws ServerOverloadedException if too many derivations are already waiting
+     */
+    public String hash(String password) throws ServerOverloadedException {
+        return run(() -> PasswordUtils.createStoredHash(password, iterations));
+    }
+    
+    /**
+     * Verify a password against its stored form
+     *
+     * @param password the password, as hashed by the client
+     * @param storedHash the packed stored hash, or null if the user doesn't exist
+     * @return true if the password matches
+     * @throws ServerOverloadedException if too many derivations are already waiting
+     */
+    public boolean verify(String password, byte[] storedHash) throws ServerOverloadedException {
+        if (storedHash == null) {
+            run(() -> PasswordUtils.verifyStoredHash(password, dummyHash));
+            return false;
+        }
+        return run(() -> PasswordUtils.verifyStoredHash(password, storedHash));
+    }
+    
+    private <T> T run(Callable<T> task) throws ServerOverloadedException {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            LOGGER.warning("Password hashing queue full, rejecting request");
+            throw new ServerOverloadedException("Too many logins in progress, please try again shortly");
+        }
+        
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing password");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.votingsystem.server;
+
+import com.votingsystem.common.Poll;
+import com.votingsystem.common.PollPage;
+import com.votingsystem.common.PollQuery;
+import com.votingsystem.common.PollSummary;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Indexes of the polls for paged, filtered listings
+ *
+ * Polls are kept sorted by end date in a skip list, so a page starts with a seek to its
+ * cursor or to the earliest end date the filter allows, and reads forward only as far as
+ * it needs. The words of every title are indexed in a sorted map, so a title prefix
+ * finds its words as one range of keys and only the polls carrying them are looked at.
+ * Both indexes are concurrent and updated as polls are created, so listings never lock.
+ */
+public class PollIndex {
+    
+    private final NavigableSet<Poll> byEndDate = new ConcurrentSkipListSet<>(PollPage.ORDER);
+    private final ConcurrentSkipListMap<String, NavigableSet<Poll>> byTitleWord = new ConcurrentSkipListMap<>();
+    
+    /**
+     * Add a poll to the indexes
+     *
+     * @param poll the poll, whose title and end date must no longer change
+     */
+    public void add(Poll poll) {
+        byEndDate.add(poll);
+        for (String word : words(poll.getTitle())) {
+            byTitleWord.computeIfAbsent(word, w -> new ConcurrentSkipListSet<>(PollPage.ORDER)).add(poll);
+        }
+    }
+    
+    /**
+     * List a page of the polls matching a query
+     *
+     * @param query the filter, or null for every poll
+     * @param cursor the cursor of the page, or null for the first page
+     * @param limit the largest number of polls on the page
+     * @return the page
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public PollPage page(PollQuery query, String cursor, int limit) {
+        // Seek to the latest of the cursor and the lower bounds of the filter
+        Poll from = cursor != null ? probe(cursor) : null;
+        if (query != null && query.getEndsAfter() != null) {
+            from = later(from, probe(query.getEndsAfter().getTime(), Integer.MAX_VALUE));
+        }
+        if (query != null && query.isActiveOnly()) {
+            from = later(from, probe(System.currentTimeMillis(), Integer.MIN_VALUE));
+        }
+        
+        Poll to = query != null && query.getEndsBefore() != null 
+                ? probe(query.getEndsBefore().getTime(), Integer.MIN_VALUE) : null;
+        
+        List<String> prefixes = query != null ? words(query.getTitlePrefix()) : new ArrayList<>();
+        Iterator<Poll> candidates = prefixes.isEmpty() ? between(byEndDate, from, to).iterator() 
+                : withTitleWord(prefixes.get(0), from, to);
+        
+        List<PollSummary> polls = new ArrayList<>();
+        while (candidates.hasNext()) {
+            Poll poll = candidates.next();
+            if (query != null && query.isActiveOnly() && !poll.isActive()) {
+                continue;
+            }
+            if (prefixes.size() > 1 && !titleMatches(poll, prefixes)) {
+                continue;
+            }
+            if (polls.size() == limit) {
+                return new PollPage(polls, PollPage.cursorAfter(polls.get(limit - 1)));
+            }
+            polls.add(new PollSummary(poll));
+        }
+        return new PollPage(polls, null);
+    }
+    
+    private static NavigableSet<Poll> between(NavigableSet<Poll> polls, Poll from, Poll to) {
+        if (from != null) {
+            polls = polls.tailSet(from, false);
+        }
+        if (to != null) {
+            polls = polls.headSet(to, false);
+        }
+        return polls;
+    }
+    
+    /**
+     * Iterate over the polls whose title has a word starting with a prefix, in listing order
+     *
+     * The polls of every matching word are already sorted, so they are merged lazily and
+     * a page only reads as many of them as it lists.
+     */
+    private Iterator<Poll> withTitleWord(String prefix, Poll from, Poll to) {
+        PriorityQueue<PeekingIterator> heads = new PriorityQueue<>(
+                (a, b) -> PollPage.ORDER.compare(a.peek(), b.peek()));
+        for (NavigableSet<Poll> withWord : byTitleWord.subMap(prefix, true, prefix + Character.MAX_VALUE, true).values()) {
+            PeekingIterator head = new PeekingIterator(between(withWord, from, to).iterator());
+            if (head.peek() != null) {
+                heads.add(head);
+            }
+        }
+        
+        return new Iterator<Poll>() {
+            private Poll last;
+            
+            @Override
+            public boolean hasNext() {
+                // A title with several matching words puts its poll under each of them
+                while (!heads.isEmpty() && heads.peek().peek() == last) {
+                    advance();
+                }
+                return !heads.isEmpty();
+            }
+            
+            @Override
+            public Poll next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                last = heads.peek().peek();
+                advance();
+                return last;
+            }
+            
+            private void advance() {
+                PeekingIterator head = heads.poll();
+                head.next();
+                if (head.peek() != null) {
+                    heads.add(head);
+                }
+            }
+        };
+    }
+    
+    private static final class PeekingIterator {
+        
+        private final Iterator<Poll> iterator;
+        private Poll next;
+        
+        PeekingIterator(Iterator<Poll> iterator) {
+            this.iterator = iterator;
+            next();
+        }
+        
+        Poll peek() {
+            return next;
+        }
+        
+        void next() {
+            next = iterator.hasNext() ? iterator.next() : null;
+        }
+    }
+    
+    private static boolean titleMatches(Poll poll, List<String> prefixes) {
+        List<String> titleWords = words(poll.getTitle());
+        for (String prefix : prefixes) {
+            boolean found = false;
+            for (String word : titleWords) {
+                found |= word.startsWith(prefix);
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Split text into lower-case words of letters and digits
+     *
+     * @param text the text, may be null
+     * @return the words in order
+     */
+    static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean inWord = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (inWord && start < 0) {
+                start = i;
+            } else if (!inWord && start >= 0) {
+                words.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return words;
+    }
+    
+    private static Poll later(Poll a, Poll b) {
+        return a == null || PollPage.ORDER.compare(b, a) > 0 ? b : a;
+    }
+    
+    private static Poll probe(String cursor) {
+        int separator = cursor.indexOf(':');
+        try {
+            return probe(Long.parseLong(cursor.substring(0, separator)), Integer.parseInt(cursor.substring(separator + 1)));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Malformed cursor: " + cursor);
+        }
+    }
+    
+    private static Poll probe(long endMillis, int pollId) {
+        Poll probe = new Poll();
+        probe.setId(pollId);
+        probe.setEndDate(new Date(endMillis));
+        return probe;
+    }
+}
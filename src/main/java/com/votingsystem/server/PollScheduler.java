@@ -0,0 +1,97 @@
+package com.votingsystem.server;
+
+import com.votingsystem.common.Poll;
+import com.votingsystem.common.PollState;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Opens and closes polls at their start and end dates
+ *
+ * All transitions go through a single timer queue served by one thread, however many
+ * polls there are. A poll's state is kept on the poll itself as a volatile field, so
+ * the vote path only has to read it instead of comparing dates on every call.
+ *
+ * Only servers that accept votes run a scheduler. Read replicas take openings and
+ * closings from their primary's mutation log instead of their own clock, so they
+ * serve the results the primary froze.
+ */
+public class PollScheduler {
+    
+    private static final Logger LOGGER = Logger.getLogger(PollScheduler.class.getName());
+    
+    private final VotingServiceImpl service;
+    private final ScheduledThreadPoolExecutor timer;
+    
+    /**
+     * Constructor for the PollScheduler
+     *
+     * @param service the service whose polls are opened and closed
+     */
+    public PollScheduler(VotingServiceImpl service) {
+        this.service = service;
+        this.timer = new ScheduledThreadPoolExecutor(1, task -> {
+            Thread thread = new Thread(task, "poll-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * Put a new poll in the state matching the current time and schedule its next transitions
+     *
+     * @param poll the poll to schedule
+     */
+    public void schedule(Poll poll) {
+        long now = System.currentTimeMillis();
+        long start = poll.getStartDate().getTime();
+        long end = poll.getEndDate().getTime();
+        
+        if (now < start) {
+            poll.setState(PollState.SCHEDULED);
+            timer.schedule(() -> open(poll), start - now, TimeUnit.MILLISECONDS);
+            LOGGER.info("Poll " + poll.getId() + " scheduled to open at " + poll.getStartDate());
+        } else if (now < end) {
+            open(poll);
+        } else {
+            close(poll);
+        }
+    }
+    
+    /**
+     * Freeze the results of a closed poll once a delay has passed
+     *
+     * @param poll the closed poll
+     * @param delayMillis how long to wait before freezing
+     */
+    public void freezeLater(Poll poll, long delayMillis) {
+        timer.schedule(() -> freeze(poll), delayMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    private void open(Poll poll) {
+        service.openPoll(poll);
+        LOGGER.info("Poll " + poll.getId() + " opened, closing at " + poll.getEndDate());
+        
+        long delay = Math.max(0, poll.getEndDate().getTime() - System.currentTimeMillis());
+        timer.schedule(() -> close(poll), delay, TimeUnit.MILLISECONDS);
+    }
+    
+    private void close(Poll poll) {
+        try {
+            service.closePoll(poll);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Failed to close poll " + poll.getId(), e);
+        }
+    }
+    
+    private void freeze(Poll poll) {
+        try {
+            service.freezePoll(poll);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Failed to freeze the results of poll " + poll.getId(), e);
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package com.votingsystem.server;
+
+import com.votingsystem.common.Poll;
+import com.votingsystem.common.PollSearchHit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * In-memory inverted index over the words of poll titles and descriptions
+ *
+ * Polls are numbered in the order they are indexed, and every word keeps a postings list
+ * of the numbers of the polls that contain it, in ascending order, with a weight that
+ * counts title occurrences {@value #TITLE_WEIGHT} times. Words are kept in a sorted map,
+ * so every word of a query also matches the indexed words it is a prefix of, found as
+ * one range of keys.
+ *
+ * Polls are added under a lock while searches take none: postings grow by appending
+ * and publish their arrays and new size together in one immutable holder, so a search
+ * sees every posting up to the size it read, and skips polls indexed after it started.
+ *
+ * A search scores the candidate polls in per-thread arrays indexed by poll number and
+ * clears only the entries it touched, so a query costs time in proportion to the postings
+ * of its words, not to the number of polls. Its words are intersected starting with the
+ * one with the fewest postings, looking the remaining candidates up by binary search in
+ * postings much longer than they are, and the best hits are kept in a heap of the
+ * requested size.
+ */
+public class PollSearchIndex {
+    
+    /** Weight of a word in a title relative to one in a description */
+    public static final int TITLE_WEIGHT = 3;
+    
+    /** Largest number of indexed words a query word expands to as a prefix */
+    public static final int MAX_EXPANSIONS = 64;
+    
+    // Share of the score that a word only matched as a prefix contributes
+    private static final double PREFIX_FACTOR = 0.5;
+    
+    // Postings are searched rather than scanned when they are this many times longer than the candidates
+    private static final int LOOKUP_COST = 16;
+    
+    private final ConcurrentSkipListMap<String, Postings> terms = new ConcurrentSkipListMap<>();
+    
+    // Indexed polls by number; the array is replaced when it grows, before the count is raised
+    private volatile Poll[] polls = new Poll[1024];
+    private volatile int pollCount;
+    
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+    
+    /**
+     * Add a poll to the index
+     *
+     * @param poll the poll, whose title and description must no longer change
+     */
+    public synchronized void add(Poll poll) {
+        int number = pollCount;
+        if (number == polls.length) {
+            polls = Arrays.copyOf(polls, number * 2);
+        }
+        polls[number] = poll;
+        
+        Map<String, Integer> weights = new HashMap<>();
+        for (String word : PollIndex.words(poll.getTitle())) {
+            weights.merge(word, TITLE_WEIGHT, Integer::sum);
+        }
+        for (String word : PollIndex.words(poll.getDescription())) {
+            weights.merge(word, 1, Integer::sum);
+        }
+        for (Map.Entry<String, Integer> weight : weights.entrySet()) {
+            terms.computeIfAbsent(weight.getKey(), w -> new Postings()).append(number, weight.getValue());
+        }
+        
+        pollCount = number + 1;
+    }
+    
+    /**
+     * Find the polls that contain every word of a query, as a word or the start of one
+     *
+     * @param query the words to look for
+     * @param limit the largest number of hits
+     * @return the best hits, most relevant first
+     */
+    public List<PollSearchHit> search(String query, int limit) {
+        int count = pollCount;
+        Poll[] indexed = polls;
+        
+        // Expand every query word to the indexed words it starts, and count their postings
+        List<String> words = new ArrayList<>(new LinkedHashSet<>(PollIndex.words(query)));
+        if (words.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<List<Map.Entry<String, Postings>>> expansions = new ArrayList<>();
+        long[] sizes = new long[words.size()];
+        for (int w = 0; w < words.size(); w++) {
+            List<Map.Entry<String, Postings>> matches = new ArrayList<>();
+            String word = words.get(w);
+            for (Map.Entry<String, Postings> term : terms.subMap(word, true, word + Character.MAX_VALUE, true).entrySet()) {
+                matches.add(term);
+                sizes[w] += term.getValue().entries.size;
+                if (matches.size() == MAX_EXPANSIONS) {
+                    break;
+                }
+            }
+            if (matches.isEmpty()) {
+                return Collections.emptyList();
+            }
+            expansions.add(matches);
+        }
+        
+        // Intersect starting with the rarest word, so few polls are ever touched
+        Integer[] order = new Integer[words.size()];
+        for (int w = 0; w < order.length; w++) {
+            order[w] = w;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(sizes[a], sizes[b]));
+        
+        Scratch s = scratch.get();
+        s.ensureCapacity(count);
+        try {
+            for (int step = 0; step < order.length; step++) {
+                String word = words.get(order[step]);
+                for (Map.Entry<String, Postings> term : expansions.get(order[step])) {
+                    Postings.Entries postings = term.getValue().entries;
+                    int size = postings.size;
+                    int[] numbers = postings.numbers;
+                    int[] weights = postings.weights;
+                    double idf = Math.log(1 + (count - size + 0.5) / (size + 0.5));
+                    if (!term.getKey().equals(word)) {
+                        idf *= PREFIX_FACTOR;
+                    }
+                    
+                    // Few candidates left are looked up in long postings rather than scanning them
+                    if (step > 0 && s.touchedCount * LOOKUP_COST < size) {
+                        for (int t = 0; t < s.touchedCount; t++) {
+                            int number = s.touched[t];
+                            if (s.matched[number] == step || s.matched[number] == step + 1) {
+                                int i = Arrays.binarySearch(numbers, 0, size, number);
+                                if (i >= 0) {
+                                    s.matched[number] = step + 1;
+                                    s.scores[number] += weights[i] * idf;
+                                }
+                            }
+                        }
+                        continue;
+                    }
+                    
+                    double[] scores = s.scores;
+                    int[] matched = s.matched;
+                    if (step == 0) {
+                        for (int i = 0; i < size && numbers[i] < count; i++) {
+                            int number = numbers[i];
+                            if (matched[number] == 0) {
+                                s.touch(number);
+                                matched[number] = 1;
+                            }
+                            scores[number] += weights[i] * idf;
+                        }
+                        continue;
+                    }
+                    
+                    for (int i = 0; i < size && numbers[i] < count; i++) {
+                        int number = numbers[i];
+                        // Only polls that matched every earlier word, counting each word once
+                        if (matched[number] == step) {
+                            matched[number] = step + 1;
+                        } else if (matched[number] != step + 1) {
+                            continue;
+                        }
+                        scores[number] += weights[i] * idf;
+                    }
+                }
+            }
+            
+            // Keep the best hits in a min-heap, breaking ties in favour of newer polls. Candidates
+            // are in ascending order, so going from the newest keeps ties from churning the heap.
+            int[] best = new int[Math.min(limit, s.touchedCount)];
+            int bestCount = 0;
+            for (int t = s.touchedCount - 1; t >= 0; t--) {
+                int number = s.touched[t];
+                if (s.matched[number] != order.length) {
+                    continue;
+                }
+                if (bestCount < best.length) {
+                    best[bestCount++] = number;
+                    siftUp(best, bestCount - 1, s.scores);
+                } else if (better(number, best[0], s.scores)) {
+                    best[0] = number;
+                    siftDown(best, bestCount, s.scores);
+                }
+            }
+            
+            List<PollSearchHit> hits = new ArrayList<>(bestCount);
+            while (bestCount > 0) {
+                int number = best[0];
+                best[0] = best[--bestCount];
+                siftDown(best, bestCount, s.scores);
+                hits.add(new PollSearchHit(indexed[number], s.scores[number]));
+            }
+            Collections.reverse(hits);
+            return hits;
+        } finally {
+            s.clear();
+        }
+    }
+    
+    private static boolean better(int a, int b, double[] scores) {
+        return scores[a] != scores[b] ? scores[a] > scores[b] : a > b;
+    }
+    
+    private static void siftUp(int[] heap, int i, double[] scores) {
+        while (i > 0 && better(heap[(i - 1) / 2], heap[i], scores)) {
+            swap(heap, i, (i - 1) / 2);
+            i = (i - 1) / 2;
+        }
+    }
+    
+    private static void siftDown(int[] heap, int size, double[] scores) {
+        int i = 0;
+        while (2 * i + 1 < size) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && better(heap[child], heap[child + 1], scores)) {
+                child++;
+            }
+            if (!better(heap[i], heap[child], scores)) {
+                return;
+            }
+            swap(heap, i, child);
+            i = child;
+        }
+    }
+    
+    private static void swap(int[] heap, int i, int j) {
+        int tmp = heap[i];
+        heap[i] = heap[j];
+        heap[j] = tmp;
+    }
+    
+    /**
+     * Numbers and weights of the polls containing one word, in ascending order of number
+     */
+    private static final class Postings {
+        
+        // Replaced on every append, after the new posting is written
+        volatile Entries entries = new Entries(new int[4], new int[4], 0);
+        
+        // Called under the index's lock
+        void append(int number, int weight) {
+            Entries current = entries;
+            int n = current.size;
+            int[] numbers = current.numbers;
+            int[] weights = current.weights;
+            if (n == numbers.length) {
+                numbers = Arrays.copyOf(numbers, n * 2);
+                weights = Arrays.copyOf(weights, n * 2);
+            }
+            numbers[n] = number;
+            weights[n] = weight;
+            entries = new Entries(numbers, weights, n + 1);
+        }
+        
+        /**
+         * Arrays of postings with the number of them in use; entries below size are never changed again
+         */
+        static final class Entries {
+            
+            final int[] numbers;
+            final int[] weights;
+            final int size;
+            
+            Entries(int[] numbers, int[] weights, int size) {
+                this.numbers = numbers;
+                this.weights = weights;
+                this.size = size;
+            }
+        }
+    }
+    
+    /**
+     * Per-thread score accumulators indexed by poll number
+     */
+    private static final class Scratch {
+        
+        double[] scores = new double[0];
+        int[] matched = new int[0];
+        int[] touched = new int[64];
+        int touchedCount;
+        
+        void ensureCapacity(int count) {
+            if (scores.length < count) {
+                int capacity = Math.max(count, scores.length * 2);
+                scores = new double[capacity];
+                matched = new int[capacity];
+            }
+        }
+        
+        void touch(int number) {
+            if (touchedCount == touched.length) {
+                touched = Arrays.copyOf(touched, touchedCount * 2);
+            }
+            touched[touchedCount++] = number;
+        }
+        
+        void clear() {
+            for (int t = 0; t < touchedCount; t++) {
+                scores[touched[t]] = 0;
+                matched[touched[t]] = 0;
+            }
+            touchedCount = 0;
+        }
+    }
+}
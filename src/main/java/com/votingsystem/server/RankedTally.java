@@ -0,0 +1,331 @@
+package com.votingsystem.server;
+
+import com.votingsystem.common.Poll;
+import com.votingsystem.common.RankedResults;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ballots of a ranked-choice poll and their instant-runoff count
+ *
+ * A ballot is stored as the positions of the ranked options packed into a byte array,
+ * one byte per choice (two for polls with more than 256 options). Identical rankings
+ * are stored once with the number of ballots that carry them, and every voter only
+ * keeps a reference to their ranking, so the count works on the distinct rankings
+ * rather than on every ballot.
+ *
+ * The count keeps the rankings sorted into one pile per option. Eliminating an option
+ * only moves the rankings on its pile to their next choice, so a whole count looks at
+ * every choice of every distinct ranking at most once. Results are cached until the
+ * next ballot is cast.
+ *
+ * Only copying the distinct rankings and their ballot counts takes the tally's lock;
+ * the runoff itself runs on the copy without it, so a ballot cast during a count waits
+ * for the copy rather than for the whole count.
+ */
+public class RankedTally {
+    
+    private final Poll poll;
+    private final int optionCount;
+    private final boolean wide;
+    
+    // Ballot of every voter (username -> ranking shared with identical ballots)
+    private final Map<String, Ranking> ballots = new HashMap<>();
+    
+    // Distinct rankings, each carrying its number of ballots
+    private final Map<Ranking, Ranking> rankings = new HashMap<>();
+    
+    // Results of the last count, or null if a ballot was cast since
+    private RankedResults results;
+    
+    // Number of ballots cast so far, telling a count whether ballots arrived while it ran
+    private long version;
+    
+    /**
+     * Constructor for the RankedTally
+     *
+     * @param poll the ranked-choice poll
+     */
+    public RankedTally(Poll poll) {
+        this.poll = poll;
+        this.optionCount = poll.getOptions().size();
+        this.wide = optionCount > 256;
+    }
+    
+    /**
+     * Record a voter's ballot, replacing the one they cast before
+     *
+     * @param username the voter
+     * @param positions the positions in the poll of the ranked options, most preferred first,
+     *                  without duplicates
+     * @return the position of the option ranked first on the voter's previous ballot, or -1 if this is their first ballot
+     */
+    public synchronized int cast(String username, int[] positions) {
+        Ranking ranking = new Ranking(positions, wide);
+        Ranking shared = rankings.putIfAbsent(ranking, ranking);
+        if (shared == null) {
+            shared = ranking;
+        }
+        shared.ballots++;
+        
+        results = null;
+        version++;
+        
+        Ranking previous = ballots.put(username, shared);
+        if (previous == null) {
+            return -1;
+        }
+        if (--previous.ballots == 0) {
+            rankings.remove(previous);
+        }
+        return previous.get(0);
+    }
+    
+    /**
+     * Get a voter's ballot
+     *
+     * @param username the voter
+     * @return the positions of the ranked options, most preferred first, or null if the voter has not voted
+     */
+    public synchronized int[] getBallot(String username) {
+        Ranking ranking = ballots.get(username);
+        if (ranking == null) {
+            return null;
+        }
+        
+        int[] positions = new int[ranking.length()];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = ranking.get(i);
+        }
+        return positions;
+    }
+    
+    /**
+     * Count the ballots by instant runoff
+     *
+     * When several options share the fewest votes, the one with the fewest first
+     * preferences is eliminated, and if that is tied too, the one listed last in the poll.
+     *
+     * @return the round-by-round results, counting every ballot cast before the call and possibly some cast during it
+     */
+    public RankedResults count() {
+        return count(snapshot());
+    }
+    
+    /**
+     * Copy the ballots to count, so that they can be read together with other state under the poll's lock
+     *
+     * @return the ballots cast so far
+     */
+    public synchronized Snapshot snapshot() {
+        if (results != null) {
+            return new Snapshot(results, null, null, 0, version);
+        }
+        
+        Ranking[] groups = rankings.keySet().toArray(new Ranking[0]);
+        int[] weights = new int[groups.length];
+        for (int g = 0; g < groups.length; g++) {
+            weights[g] = groups[g].ballots;
+        }
+        return new Snapshot(null, groups, weights, ballots.size(), version);
+    }
+    
+    /**
+     * Count copied ballots by instant runoff, without holding the tally's lock
+     *
+     * @param snapshot the ballots, as returned by {@link #snapshot()}
+     * @return the round-by-round results, counting exactly the ballots in the snapshot
+     */
+    public RankedResults count(Snapshot snapshot) {
+        if (snapshot.results != null) {
+            return snapshot.results;
+        }
+        
+        RankedResults counted = runoff(snapshot.groups, snapshot.weights, snapshot.ballotCount);
+        synchronized (this) {
+            // Only cache the count if no ballot was cast since the snapshot
+            if (version == snapshot.version) {
+                results = counted;
+            }
+        }
+        return counted;
+    }
+    
+    /**
+     * Ballots of the tally at one point, or the cached results if they were current then
+     */
+    public static final class Snapshot {
+        
+        private final RankedResults results;
+        private final Ranking[] groups;
+        private final int[] weights;
+        private final int ballotCount;
+        private final long version;
+        
+        private Snapshot(RankedResults results, Ranking[] groups, int[] weights, int ballotCount, long version) {
+            this.results = results;
+            this.groups = groups;
+            this.weights = weights;
+            this.ballotCount = ballotCount;
+            this.version = version;
+        }
+    }
+    
+    /**
+     * Run the instant-runoff count on a copy of the distinct rankings
+     *
+     * @param groups the distinct rankings
+     * @param weights the number of ballots carrying each ranking
+     * @param ballotCount the total number of ballots
+     * @return the round-by-round results
+     */
+    private RankedResults runoff(Ranking[] groups, int[] weights, int ballotCount) {
+        int[] choice = new int[groups.length];
+        int[][] piles = new int[optionCount][];
+        int[] pileSizes = new int[optionCount];
+        int[] votes = new int[optionCount];
+        boolean[] eliminated = new boolean[optionCount];
+        
+        for (int g = 0; g < groups.length; g++) {
+            int first = groups[g].get(0);
+            addToPile(piles, pileSizes, first, g);
+            votes[first] += weights[g];
+        }
+        int[] firstPreferences = votes.clone();
+        
+        List<RankedResults.Round> rounds = new ArrayList<>();
+        int exhausted = 0;
+        int remaining = optionCount;
+        int winner = -1;
+        
+        while (true) {
+            int leader = -1;
+            for (int i = 0; i < optionCount; i++) {
+                if (!eliminated[i] && (leader < 0 || votes[i] > votes[leader])) {
+                    leader = i;
+                }
+            }
+            
+            int active = ballotCount - exhausted;
+            if (active == 0) {
+                rounds.add(round(votes, eliminated, exhausted, -1));
+                break;
+            }
+            if (votes[leader] * 2L > active || remaining == 1) {
+                winner = leader;
+                rounds.add(round(votes, eliminated, exhausted, -1));
+                break;
+            }
+            
+            int loser = -1;
+            for (int i = 0; i < optionCount; i++) {
+                if (eliminated[i]) {
+                    continue;
+                }
+                if (loser < 0 || votes[i] < votes[loser]
+                        || (votes[i] == votes[loser] && firstPreferences[i] <= firstPreferences[loser])) {
+                    loser = i;
+                }
+            }
+            rounds.add(round(votes, eliminated, exhausted, poll.getOptions().get(loser).getId()));
+            
+            // Move the loser's ballots to their next choice still in the race
+            eliminated[loser] = true;
+            remaining--;
+            for (int k = 0; k < pileSizes[loser]; k++) {
+                int g = piles[loser][k];
+                Ranking ranking = groups[g];
+                int next = choice[g] + 1;
+                while (next < ranking.length() && eliminated[ranking.get(next)]) {
+                    next++;
+                }
+                
+                if (next < ranking.length()) {
+                    choice[g] = next;
+                    int option = ranking.get(next);
+                    addToPile(piles, pileSizes, option, g);
+                    votes[option] += weights[g];
+                } else {
+                    exhausted += weights[g];
+                }
+            }
+            piles[loser] = null;
+            votes[loser] = 0;
+        }
+        
+        int[] optionIds = new int[optionCount];
+        for (int i = 0; i < optionCount; i++) {
+            optionIds[i] = poll.getOptions().get(i).getId();
+        }
+        return new RankedResults(poll.getId(), optionIds, rounds, winner >= 0 ? optionIds[winner] : -1,
+                ballotCount, groups.length);
+    }
+    
+    private static void addToPile(int[][] piles, int[] pileSizes, int option, int group) {
+        int[] pile = piles[option];
+        if (pile == null) {
+            pile = new int[8];
+        } else if (pileSizes[option] == pile.length) {
+            pile = Arrays.copyOf(pile, pile.length * 2);
+        }
+        pile[pileSizes[option]++] = group;
+        piles[option] = pile;
+    }
+    
+    private static RankedResults.Round round(int[] votes, boolean[] eliminated, int exhausted, int eliminatedId) {
+        int[] roundVotes = new int[votes.length];
+        for (int i = 0; i < votes.length; i++) {
+            roundVotes[i] = eliminated[i] ? -1 : votes[i];
+        }
+        return new RankedResults.Round(roundVotes, exhausted, eliminatedId);
+    }
+    
+    /**
+     * A ranking of options, shared by every ballot that ranks them the same way
+     */
+    private static final class Ranking {
+        
+        private final byte[] packed;
+        private final boolean wide;
+        private final int hash;
+        
+        // Number of ballots with this ranking, guarded by the tally's lock
+        int ballots;
+        
+        Ranking(int[] positions, boolean wide) {
+            this.wide = wide;
+            this.packed = new byte[wide ? positions.length * 2 : positions.length];
+            for (int i = 0; i < positions.length; i++) {
+                if (wide) {
+                    packed[2 * i] = (byte) (positions[i] >>> 8);
+                    packed[2 * i + 1] = (byte) positions[i];
+                } else {
+                    packed[i] = (byte) positions[i];
+                }
+            }
+            this.hash = Arrays.hashCode(packed);
+        }
+        
+        int length() {
+            return wide ? packed.length / 2 : packed.length;
+        }
+        
+        int get(int i) {
+            return wide ? ((packed[2 * i] & 0xff) << 8) | (packed[2 * i + 1] & 0xff) : packed[i] & 0xff;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Ranking && Arrays.equals(packed, ((Ranking) o).packed);
+        }
+        
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
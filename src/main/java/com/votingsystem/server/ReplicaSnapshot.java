@@ -0,0 +1,47 @@
+package com.votingsystem.server;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The state of a primary written out as the mutations that rebuild it, for a replica
+ * that starts late or falls behind the primary's {@link MutationLog}
+ *
+ * The state is read while mutations keep arriving, so it holds every mutation logged
+ * before the snapshot's sequence number and possibly some later ones. Every mutation
+ * sets part of the state rather than adding to it, so the replica can apply the log
+ * from that sequence number on top, replaying those later mutations a second time.
+ */
+public final class ReplicaSnapshot implements Serializable {
+    
+    private static final long serialVersionUID = 1L;
+    
+    private final long sequence;
+    private final List<Mutation> mutations;
+    
+    /**
+     * Constructor for the ReplicaSnapshot
+     *
+     * @param sequence the sequence number of the first mutation to apply after the snapshot
+     * @param mutations the mutations rebuilding the state, in the order to apply them
+     */
+    public ReplicaSnapshot(long sequence, List<Mutation> mutations) {
+        this.sequence = sequence;
+        this.mutations = Collections.unmodifiableList(new ArrayList<>(mutations));
+    }
+    
+    /**
+     * Get the sequence number to follow the log from once the snapshot is applied
+     *
+     * @return the sequence number
+     */
+    public long getSequence() {
+        return sequence;
+    }
+    
+    public List<Mutation> getMutations() {
+        return mutations;
+    }
+}
@@ -0,0 +1,129 @@
+package com.votingsystem.server;
+
+import java.rmi.NotBoundException;
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps a read replica in sync by pulling the mutation log of its primary and
+ * applying the mutations in order
+ * 
+ * The replica tracks the last time it was fully caught up with the primary. Its
+ * state reflects every mutation the primary had appended at that time, so the age
+ * of that timestamp bounds how stale reads from the replica can be.
+ * 
+ * The primary only keeps its latest mutations, so a replica starting up, or one
+ * that fell behind further than that, first loads a snapshot of the primary and
+ * follows the log from there.
+ */
+public class ReplicaSync {
+    
+    private static final Logger LOGGER = Logger.getLogger(ReplicaSync.class.getName());
+    private static final String REPLICATION_SERVICE_NAME = "ReplicationService";
+    private static final int BATCH_SIZE = 1000;
+    private static final long RETRY_DELAY_MILLIS = 1000;
+    
+    private final VotingServiceImpl service;
+    private final String primaryHost;
+    private final int primaryPort;
+    private final String secret;
+    
+    // Sequence number of the next mutation to fetch from the primary, negative until a snapshot is loaded
+    private long appliedSequence = -1;
+    
+    // Time at which the replica was last known to be caught up with the primary
+    private volatile long caughtUpTime;
+    
+    /**
+     * Constructor for the ReplicaSync
+     * 
+     * @param service the replica service to apply mutations to
+     * @param primaryHost the hostname of the primary server
+     * @param primaryPort the registry port of the primary server
+     * @param secret the replication secret of the primary
+     */
+    public ReplicaSync(VotingServiceImpl service, String primaryHost, int primaryPort, String secret) {
+        this.service = service;
+        this.primaryHost = primaryHost;
+        this.primaryPort = primaryPort;
+        this.secret = secret;
+    }
+    
+    /**
+     * Start pulling mutations from the primary in a background thread
+     */
+    public void start() {
+        Thread syncThread = new Thread(this::run, "replica-sync");
+        syncThread.setDaemon(true);
+        syncThread.start();
+        
+        LOGGER.info("Replicating from primary at " + primaryHost + ":" + primaryPort);
+    }
+    
+    /**
+     * Get how far behind the primary this replica may be
+     * 
+     * @return the milliseconds since the replica was last caught up with the primary
+     */
+    public long getStalenessMillis() {
+        return System.currentTimeMillis() - caughtUpTime;
+    }
+    
+    private void run() {
+        ReplicationService primary = null;
+        
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                if (primary == null) {
+                    Registry registry = LocateRegistry.getRegistry(primaryHost, primaryPort);
+                    primary = (ReplicationService) registry.lookup(REPLICATION_SERVICE_NAME);
+                }
+                
+                if (appliedSequence < 0) {
+                    ReplicaSnapshot snapshot = primary.fetchSnapshot(secret);
+                    for (Mutation mutation : snapshot.getMutations()) {
+                        mutation.applyTo(service);
+                    }
+                    appliedSequence = snapshot.getSequence();
+                    LOGGER.info("Loaded a snapshot of " + snapshot.getMutations().size() + 
+                              " mutations, following the log from " + appliedSequence);
+                }
+                
+                long requestTime = System.currentTimeMillis();
+                List<Mutation> mutations = primary.fetchMutations(secret, appliedSequence, BATCH_SIZE);
+                
+                for (Mutation mutation : mutations) {
+                    mutation.applyTo(service);
+                }
+                appliedSequence += mutations.size();
+                
+                // A partial batch means everything the primary had when we asked has been applied
+                if (mutations.size() < BATCH_SIZE) {
+                    caughtUpTime = requestTime;
+                }
+            } catch (SnapshotRequiredException e) {
+                LOGGER.log(Level.WARNING, "Fell behind the primary's mutation log, loading a snapshot", e);
+                appliedSequence = -1;
+            } catch (SecurityException e) {
+                LOGGER.log(Level.SEVERE, "Primary refused the replication secret, retrying", e);
+                sleepBeforeRetry();
+            } catch (RemoteException | NotBoundException e) {
+                LOGGER.log(Level.WARNING, "Replication from primary failed, retrying", e);
+                primary = null;
+                sleepBeforeRetry();
+            }
+        }
+    }
+    
+    private void sleepBeforeRetry() {
+        try {
+            Thread.sleep(RETRY_DELAY_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
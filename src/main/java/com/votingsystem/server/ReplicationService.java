@@ -0,0 +1,43 @@
+package com.votingsystem.server;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.util.List;
+
+/**
+ * Remote interface a primary server exposes to its read replicas
+ * 
+ * The mutation log and snapshots hold every ballot and stored password hash, so every call must
+ * present the replication secret shared by the primary and its replicas.
+ */
+public interface ReplicationService extends Remote {
+    
+    /**
+     * Fetch mutations from the primary's mutation log
+     * 
+     * If the replica is caught up the call waits briefly for new mutations before
+     * returning an empty list, so a replica calling this in a loop receives a stream
+     * of mutations without busy polling.
+     * 
+     * @param secret the replication secret
+     * @param fromSequence the sequence number of the first mutation to fetch
+     * @param maxCount the maximum number of mutations to return
+     * @return the mutations, in log order
+     * @throws RemoteException if a remote communication error occurs
+     * @throws SecurityException if the secret is wrong
+     * @throws IllegalArgumentException if the sequence number is negative or the count is not positive
+     * @throws SnapshotRequiredException if the log no longer holds the mutation at the sequence number
+     */
+    List<Mutation> fetchMutations(String secret, long fromSequence, int maxCount) 
+            throws RemoteException, SecurityException, IllegalArgumentException, SnapshotRequiredException;
+    
+    /**
+     * Fetch a snapshot of the primary's state, to follow the mutation log from its sequence number on
+     * 
+     * @param secret the replication secret
+     * @return the snapshot
+     * @throws RemoteException if a remote communication error occurs
+     * @throws SecurityException if the secret is wrong
+     */
+    ReplicaSnapshot fetchSnapshot(String secret) throws RemoteException, SecurityException;
+}
@@ -0,0 +1,71 @@
+package com.votingsystem.server;
+
+import java.nio.charset.StandardCharsets;
+import java.rmi.RemoteException;
+import java.security.MessageDigest;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Implementation of the ReplicationService interface serving a server's mutation log and snapshots
+ */
+public class ReplicationServiceImpl extends UnicastRemoteObject implements ReplicationService {
+    
+    private static final long serialVersionUID = 1L;
+    private static final Logger LOGGER = Logger.getLogger(ReplicationServiceImpl.class.getName());
+    
+    // How long a fetch waits for new mutations when the replica is caught up
+    private static final long FETCH_WAIT_MILLIS = 1000;
+    
+    private final VotingServiceImpl votingService;
+    private final MutationLog mutationLog;
+    private final byte[] secret;
+    
+    /**
+     * Constructor for the ReplicationServiceImpl
+     * 
+     * @param votingService the primary service whose state is replicated
+     * @param secret the secret replicas must present
+     * @throws RemoteException if the service cannot be exported
+     */
+    public ReplicationServiceImpl(VotingServiceImpl votingService, String secret) throws RemoteException {
+        super();
+        this.votingService = votingService;
+        this.mutationLog = votingService.getMutationLog();
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+        
+        LOGGER.info("ReplicationService initialized");
+    }
+    
+    @Override
+    public List<Mutation> fetchMutations(String secret, long fromSequence, int maxCount) 
+            throws RemoteException, SecurityException, IllegalArgumentException, SnapshotRequiredException {
+        authenticate(secret);
+        if (fromSequence < 0 || maxCount < 1) {
+            throw new IllegalArgumentException("Sequence number must not be negative and count must be positive");
+        }
+        
+        try {
+            return mutationLog.read(fromSequence, maxCount, FETCH_WAIT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Collections.emptyList();
+        }
+    }
+    
+    @Override
+    public ReplicaSnapshot fetchSnapshot(String secret) throws RemoteException, SecurityException {
+        authenticate(secret);
+        return votingService.snapshot();
+    }
+    
+    private void authenticate(String secret) throws SecurityException {
+        // Compared in constant time, so the time taken doesn't reveal how much of a guess was right
+        if (secret == null || !MessageDigest.isEqual(this.secret, secret.getBytes(StandardCharsets.UTF_8))) {
+            LOGGER.warning("Replication request with a wrong secret");
+            throw new SecurityException("Invalid replication secret");
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.votingsystem.server;
+
+import com.votingsystem.common.Poll;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Votes of a poll counted per voter segment and option in every dimension of {@link VoterSegments}
+ *
+ * The cube is a fixed block of counters, one per dimension, segment and option, updated
+ * with every ballot, so breaking the results down by an attribute reads segments times
+ * options counters no matter how many voters there are. Only the segments of voters with
+ * attributes are remembered, so that changing a ballot takes its votes out of the
+ * segments they were counted in even if the voter's attributes changed in between.
+ *
+ * Cubes are only built once some voter has an attribute, since until then they would
+ * only count the plain results again. A cube built later starts from the ballots
+ * already cast, all in the missing segment, where they would have been counted.
+ */
+public class SegmentCube {
+    
+    private final int optionCount;
+    
+    // Counters by dimension, segment and option position
+    private final AtomicIntegerArray counts;
+    
+    // Segments each voter's ballot was counted in, if not all missing (username -> packed segments)
+    private final Map<String, Integer> counted = new ConcurrentHashMap<>();
+    
+    /**
+     * Constructor for the SegmentCube
+     *
+     * @param poll the poll
+     */
+    public SegmentCube(Poll poll) {
+        this.optionCount = poll.getOptions().size();
+        this.counts = new AtomicIntegerArray(VoterSegments.MAX_DIMENSIONS * VoterSegments.MAX_VALUES * optionCount);
+    }
+    
+    /**
+     * Record a voter's ballot, taking the one they cast before out of its segments
+     *
+     * Callers serialize ballots of the same poll, so the previous positions always
+     * belong to the ballot this cube last recorded for the voter.
+     *
+     * @param username the voter
+     * @param segments the voter's packed segments, see {@link VoterSegments#segmentsOf}
+     * @param positions the positions in the poll of the options the voter voted for
+     * @param previousPositions the positions on the voter's previous ballot, or null if this is their first ballot
+     */
+    public void replace(String username, int segments, int[] positions, int[] previousPositions) {
+        Integer previousSegments = segments == 0 ? counted.remove(username) : counted.put(username, segments);
+        
+        if (previousPositions != null) {
+            add(previousSegments != null ? previousSegments : 0, previousPositions, -1);
+        }
+        add(segments, positions, 1);
+    }
+    
+    private void add(int segments, int[] positions, int delta) {
+        for (int d = 0; d < VoterSegments.MAX_DIMENSIONS; d++) {
+            int base = (d * VoterSegments.MAX_VALUES + ((segments >>> (8 * d)) & 0xff)) * optionCount;
+            for (int position : positions) {
+                counts.addAndGet(base + position, delta);
+            }
+        }
+    }
+    
+    /**
+     * Count the ballots cast before the cube was built, when no voter had attributes yet
+     *
+     * @param votes the votes of every option position so far
+     */
+    public void seed(int[] votes) {
+        for (int d = 0; d < VoterSegments.MAX_DIMENSIONS; d++) {
+            int base = d * VoterSegments.MAX_VALUES * optionCount;
+            for (int i = 0; i < optionCount; i++) {
+                counts.addAndGet(base + i, votes[i]);
+            }
+        }
+    }
+    
+    /**
+     * Read the counters of one dimension
+     *
+     * @param dimension the number of the dimension
+     * @param segmentCount the number of segments to read
+     * @return the votes by segment and option position
+     */
+    public int[][] slice(int dimension, int segmentCount) {
+        int[][] votes = new int[segmentCount][optionCount];
+        for (int s = 0; s < segmentCount; s++) {
+            int base = (dimension * VoterSegments.MAX_VALUES + s) * optionCount;
+            for (int i = 0; i < optionCount; i++) {
+                votes[s][i] = counts.get(base + i);
+            }
+        }
+        return votes;
+    }
+}
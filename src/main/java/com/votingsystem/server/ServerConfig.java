@@ -0,0 +1,565 @@
+package com.votingsystem.server;
+
+import com.votingsystem.common.CompressingSocketFactory;
+import com.votingsystem.common.PasswordUtils;
+import com.votingsystem.common.TunedSocketFactory;
+import com.votingsystem.common.VotingService;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Command line configuration for the Voting Server
+ */
+public class ServerConfig {
+    
+    private int port = 1099;
+    private String voteLogPath;
+    private int shardIndex = 0;
+    private int shardCount = 1;
+    private String primaryHost;
+    private int primaryPort;
+    private long maxStalenessMillis = 5000;
+    private String replicationSecret;
+    private String ingestSecret;
+    private int replicationLogSize = 100_000;
+    private String[] ingestHosts;
+    private int[] ingestPorts;
+    private int ingestIndex = 0;
+    private long mergeIntervalMillis = 1000;
+    private int exportPort = 0;
+    private boolean socketTuning = false;
+    private boolean tcpNoDelay = true;
+    private int sendBufferSize = 0;
+    private int receiveBufferSize = 0;
+    private int backlog = 0;
+    private Integer compressThreshold;
+    private int maxConcurrentCalls = 0;
+    private double userRate = 0;
+    private int userBurst = 20;
+    private double hostRate = 0;
+    private int hostBurst = 200;
+    private int adaptiveConcurrency = 0;
+    private int hashThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private int hashQueueSize = 64;
+    private int passwordIterations = PasswordUtils.DEFAULT_ITERATIONS;
+    private int credentialCacheSize = 10000;
+    private long credentialCacheTtlMillis = 5 * 60 * 1000;
+    private Map<String, AdmissionControl.Priority> methodPriorities = new HashMap<>();
+    
+    /**
+     * Parse the server configuration from command line arguments
+     * 
+     * @param args the command line arguments
+     * @return the parsed configuration
+     * @throws IllegalArgumentException if an argument is unknown or missing its value
+     */
+    public static ServerConfig parse(String[] args) throws IllegalArgumentException {
+        ServerConfig config = new ServerConfig();
+        
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for argument: " + arg);
+            }
+            String value = args[++i];
+            
+            switch (arg) {
+                case "--port":
+                    config.port = parseInt(arg, value);
+                    break;
+                case "--shard-index":
+                    config.shardIndex = parseInt(arg, value);
+                    break;
+                case "--shard-count":
+                    config.shardCount = parseInt(arg, value);
+                    break;
+                case "--replica-of":
+                    config.primaryHost = parseHost(value);
+                    config.primaryPort = parsePort(arg, value);
+                    break;
+                case "--ingest-nodes":
+                    String[] nodes = value.split(",");
+                    config.ingestHosts = new String[nodes.length];
+                    config.ingestPorts = new int[nodes.length];
+                    for (int n = 0; n < nodes.length; n++) {
+                        config.ingestHosts[n] = parseHost(nodes[n].trim());
+                        config.ingestPorts[n] = parsePort(arg, nodes[n].trim());
+                    }
+                    break;
+                case "--ingest-index":
+                    config.ingestIndex = parseInt(arg, value);
+                    break;
+                case "--merge-interval-ms":
+                    config.mergeIntervalMillis = parseInt(arg, value);
+                    break;
+                case "--ingest-secret-file":
+                    config.ingestSecret = readSecret(arg, value);
+                    break;
+                case "--replication-secret-file":
+                    config.replicationSecret = readSecret(arg, value);
+                    break;
+                case "--replication-log-size":
+                    config.replicationLogSize = parseInt(arg, value);
+                    break;
+                case "--max-staleness-ms":
+                    config.maxStalenessMillis = parseInt(arg, value);
+                    break;
+                case "--export-port":
+                    config.exportPort = parseInt(arg, value);
+                    break;
+                case "--tcp-nodelay":
+                    config.socketTuning = true;
+                    config.tcpNoDelay = Boolean.parseBoolean(value);
+                    break;
+                case "--send-buffer":
+                    config.socketTuning = true;
+                    config.sendBufferSize = parseInt(arg, value);
+                    break;
+                case "--recv-buffer":
+                    config.socketTuning = true;
+                    config.receiveBufferSize = parseInt(arg, value);
+                    break;
+                case "--backlog":
+                    config.socketTuning = true;
+                    config.backlog = parseInt(arg, value);
+                    break;
+                case "--compress-threshold":
+                    config.compressThreshold = parseInt(arg, value);
+                    break;
+                case "--max-concurrent-calls":
+                    config.maxConcurrentCalls = parseInt(arg, value);
+                    break;
+                case "--user-rate":
+                    config.userRate = parseRate(arg, value);
+                    break;
+                case "--user-burst":
+                    config.userBurst = parseInt(arg, value);
+                    break;
+                case "--host-rate":
+                    config.hostRate = parseRate(arg, value);
+                    break;
+                case "--host-burst":
+                    config.hostBurst = parseInt(arg, value);
+                    break;
+                case "--adaptive-concurrency":
+                    config.adaptiveConcurrency = parseInt(arg, value);
+                    break;
+                case "--method-priority":
+                    for (String entry : value.split(",")) {
+                        parseMethodPriority(config.methodPriorities, entry.trim());
+                    }
+                    break;
+                case "--hash-threads":
+                    config.hashThreads = parseInt(arg, value);
+                    break;
+                case "--hash-queue":
+                    config.hashQueueSize = parseInt(arg, value);
+                    break;
+                case "--pbkdf2-iterations":
+                    config.passwordIterations = parseInt(arg, value);
+                    break;
+                case "--credential-cache-size":
+                    config.credentialCacheSize = parseInt(arg, value);
+                    break;
+                case "--credential-cache-ttl-ms":
+                    config.credentialCacheTtlMillis = parseInt(arg, value);
+                    break;
+                case "--vote-log":
+                    config.voteLogPath = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+        }
+        
+        if (config.shardCount < 1 || config.shardIndex < 0 || config.shardIndex >= config.shardCount) {
+            throw new IllegalArgumentException("Shard index must be between 0 and shard count - 1");
+        }
+        
+        if (config.replicationLogSize < 1) {
+            throw new IllegalArgumentException("Replication log size must be at least 1");
+        }
+        
+        if (config.primaryHost != null && config.replicationSecret == null) {
+            throw new IllegalArgumentException("A replica needs the primary's --replication-secret-file");
+        }
+        
+        if (config.ingestHosts != null && config.ingestSecret == null) {
+            throw new IllegalArgumentException("An ingest node needs the group's --ingest-secret-file");
+        }
+        
+        if (config.ingestHosts != null && (config.ingestIndex < 0 || config.ingestIndex >= config.ingestHosts.length)) {
+            throw new IllegalArgumentException("Ingest index must be between 0 and the number of ingest nodes - 1");
+        }
+        
+        if (config.hashThreads < 1 || config.hashQueueSize < 1 || config.passwordIterations < 1) {
+            throw new IllegalArgumentException("Password hashing threads, queue size and iterations must be at least 1");
+        }
+        
+        if (config.userBurst < 1 || config.hostBurst < 1) {
+            throw new IllegalArgumentException("Burst sizes must be at least 1");
+        }
+        
+        return config;
+    }
+    
+    private static void parseMethodPriority(Map<String, AdmissionControl.Priority> priorities, String entry) 
+            throws IllegalArgumentException {
+        int equals = entry.indexOf('=');
+        if (equals <= 0) {
+            throw new IllegalArgumentException("Method priority must be <method>=<high|normal|low>: " + entry);
+        }
+        
+        String methodName = entry.substring(0, equals);
+        boolean known = false;
+        for (Method method : VotingService.class.getMethods()) {
+            known |= method.getName().equals(methodName);
+        }
+        if (!known) {
+            throw new IllegalArgumentException("Unknown VotingService method: " + methodName);
+        }
+        
+        try {
+            priorities.put(methodName, AdmissionControl.Priority.valueOf(entry.substring(equals + 1).toUpperCase()));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Method priority must be high, normal or low: " + entry);
+        }
+    }
+    
+    private static String readSecret(String arg, String path) throws IllegalArgumentException {
+        String secret;
+        try {
+            secret = new String(Files.readAllBytes(Paths.get(path)), StandardCharsets.UTF_8).trim();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot read " + arg + " " + path + ": " + e.getMessage());
+        }
+        if (secret.isEmpty()) {
+            throw new IllegalArgumentException("The file of " + arg + " is empty: " + path);
+        }
+        return secret;
+    }
+    
+    private static String parseHost(String hostAndPort) {
+        int colon = hostAndPort.lastIndexOf(':');
+        return colon > 0 ? hostAndPort.substring(0, colon) : hostAndPort;
+    }
+    
+    private static int parsePort(String arg, String hostAndPort) throws IllegalArgumentException {
+        int colon = hostAndPort.lastIndexOf(':');
+        return colon > 0 ? parseInt(arg, hostAndPort.substring(colon + 1)) : 1099;
+    }
+    
+    private static double parseRate(String arg, String value) throws IllegalArgumentException {
+        double rate;
+        try {
+            rate = Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number for argument " + arg + ": " + value);
+        }
+        // Written this way round so NaN is refused too
+        if (!(rate > 0) || Double.isInfinite(rate)) {
+            throw new IllegalArgumentException("Rate of " + arg + " must be a positive number of calls per second: " + value);
+        }
+        return rate;
+    }
+    
+    private static int parseInt(String arg, String value) throws IllegalArgumentException {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number for argument " + arg + ": " + value);
+        }
+    }
+    
+    /**
+     * Get the port of the RMI registry
+     * 
+     * @return the registry port
+     */
+    public int getPort() {
+        return port;
+    }
+    
+    /**
+     * Get the path of the vote log file
+     * 
+     * @return the vote log path, or null if vote logging is disabled
+     */
+    public String getVoteLogPath() {
+        return voteLogPath;
+    }
+    
+    /**
+     * Get the index of this server among the shards of the cluster
+     * 
+     * @return the shard index, from 0 to shard count - 1
+     */
+    public int getShardIndex() {
+        return shardIndex;
+    }
+    
+    /**
+     * Get the number of shards the polls are spread over
+     * 
+     * @return the shard count, 1 for a single server
+     */
+    public int getShardCount() {
+        return shardCount;
+    }
+    
+    /**
+     * Get the hostname of the primary this server replicates
+     * 
+     * @return the primary hostname, or null if this server is not a read replica
+     */
+    public String getPrimaryHost() {
+        return primaryHost;
+    }
+    
+    /**
+     * Get the registry port of the primary this server replicates
+     * 
+     * @return the primary registry port
+     */
+    public int getPrimaryPort() {
+        return primaryPort;
+    }
+    
+    /**
+     * Get the secret shared by a primary and its read replicas
+     * 
+     * A primary only serves its mutation log when a secret is configured, and only to
+     * callers presenting it, since the log holds every ballot and password hash.
+     * 
+     * @return the replication secret, or null if this server doesn't serve replicas
+     */
+    public String getReplicationSecret() {
+        return replicationSecret;
+    }
+    
+    /**
+     * Get the secret shared by the nodes of an ingest group
+     * 
+     * Nodes only merge tally states from callers presenting it, since a merged counter
+     * can never go down again and would spread to the whole group.
+     * 
+     * @return the ingest secret, or null if this server is not part of an ingest group
+     */
+    public String getIngestSecret() {
+        return ingestSecret;
+    }
+    
+    /**
+     * Check whether this server serves its mutation log to read replicas
+     * 
+     * @return true if this is a primary with a replication secret
+     */
+    public boolean isReplicationPrimary() {
+        return replicationSecret != null && primaryHost == null;
+    }
+    
+    /**
+     * Get the number of most recent mutations a primary keeps for its replicas
+     * 
+     * A replica further behind than that loads a snapshot of the primary instead.
+     * 
+     * @return the mutation log size
+     */
+    public int getReplicationLogSize() {
+        return replicationLogSize;
+    }
+    
+    /**
+     * Get how far behind its primary a read replica may fall before it refuses reads
+     * 
+     * @return the maximum staleness in milliseconds
+     */
+    public long getMaxStalenessMillis() {
+        return maxStalenessMillis;
+    }
+    
+    /**
+     * Get the hostnames of the nodes of the ingest group this server belongs to
+     * 
+     * @return the hostnames by node index, or null if this server is not part of an ingest group
+     */
+    public String[] getIngestHosts() {
+        return ingestHosts;
+    }
+    
+    /**
+     * Get the registry ports of the nodes of the ingest group this server belongs to
+     * 
+     * @return the registry ports by node index
+     */
+    public int[] getIngestPorts() {
+        return ingestPorts;
+    }
+    
+    /**
+     * Get the index of this server in its ingest group
+     * 
+     * @return the ingest node index
+     */
+    public int getIngestIndex() {
+        return ingestIndex;
+    }
+    
+    /**
+     * Get the delay between two exchanges of partial tallies with the other ingest nodes
+     * 
+     * @return the merge interval in milliseconds
+     */
+    public long getMergeIntervalMillis() {
+        return mergeIntervalMillis;
+    }
+    
+    /**
+     * Get the fixed port remote objects are exported on
+     * 
+     * @return the export port, or 0 for an anonymous port
+     */
+    public int getExportPort() {
+        return exportPort;
+    }
+    
+    /**
+     * Get the socket factory applying the configured TCP options
+     * 
+     * @return the socket factory, or null to use the default RMI sockets
+     */
+    public TunedSocketFactory getSocketFactory() {
+        if (compressThreshold != null) {
+            return new CompressingSocketFactory(tcpNoDelay, sendBufferSize, receiveBufferSize, backlog, 
+                    compressThreshold);
+        }
+        if (!socketTuning) {
+            return null;
+        }
+        return new TunedSocketFactory(tcpNoDelay, sendBufferSize, receiveBufferSize, backlog);
+    }
+    
+    /**
+     * Check whether calls have to pass admission control before reaching the service
+     * 
+     * @return true if a concurrency limit or a rate limit is configured
+     */
+    public boolean isAdmissionControlEnabled() {
+        return maxConcurrentCalls > 0 || adaptiveConcurrency > 0 || userRate > 0 || hostRate > 0;
+    }
+    
+    /**
+     * Get the maximum number of calls the service runs at the same time
+     * 
+     * @return the concurrency limit, or 0 for no limit; the upper bound of an adaptive limit
+     */
+    public int getMaxConcurrentCalls() {
+        return maxConcurrentCalls;
+    }
+    
+    /**
+     * Get the sustained number of calls allowed per second for a user
+     * 
+     * @return the rate per second, or 0 for no limit
+     */
+    public double getUserRate() {
+        return userRate;
+    }
+    
+    /**
+     * Get the number of calls a user may make in a burst above its rate
+     * 
+     * @return the burst size
+     */
+    public int getUserBurst() {
+        return userBurst;
+    }
+    
+    /**
+     * Get the sustained number of calls allowed per second from a client host
+     * 
+     * @return the rate per second, or 0 for no limit
+     */
+    public double getHostRate() {
+        return hostRate;
+    }
+    
+    /**
+     * Get the number of calls a client host may make in a burst above its rate
+     * 
+     * @return the burst size
+     */
+    public int getHostBurst() {
+        return hostBurst;
+    }
+    
+    /**
+     * Get the initial concurrency limit when the limit adapts to the measured latency
+     * 
+     * @return the initial limit, or 0 to use the fixed concurrency limit
+     */
+    public int getAdaptiveConcurrency() {
+        return adaptiveConcurrency;
+    }
+    
+    /**
+     * Get the configured priorities of VotingService methods
+     * 
+     * @return the priorities by method name; methods missing from the map use their default
+     */
+    public Map<String, AdmissionControl.Priority> getMethodPriorities() {
+        return methodPriorities;
+    }
+    
+    /**
+     * Get the number of password hashes that may be derived at the same time
+     * 
+     * @return the number of password hashing threads
+     */
+    public int getHashThreads() {
+        return hashThreads;
+    }
+    
+    /**
+     * Get the number of password hashes that may wait for a hashing thread
+     * 
+     * @return the hashing queue size
+     */
+    public int getHashQueueSize() {
+        return hashQueueSize;
+    }
+    
+    /**
+     * Get the number of PBKDF2 iterations for new stored password hashes
+     * 
+     * @return the iteration count
+     */
+    public int getPasswordIterations() {
+        return passwordIterations;
+    }
+    
+    /**
+     * Get the maximum number of recently verified credentials kept to speed up repeated logins
+     * 
+     * @return the credential cache size, or 0 to disable the cache
+     */
+    public int getCredentialCacheSize() {
+        return credentialCacheSize;
+    }
+    
+    /**
+     * Get how long a verified credential stays cached
+     * 
+     * @return the time to live in milliseconds
+     */
+    public long getCredentialCacheTtlMillis() {
+        return credentialCacheTtlMillis;
+    }
+}
@@ -0,0 +1,15 @@
+package com.votingsystem.server;
+
+/**
+ * Thrown to a replica asking for mutations the primary's log no longer holds, because
+ * it fell too far behind or the primary restarted; the replica has to load a
+ * {@link ReplicaSnapshot} before it can follow the log again
+ */
+public class SnapshotRequiredException extends IllegalStateException {
+    
+    private static final long serialVersionUID = 1L;
+    
+    public SnapshotRequiredException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,29 @@
+package com.votingsystem.server;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+
+/**
+ * Remote interface the nodes of an ingest group use to merge their partial tallies
+ * 
+ * Merged counters never go down, so every call must present the secret shared by the
+ * nodes of the group.
+ */
+public interface TallyExchangeService extends Remote {
+    
+    /**
+     * Exchange tally states with another node
+     * 
+     * The receiving node merges the caller's state into its own and returns the
+     * merged result, so both nodes are up to date with each other after one call.
+     * 
+     * @param secret the ingest group's secret
+     * @param state the caller's tally state
+     * @return the receiving node's tally state after the merge
+     * @throws RemoteException if a remote communication error occurs
+     * @throws SecurityException if the secret is wrong
+     * @throws IllegalArgumentException if the state doesn't fit the receiving node's counters
+     */
+    DistributedTally.State exchange(String secret, DistributedTally.State state) 
+            throws RemoteException, SecurityException, IllegalArgumentException;
+}
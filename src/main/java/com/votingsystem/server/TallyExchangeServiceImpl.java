@@ -0,0 +1,47 @@
+package com.votingsystem.server;
+
+import java.nio.charset.StandardCharsets;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.security.MessageDigest;
+import java.util.logging.Logger;
+
+/**
+ * Implementation of the TallyExchangeService interface merging states into a server's tally
+ */
+public class TallyExchangeServiceImpl extends UnicastRemoteObject implements TallyExchangeService {
+    
+    private static final long serialVersionUID = 1L;
+    private static final Logger LOGGER = Logger.getLogger(TallyExchangeServiceImpl.class.getName());
+    
+    private final VotingServiceImpl service;
+    private final byte[] secret;
+    
+    /**
+     * Constructor for the TallyExchangeServiceImpl
+     * 
+     * @param service the service whose tally is merged
+     * @param secret the secret the other nodes must present
+     * @throws RemoteException if the service cannot be exported
+     */
+    public TallyExchangeServiceImpl(VotingServiceImpl service, String secret) throws RemoteException {
+        super();
+        this.service = service;
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+        
+        LOGGER.info("TallyExchangeService initialized");
+    }
+    
+    @Override
+    public DistributedTally.State exchange(String secret, DistributedTally.State state) 
+            throws RemoteException, SecurityException, IllegalArgumentException {
+        // Compared in constant time, so the time taken doesn't reveal how much of a guess was right
+        if (secret == null || !MessageDigest.isEqual(this.secret, secret.getBytes(StandardCharsets.UTF_8))) {
+            LOGGER.warning("Tally exchange with a wrong secret");
+            throw new SecurityException("Invalid ingest secret");
+        }
+        
+        service.mergeTally(state);
+        return service.getDistributedTally().snapshot();
+    }
+}
@@ -0,0 +1,93 @@
+package com.votingsystem.server;
+
+import java.rmi.NotBoundException;
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Periodically exchanges tally states with every other node of an ingest group
+ */
+public class TallyGossip {
+    
+    private static final Logger LOGGER = Logger.getLogger(TallyGossip.class.getName());
+    private static final String TALLY_EXCHANGE_SERVICE_NAME = "TallyExchangeService";
+    
+    private final VotingServiceImpl service;
+    private final String[] peerHosts;
+    private final int[] peerPorts;
+    private final int nodeIndex;
+    private final long intervalMillis;
+    private final String secret;
+    private final TallyExchangeService[] peers;
+    
+    /**
+     * Constructor for the TallyGossip
+     * 
+     * @param service the service whose tally is exchanged
+     * @param peerHosts the hostnames of all nodes of the ingest group, by node index
+     * @param peerPorts the registry ports of all nodes of the ingest group, by node index
+     * @param nodeIndex the index of this node, which is skipped
+     * @param intervalMillis the delay between two exchange rounds
+     * @param secret the secret shared by the nodes of the group
+     */
+    public TallyGossip(VotingServiceImpl service, String[] peerHosts, int[] peerPorts, int nodeIndex, 
+            long intervalMillis, String secret) {
+        this.service = service;
+        this.peerHosts = peerHosts;
+        this.peerPorts = peerPorts;
+        this.nodeIndex = nodeIndex;
+        this.intervalMillis = intervalMillis;
+        this.secret = secret;
+        this.peers = new TallyExchangeService[peerHosts.length];
+    }
+    
+    /**
+     * Start exchanging tallies in a background thread
+     */
+    public void start() {
+        Thread gossipThread = new Thread(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(intervalMillis);
+                    exchangeWithPeers();
+                } catch (InterruptedException e) {
+                    LOGGER.log(Level.SEVERE, "Tally gossip thread interrupted", e);
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }, "tally-gossip");
+        
+        gossipThread.setDaemon(true);
+        gossipThread.start();
+        
+        LOGGER.info("Tally gossip thread started");
+    }
+    
+    private void exchangeWithPeers() {
+        for (int peer = 0; peer < peers.length; peer++) {
+            if (peer == nodeIndex) {
+                continue;
+            }
+            
+            try {
+                if (peers[peer] == null) {
+                    peers[peer] = (TallyExchangeService) LocateRegistry.getRegistry(peerHosts[peer], peerPorts[peer])
+                            .lookup(TALLY_EXCHANGE_SERVICE_NAME);
+                }
+                
+                DistributedTally.State theirs = peers[peer].exchange(secret, service.getDistributedTally().snapshot());
+                service.mergeTally(theirs);
+            } catch (SecurityException | IllegalArgumentException e) {
+                // A node with another secret or group layout won't fix itself by retrying
+                LOGGER.log(Level.SEVERE, "Tally exchange with node " + peer + " refused", e);
+            } catch (RemoteException | NotBoundException e) {
+                // The peer catches up on a later round, merging is idempotent
+                LOGGER.log(Level.FINE, "Tally exchange with node " + peer + " failed", e);
+                peers[peer] = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.votingsystem.server;
+
+import com.votingsystem.common.PasswordUtils;
+import com.votingsystem.common.Poll;
+import com.votingsystem.common.VotingService;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Offline recount tool that recomputes poll tallies from a {@link VoteLog} and
+ * compares them with the live results reported by a running server.
+ *
+ * The log is split into ranges of records which are memory-mapped and counted in
+ * parallel on a fork/join pool; partial tallies are merged pairwise as the tasks join.
+ * Since every record carries both the option that gained a vote and the option that
+ * lost one, ranges can be counted independently of each other.
+ *
+ * Usage: TallyRecount &lt;vote-log&gt; [&lt;server-host[:port]&gt; &lt;username&gt; &lt;password&gt;]
+ */
+public class TallyRecount {
+    
+    private static final int DEFAULT_RMI_PORT = 1099;
+    private static final String SERVICE_NAME = "VotingService";
+    
+    // Number of records counted by a single task before it stops splitting (20 MB of log)
+    private static final long RECORDS_PER_TASK = 1L << 20;
+    
+    /**
+     * Recount all votes in a vote log
+     *
+     * @param logPath the path of the vote log
+     * @return the recounted tallies (pollId -> (optionId -> count))
+     * @throws IOException if the log cannot be read or is not a vote log
+     */
+    public static Map<Integer, Map<Integer, Long>> recount(Path logPath) throws IOException {
+        try (FileChannel channel = FileChannel.open(logPath, StandardOpenOption.READ)) {
+            VoteLog.validateHeader(channel);
+            
+            long records = (channel.size() - VoteLog.HEADER_SIZE) / VoteLog.RECORD_SIZE;
+            
+            Tally tally;
+            try {
+                tally = ForkJoinPool.commonPool().invoke(new RecountTask(channel, 0, records));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            
+            return tally.toMap();
+        }
+    }
+    
+    public static void main(String[] args) {
+        if (args.length != 1 && args.length != 4) {
+            System.err.println("Usage: TallyRecount <vote-log> [<server-host[:port]> <username> <password>]");
+            System.exit(2);
+        }
+        
+        try {
+            long start = System.nanoTime();
+            Map<Integer, Map<Integer, Long>> recounted = recount(Paths.get(args[0]));
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            
+            System.out.println("Recounted " + args[0] + " in " + elapsedMillis + " ms");
+            for (Map.Entry<Integer, Map<Integer, Long>> poll : recounted.entrySet()) {
+                System.out.println("Poll " + poll.getKey() + ": " + poll.getValue());
+            }
+            
+            if (args.length == 4) {
+                int mismatches = compareWithServer(recounted, args[1], args[2], args[3]);
+                if (mismatches > 0) {
+                    System.out.println(mismatches + " mismatch(es) between recount and live results");
+                    System.exit(1);
+                }
+                System.out.println("Recount matches live results");
+            }
+        } catch (Exception e) {
+            System.err.println("Recount failed: " + e);
+            System.exit(2);
+        }
+    }
+    
+    /**
+     * Compare recounted tallies with the live results of a running server
+     *
+     * Votes cast while the comparison runs show up as mismatches, so this should be
+     * run once the polls have closed or voting has been paused.
+     *
+     * @param recounted the recounted tallies
+     * @param hostAndPort the hostname of the RMI server, optionally followed by ':' and its registry port
+     * @param username the username to log in with
+     * @param password the plain text password to log in with
+     * @return the number of mismatching (poll, option) counts
+     * @throws Exception if the server cannot be reached or queried
+     */
+    private static int compareWithServer(Map<Integer, Map<Integer, Long>> recounted, String hostAndPort,
+            String username, String password) throws Exception {
+        int colon = hostAndPort.lastIndexOf(':');
+        String host = colon > 0 ? hostAndPort.substring(0, colon) : hostAndPort;
+        int port = colon > 0 ? Integer.parseInt(hostAndPort.substring(colon + 1)) : DEFAULT_RMI_PORT;
+        
+        Registry registry = LocateRegistry.getRegistry(host, port);
+        VotingService votingService = (VotingService) registry.lookup(SERVICE_NAME);
+        String sessionToken = votingService.login(username, PasswordUtils.hashPassword(password));
+        
+        try {
+            TreeSet<Integer> pollIds = new TreeSet<>(recounted.keySet());
+            for (Poll poll : votingService.getAvailablePolls(sessionToken)) {
+                pollIds.add(poll.getId());
+            }
+            
+            int mismatches = 0;
+            for (int pollId : pollIds) {
+                Map<Integer, Integer> live = votingService.getPollResults(sessionToken, pollId);
+                Map<Integer, Long> counted = recounted.getOrDefault(pollId, new HashMap<>());
+                
+                TreeSet<Integer> optionIds = new TreeSet<>(live.keySet());
+                optionIds.addAll(counted.keySet());
+                
+                for (int optionId : optionIds) {
+                    long liveCount = live.getOrDefault(optionId, 0);
+                    long recountCount = counted.getOrDefault(optionId, 0L);
+                    if (liveCount != recountCount) {
+                        System.out.println("MISMATCH poll " + pollId + " option " + optionId
+                                + ": recount=" + recountCount + " live=" + liveCount);
+                        mismatches++;
+                    }
+                }
+            }
+            return mismatches;
+        } finally {
+            votingService.logout(sessionToken);
+        }
+    }
+    
+    /**
+     * Fork/join task counting a range of records of the vote log
+     */
+    private static class RecountTask extends RecursiveTask<Tally> {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final FileChannel channel;
+        private final long fromRecord;
+        private final long toRecord;
+        
+        RecountTask(FileChannel channel, long fromRecord, long toRecord) {
+            this.channel = channel;
+            this.fromRecord = fromRecord;
+            this.toRecord = toRecord;
+        }
+        
+        @Override
+        protected Tally compute() {
+            if (toRecord - fromRecord <= RECORDS_PER_TASK) {
+                return countRange();
+            }
+            
+            long middle = (fromRecord + toRecord) >>> 1;
+            RecountTask left = new RecountTask(channel, fromRecord, middle);
+            RecountTask right = new RecountTask(channel, middle, toRecord);
+            left.fork();
+            Tally tally = right.compute();
+            tally.merge(left.join());
+            return tally;
+        }
+        
+        private Tally countRange() {
+            Tally tally = new Tally();
+            int length = (int) ((toRecord - fromRecord) * VoteLog.RECORD_SIZE);
+            if (length == 0) {
+                return tally;
+            }
+            
+            MappedByteBuffer buffer;
+            try {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+                        VoteLog.HEADER_SIZE + fromRecord * VoteLog.RECORD_SIZE, length);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            
+            for (int offset = 0; offset < length; offset += VoteLog.RECORD_SIZE) {
+                int pollId = buffer.getInt(offset);
+                int optionId = buffer.getInt(offset + 4);
+                int previousOptionId = buffer.getInt(offset + 8);
+                
+                if (optionId != VoteLog.NO_OPTION) {
+                    tally.add(pollId, optionId, 1);
+                }
+                if (previousOptionId != VoteLog.NO_OPTION) {
+                    tally.add(pollId, previousOptionId, -1);
+                }
+            }
+            return tally;
+        }
+    }
+    
+    /**
+     * Partial tally of a range of the vote log, indexed by poll ID and then option ID
+     */
+    private static class Tally {
+        
+        private final Map<Integer, long[]> counts = new HashMap<>();
+        
+        // Records of the same poll tend to be clustered, so remember the last poll looked up
+        private int lastPollId = Integer.MIN_VALUE;
+        private long[] lastCounts;
+        
+        void add(int pollId, int optionId, long delta) {
+            if (optionId < 0) {
+                return;
+            }
+            
+            long[] pollCounts = pollId == lastPollId ? lastCounts : counts.get(pollId);
+            if (pollCounts == null || optionId >= pollCounts.length) {
+                long[] grown = pollCounts == null ? new long[optionId + 1]
+                        : Arrays.copyOf(pollCounts, Math.max(optionId + 1, pollCounts.length * 2));
+                counts.put(pollId, grown);
+                pollCounts = grown;
+            }
+            
+            pollCounts[optionId] += delta;
+            lastPollId = pollId;
+            lastCounts = pollCounts;
+        }
+        
+        void merge(Tally other) {
+            for (Map.Entry<Integer, long[]> entry : other.counts.entrySet()) {
+                long[] theirs = entry.getValue();
+                for (int optionId = 0; optionId < theirs.length; optionId++) {
+                    if (theirs[optionId] != 0) {
+                        add(entry.getKey(), optionId, theirs[optionId]);
+                    }
+                }
+            }
+        }
+        
+        Map<Integer, Map<Integer, Long>> toMap() {
+            Map<Integer, Map<Integer, Long>> result = new TreeMap<>();
+            for (Map.Entry<Integer, long[]> entry : counts.entrySet()) {
+                Map<Integer, Long> pollCounts = new TreeMap<>();
+                long[] values = entry.getValue();
+                for (int optionId = 0; optionId < values.length; optionId++) {
+                    if (values[optionId] != 0) {
+                        pollCounts.put(optionId, values[optionId]);
+                    }
+                }
+                result.put(entry.getKey(), pollCounts);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.votingsystem.server;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket rate limiter
+ * 
+ * The bucket is kept as a single theoretical arrival time (the generic cell rate
+ * algorithm): every accepted call pushes it forward by one emission interval, and a
+ * call is rejected when it would end up further ahead of the current time than the
+ * burst allows. This is equivalent to a bucket of burst tokens refilled at the rate,
+ * but needs only one compare-and-set per call.
+ */
+public class TokenBucket {
+    
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    private final AtomicLong theoreticalArrivalTime;
+    
+    /**
+     * Constructor for the TokenBucket, starting full
+     * 
+     * @param ratePerSecond the sustained number of calls allowed per second
+     * @param burst the number of calls allowed back to back
+     */
+    public TokenBucket(double ratePerSecond, int burst) {
+        this.emissionIntervalNanos = (long) (1_000_000_000L / ratePerSecond);
+        this.burstToleranceNanos = emissionIntervalNanos * (Math.max(1, burst) - 1);
+        this.theoreticalArrivalTime = new AtomicLong(System.nanoTime());
+    }
+    
+    /**
+     * Take a token if one is available
+     * 
+     * @param now the current time from System.nanoTime()
+     * @return true if the call is allowed
+     */
+    public boolean tryAcquire(long now) {
+        while (true) {
+            long arrivalTime = theoreticalArrivalTime.get();
+            long base = Math.max(arrivalTime, now);
+            
+            if (base - now > burstToleranceNanos) {
+                return false;
+            }
+            if (theoreticalArrivalTime.compareAndSet(arrivalTime, base + emissionIntervalNanos)) {
+                return true;
+            }
+        }
+    }
+    
+    /**
+     * Check whether the bucket has refilled completely, so it can be discarded
+     * 
+     * @param now the current time from System.nanoTime()
+     * @return true if the bucket is full
+     */
+    public boolean isFull(long now) {
+        return theoreticalArrivalTime.get() - now <= 0;
+    }
+}
@@ -0,0 +1,124 @@
+package com.votingsystem.server;
+
+import com.votingsystem.common.PasswordUtils;
+import com.votingsystem.common.PollResults;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread-safe store of registered users and their stored password hashes
+ *
+ * Registration is an atomic put-if-absent, so two concurrent signups for the same
+ * username can never both succeed, and lookups during login take no lock at all.
+ * Hashes are kept packed into {@value PasswordUtils#PACKED_HASH_LENGTH} byte arrays
+ * rather than as their text form, which roughly halves the memory held per user for
+ * large electoral rolls.
+ */
+public class UserStore {
+    
+    /** Weight of a voter who was not given one, one vote in fixed point */
+    public static final long DEFAULT_WEIGHT = PollResults.WEIGHT_SCALE;
+    
+    private final Map<String, byte[]> credentials = new ConcurrentHashMap<>();
+    
+    // Fixed-point weights of the voters who don't have the default weight
+    private final Map<String, Long> weights = new ConcurrentHashMap<>();
+    
+    /**
+     * Register a user unless the username is already taken
+     *
+     * @param username the username
+     * @param storedHash the stored password hash
+     * @return true if the user was registered, false if the username already exists
+     * @throws IllegalArgumentException if the stored hash is malformed
+     */
+    public boolean register(String username, String storedHash) throws IllegalArgumentException {
+        return credentials.putIfAbsent(username, PasswordUtils.packStoredHash(storedHash)) == null;
+    }
+    
+    /**
+     * Remove a user and their weight
+     *
+     * @param username the username
+     * @return true if the user existed
+     */
+    public boolean remove(String username) {
+        weights.remove(username);
+        return credentials.remove(username) != null;
+    }
+    
+    /**
+     * Check whether a username is taken
+     *
+     * @param username the username
+     * @return true if the user exists
+     */
+    public boolean contains(String username) {
+        return credentials.containsKey(username);
+    }
+    
+    /**
+     * Get the packed stored password hash of a user
+     *
+     * @param username the username
+     * @return the packed stored hash, or null if the user doesn't exist
+     */
+    public byte[] getCredential(String username) {
+        return credentials.get(username);
+    }
+    
+    /**
+     * Get the usernames of the registered users
+     *
+     * @return a live, unmodifiable view of the usernames
+     */
+    public Set<String> usernames() {
+        return Collections.unmodifiableSet(credentials.keySet());
+    }
+    
+    /**
+     * Get the weights of the users who don't have the default weight
+     *
+     * @return a live, unmodifiable view of the weights by username
+     */
+    public Map<String, Long> customWeights() {
+        return Collections.unmodifiableMap(weights);
+    }
+    
+    /**
+     * Get the weight a user's votes carry in weighted polls
+     *
+     * @param username the username
+     * @return the weight in units of 1/{@value PollResults#WEIGHT_SCALE}
+     */
+    public long getWeight(String username) {
+        Long weight = weights.get(username);
+        return weight != null ? weight : DEFAULT_WEIGHT;
+    }
+    
+    /**
+     * Set the weight a user's votes carry in weighted polls from now on
+     *
+     * @param username the username
+     * @param weight the weight in units of 1/{@value PollResults#WEIGHT_SCALE}
+     */
+    public void setWeight(String username, long weight) {
+        if (weight == DEFAULT_WEIGHT) {
+            weights.remove(username);
+        } else {
+            weights.put(username, weight);
+        }
+    }
+    
+    /**
+     * Get the number of registered users
+     *
+     * @return the number of users
+     */
+    public int size() {
+        return credentials.size();
+    }
+}
@@ -0,0 +1,108 @@
+package com.votingsystem.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Logger;
+
+/**
+ * Append-only audit log of every vote cast or changed on the server.
+ *
+ * The file starts with an 8 byte header (magic number and format version) followed by
+ * fixed-width records, so the log can be split into independent ranges and recounted
+ * in parallel by {@link TallyRecount}. Each record holds the poll ID, the option that
+ * gained a vote, the option that lost one (-1 for a first vote) and the time of the vote.
+ * A voter withdrawing the approval of an option records -1 as the option that gained a vote.
+ */
+public class VoteLog implements Closeable {
+    
+    private static final Logger LOGGER = Logger.getLogger(VoteLog.class.getName());
+    
+    static final int MAGIC = 0x564F5445; // "VOTE"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    static final int RECORD_SIZE = 20;
+    
+    /** Option ID recorded as the previous option when a user votes for the first time, or as the
+     *  new option when a user withdraws an approval */
+    static final int NO_OPTION = -1;
+    
+    private final FileChannel channel;
+    private final ByteBuffer record;
+    
+    /**
+     * Open a vote log, creating it if it doesn't exist
+     *
+     * @param path the path of the log file
+     * @throws IOException if the file cannot be opened or is not a vote log
+     */
+    public VoteLog(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.record = ByteBuffer.allocate(RECORD_SIZE);
+        
+        if (channel.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            channel.write(header, 0);
+        } else {
+            validateHeader(channel);
+        }
+        
+        // Drop a torn trailing record left behind by a crash
+        long records = (channel.size() - HEADER_SIZE) / RECORD_SIZE;
+        channel.truncate(HEADER_SIZE + records * RECORD_SIZE);
+        channel.position(channel.size());
+        
+        LOGGER.info("Vote log opened at " + path + " with " + records + " records");
+    }
+    
+    /**
+     * Check that a channel starts with a valid vote log header
+     *
+     * @param channel the channel to check
+     * @throws IOException if the header is missing or invalid
+     */
+    static void validateHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        if (channel.read(header, 0) != HEADER_SIZE) {
+            throw new IOException("Vote log header is truncated");
+        }
+        header.flip();
+        if (header.getInt() != MAGIC) {
+            throw new IOException("Not a vote log file");
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported vote log version: " + version);
+        }
+    }
+    
+    /**
+     * Append a vote to the log
+     *
+     * @param pollId the ID of the poll
+     * @param optionId the ID of the option that received the vote, or -1 if an approval was only withdrawn
+     * @param previousOptionId the ID of the option the vote was moved from, or -1 for a first vote
+     * @throws IOException if the record cannot be written
+     */
+    public synchronized void append(int pollId, int optionId, int previousOptionId) throws IOException {
+        record.clear();
+        record.putInt(pollId)
+              .putInt(optionId)
+              .putInt(previousOptionId)
+              .putLong(System.currentTimeMillis())
+              .flip();
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+    }
+    
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,147 @@
+package com.votingsystem.server;
+
+import com.votingsystem.common.Poll;
+import com.votingsystem.common.VoteSeries;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Votes cast in a poll over time, kept in rings of time buckets
+ *
+ * Every resolution of {@link VoteSeries.Resolution} has its own ring with a fixed number
+ * of slots, so the memory a timeline takes doesn't grow with how long the poll runs. A
+ * slot holds the bucket of time it last counted votes for, and a bucket's per-option
+ * counts are only allocated once a vote falls into it, so a timeline takes memory for
+ * the buckets that saw votes rather than for the whole ring. A vote for a newer bucket
+ * replaces the bucket in its slot with a compare-and-set, so buckets roll over without
+ * locks or a clearing pass, and readers skip slots that belong to a bucket that has
+ * fallen out of the ring.
+ *
+ * Polls with more than {@value #MAX_OPTIONS} options have no timeline, which bounds a
+ * bucket's size.
+ */
+public class VoteTimeline {
+    
+    /** Largest number of options of a poll whose votes are kept over time */
+    public static final int MAX_OPTIONS = 256;
+    
+    private final Poll poll;
+    private final int optionCount;
+    private final List<AtomicReferenceArray<Bucket>> rings;
+    
+    /**
+     * Constructor for the VoteTimeline
+     *
+     * @param poll the poll, with at most {@value #MAX_OPTIONS} options
+     */
+    public VoteTimeline(Poll poll) {
+        this.poll = poll;
+        this.optionCount = poll.getOptions().size();
+        
+        VoteSeries.Resolution[] resolutions = VoteSeries.Resolution.values();
+        this.rings = new ArrayList<>(resolutions.length);
+        for (VoteSeries.Resolution resolution : resolutions) {
+            rings.add(new AtomicReferenceArray<>(resolution.getBucketCount()));
+        }
+    }
+    
+    /**
+     * Count a vote for an option
+     *
+     * @param position the position of the option in the poll
+     * @param nowMillis the time the vote was cast
+     */
+    public void record(int position, long nowMillis) {
+        VoteSeries.Resolution[] resolutions = VoteSeries.Resolution.values();
+        for (int r = 0; r < resolutions.length; r++) {
+            long index = nowMillis / resolutions[r].getBucketMillis();
+            int slot = slotOf(resolutions[r], index);
+            
+            AtomicReferenceArray<Bucket> ring = rings.get(r);
+            Bucket bucket = ring.get(slot);
+            while (bucket == null || bucket.index < index) {
+                Bucket fresh = new Bucket(index, optionCount);
+                if (ring.compareAndSet(slot, bucket, fresh)) {
+                    bucket = fresh;
+                } else {
+                    bucket = ring.get(slot);
+                }
+            }
+            
+            // A vote timed a whole ring behind the newest bucket has nowhere to go
+            if (bucket.index == index) {
+                bucket.votes.incrementAndGet(position);
+            }
+        }
+    }
+    
+    /**
+     * Read the most recent buckets of a resolution
+     *
+     * @param resolution the width of the buckets
+     * @param buckets the number of buckets to read, at most the number the ring keeps
+     * @param nowMillis the current time, which falls in the last bucket
+     * @return the votes of every option per bucket
+     */
+    public VoteSeries snapshot(VoteSeries.Resolution resolution, int buckets, long nowMillis) {
+        AtomicReferenceArray<Bucket> ring = rings.get(resolution.ordinal());
+        long last = nowMillis / resolution.getBucketMillis();
+        long first = last - buckets + 1;
+        
+        int[][] votes = new int[buckets][optionCount];
+        for (int b = 0; b < buckets; b++) {
+            Bucket bucket = ring.get(slotOf(resolution, first + b));
+            if (bucket != null && bucket.index == first + b) {
+                for (int i = 0; i < optionCount; i++) {
+                    votes[b][i] = bucket.votes.get(i);
+                }
+            }
+        }
+        
+        return new VoteSeries(poll.getId(), resolution, first * resolution.getBucketMillis(), optionIdsOf(poll), votes);
+    }
+    
+    /**
+     * Build the series of a poll that has no votes yet, without allocating its rings
+     *
+     * @param poll the poll
+     * @param resolution the width of the buckets
+     * @param buckets the number of buckets
+     * @param nowMillis the current time, which falls in the last bucket
+     * @return a series with no votes
+     */
+    public static VoteSeries empty(Poll poll, VoteSeries.Resolution resolution, int buckets, long nowMillis) {
+        long first = nowMillis / resolution.getBucketMillis() - buckets + 1;
+        return new VoteSeries(poll.getId(), resolution, first * resolution.getBucketMillis(), optionIdsOf(poll),
+                new int[buckets][poll.getOptions().size()]);
+    }
+    
+    private static int[] optionIdsOf(Poll poll) {
+        int[] optionIds = new int[poll.getOptions().size()];
+        for (int i = 0; i < optionIds.length; i++) {
+            optionIds[i] = poll.getOptions().get(i).getId();
+        }
+        return optionIds;
+    }
+    
+    private static int slotOf(VoteSeries.Resolution resolution, long index) {
+        return (int) (index % resolution.getBucketCount());
+    }
+    
+    /**
+     * Votes per option in one bucket of time
+     */
+    private static final class Bucket {
+        
+        final long index;
+        final AtomicIntegerArray votes;
+        
+        Bucket(long index, int optionCount) {
+            this.index = index;
+            this.votes = new AtomicIntegerArray(optionCount);
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.votingsystem.server;
+
+import com.votingsystem.common.PasswordUtils;
+import com.votingsystem.common.RateLimitExceededException;
+import com.votingsystem.common.ServerOverloadedException;
+import com.votingsystem.common.VotingService;
+
+import java.io.BufferedReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.rmi.registry.LocateRegistry;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bulk import tool registering the voters of an election roll on a running server
+ *
+ * The roll is a CSV file with one "username,password" line per voter. Lines are read
+ * in chunks, and every chunk is hashed on a pool with one thread per core (the client
+ * SHA-256 hash followed by the salted PBKDF2 derivation the server would otherwise do)
+ * and then sent to the server in a single importUsers call. The server only inserts
+ * the finished hashes, so an import doesn't compete with votes for the server's CPU,
+ * and the number of chunks in flight is bounded so the roll is never held in memory.
+ *
+ * Usage: VoterImport &lt;roll.csv&gt; &lt;server-host[:port]&gt; &lt;admin-username&gt; &lt;admin-password&gt;
+ *        [&lt;pbkdf2-iterations&gt;] [&lt;chunk-size&gt;]
+ *
+ * For a sharded cluster, run the import once against every shard.
+ */
+public class VoterImport {
+    
+    private static final String SERVICE_NAME = "VotingService";
+    
+    private static final int DEFAULT_CHUNK_SIZE = 5000;
+    private static final int MAX_RETRIES = 100;
+    private static final long RETRY_DELAY_MILLIS = 200;
+    private static final long PROGRESS_INTERVAL_MILLIS = 2000;
+    
+    private final VotingService service;
+    private final String sessionToken;
+    private final int iterations;
+    private final int chunkSize;
+    private final int threads;
+    
+    private final LongAdder read = new LongAdder();
+    private final LongAdder imported = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final AtomicReference<Exception> failure = new AtomicReference<>();
+    
+    /**
+     * Constructor for the VoterImport
+     *
+     * @param service the voting service to import into
+     * @param sessionToken the session token of an administrator
+     * @param iterations the number of PBKDF2 iterations of the stored hashes
+     * @param chunkSize the number of voters sent in one call
+     * @param threads the number of threads hashing credentials
+     */
+    public VoterImport(VotingService service, String sessionToken, int iterations, int chunkSize, int threads) {
+        this.service = service;
+        this.sessionToken = sessionToken;
+        this.iterations = iterations;
+        this.chunkSize = chunkSize;
+        this.threads = threads;
+    }
+    
+    public static void main(String[] args) {
+        if (args.length < 4 || args.length > 6) {
+            System.err.println("Usage: VoterImport <roll.csv> <server-host[:port]> <admin-username> <admin-password> "
+                    + "[<pbkdf2-iterations>] [<chunk-size>]");
+            System.exit(2);
+        }
+        
+        try {
+            int iterations = args.length > 4 ? Integer.parseInt(args[4]) : PasswordUtils.DEFAULT_ITERATIONS;
+            int chunkSize = args.length > 5 ? Integer.parseInt(args[5]) : DEFAULT_CHUNK_SIZE;
+            
+            String hostAndPort = args[1];
+            int colon = hostAndPort.lastIndexOf(':');
+            String host = colon > 0 ? hostAndPort.substring(0, colon) : hostAndPort;
+            int port = colon > 0 ? Integer.parseInt(hostAndPort.substring(colon + 1)) : 1099;
+            
+            VotingService service = (VotingService) LocateRegistry.getRegistry(host, port).lookup(SERVICE_NAME);
+            String sessionToken = service.login(args[2], PasswordUtils.hashPassword(args[3]));
+            
+            try {
+                VoterImport voterImport = new VoterImport(service, sessionToken, iterations, chunkSize,
+                        Runtime.getRuntime().availableProcessors());
+                voterImport.run(args[0]);
+            } finally {
+                service.logout(sessionToken);
+            }
+        } catch (Exception e) {
+            System.err.println("Import failed: " + e);
+            System.exit(2);
+        }
+    }
+    
+    /**
+     * Import every voter of a roll file
+     *
+     * @param rollPath the path of the CSV file
+     * @throws Exception if the file cannot be read or the server rejects a chunk
+     */
+    public void run(String rollPath) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        
+        // Two chunks per thread keep every core busy while one is being sent
+        Semaphore chunksInFlight = new Semaphore(threads * 2);
+        long start = System.nanoTime();
+        long nextProgress = System.currentTimeMillis() + PROGRESS_INTERVAL_MILLIS;
+        
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(rollPath), StandardCharsets.UTF_8)) {
+            String[] usernames = new String[chunkSize];
+            String[] passwords = new String[chunkSize];
+            int count = 0;
+            long lineNumber = 0;
+            String line;
+            
+            while ((line = reader.readLine()) != null && failure.get() == null) {
+                lineNumber++;
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                
+                int comma = line.indexOf(',');
+                if (comma <= 0) {
+                    throw new IllegalArgumentException("Line " + lineNumber + " is not username,password");
+                }
+                usernames[count] = line.substring(0, comma).trim();
+                passwords[count] = line.substring(comma + 1);
+                count++;
+                read.increment();
+                
+                if (count == chunkSize) {
+                    submit(pool, chunksInFlight, usernames, passwords);
+                    usernames = new String[chunkSize];
+                    passwords = new String[chunkSize];
+                    count = 0;
+                }
+                
+                if (System.currentTimeMillis() >= nextProgress) {
+                    printProgress(start);
+                    nextProgress += PROGRESS_INTERVAL_MILLIS;
+                }
+            }
+            
+            if (count > 0) {
+                String[] lastUsernames = new String[count];
+                String[] lastPasswords = new String[count];
+                System.arraycopy(usernames, 0, lastUsernames, 0, count);
+                System.arraycopy(passwords, 0, lastPasswords, 0, count);
+                submit(pool, chunksInFlight, lastUsernames, lastPasswords);
+            }
+        } finally {
+            pool.shutdown();
+            while (!pool.awaitTermination(PROGRESS_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                printProgress(start);
+            }
+        }
+        
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        
+        printProgress(start);
+        System.out.println("Import complete: " + imported.sum() + " voters registered, "
+                + (sent.sum() - imported.sum()) + " already existed");
+    }
+    
+    private void submit(ExecutorService pool, Semaphore chunksInFlight, String[] usernames, String[] passwords)
+            throws InterruptedException {
+        chunksInFlight.acquire();
+        pool.execute(() -> {
+            try {
+                if (failure.get() == null) {
+                    importChunk(usernames, passwords);
+                }
+            } catch (Exception e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                chunksInFlight.release();
+            }
+        });
+    }
+    
+    private void importChunk(String[] usernames, String[] passwords) throws Exception {
+        String[] storedHashes = new String[passwords.length];
+        for (int i = 0; i < passwords.length; i++) {
+            storedHashes[i] = PasswordUtils.createStoredHash(PasswordUtils.hashPassword(passwords[i]), iterations);
+        }
+        
+        for (int attempt = 1; ; attempt++) {
+            try {
+                imported.add(service.importUsers(sessionToken, usernames, storedHashes));
+                sent.add(usernames.length);
+                return;
+            } catch (ServerOverloadedException | RateLimitExceededException e) {
+                // The server is protecting its votes, so back off and try again
+                if (attempt >= MAX_RETRIES) {
+                    throw e;
+                }
+                Thread.sleep(RETRY_DELAY_MILLIS);
+            }
+        }
+    }
+    
+    private void printProgress(long start) {
+        double seconds = Math.max(1e-3, (System.nanoTime() - start) / 1e9);
+        System.out.printf("%,d read, %,d sent, %,d registered (%,.0f voters/s)%n",
+                read.sum(), sent.sum(), imported.sum(), sent.sum() / seconds);
+    }
+}
@@ -0,0 +1,177 @@
+package com.votingsystem.server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Attributes of voters, such as their region or department, used to break results down into segments
+ *
+ * There are at most {@value #MAX_DIMENSIONS} attribute names (dimensions), each with at
+ * most {@value #MAX_VALUES} values counting the missing value. Names and values are
+ * numbered in the order they are first seen, so a voter's segment in every dimension
+ * packs into one byte and all of them into a single int, which is what the
+ * {@link SegmentCube}s of the polls count by. Voters without attributes are in segment 0
+ * of every dimension and take no memory here.
+ */
+public class VoterSegments {
+    
+    /** Largest number of attribute names */
+    public static final int MAX_DIMENSIONS = 4;
+    
+    /** Largest number of values of one attribute, counting the missing value */
+    public static final int MAX_VALUES = 64;
+    
+    // Attribute names in the order they were first seen, and their values with null (missing) first
+    private final List<String> dimensions = new ArrayList<>();
+    private final List<List<String>> values = new ArrayList<>();
+    private final Map<String, Map<String, Integer>> valueIndex = new HashMap<>();
+    
+    // Packed segments of the voters who have attributes (username -> one byte per dimension)
+    private final Map<String, Integer> segments = new ConcurrentHashMap<>();
+    
+    /**
+     * Replace the attributes of a voter
+     *
+     * Nothing changes if any of the attributes would exceed the limits.
+     *
+     * @param username the voter
+     * @param attributes the voter's attributes (name -> value); missing or empty values are cleared
+     * @throws IllegalArgumentException if there would be too many attribute names or values
+     */
+    public synchronized void setAttributes(String username, Map<String, String> attributes) {
+        int newDimensions = 0;
+        Map<String, Integer> newValues = new HashMap<>();
+        for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+            String value = attribute.getValue();
+            if (value == null || value.isEmpty()) {
+                continue;
+            }
+            Map<String, Integer> index = valueIndex.get(attribute.getKey());
+            if (index == null) {
+                newDimensions++;
+                newValues.put(attribute.getKey(), 1);
+            } else if (!index.containsKey(value)) {
+                newValues.merge(attribute.getKey(), 1, Integer::sum);
+            }
+        }
+        if (dimensions.size() + newDimensions > MAX_DIMENSIONS) {
+            throw new IllegalArgumentException("Voters can have at most " + MAX_DIMENSIONS + " attributes");
+        }
+        for (Map.Entry<String, Integer> added : newValues.entrySet()) {
+            Map<String, Integer> index = valueIndex.get(added.getKey());
+            if ((index != null ? index.size() : 1) + added.getValue() > MAX_VALUES) {
+                throw new IllegalArgumentException("Attribute " + added.getKey() + " can have at most "
+                        + (MAX_VALUES - 1) + " values");
+            }
+        }
+        
+        int packed = 0;
+        for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+            String value = attribute.getValue();
+            if (value == null || value.isEmpty()) {
+                continue;
+            }
+            packed |= intern(attribute.getKey(), value) << (8 * dimensionOf(attribute.getKey()));
+        }
+        
+        if (packed == 0) {
+            segments.remove(username);
+        } else {
+            segments.put(username, packed);
+        }
+    }
+    
+    private int intern(String dimension, String value) {
+        Map<String, Integer> index = valueIndex.get(dimension);
+        if (index == null) {
+            index = new HashMap<>();
+            List<String> names = new ArrayList<>();
+            names.add(null);
+            valueIndex.put(dimension, index);
+            values.add(names);
+            dimensions.add(dimension);
+        }
+        
+        Integer segment = index.get(value);
+        if (segment == null) {
+            List<String> names = values.get(dimensionOf(dimension));
+            segment = names.size();
+            names.add(value);
+            index.put(value, segment);
+        }
+        return segment;
+    }
+    
+    /**
+     * Get the number of attribute names voters have had
+     *
+     * @return the number of dimensions
+     */
+    public synchronized int dimensionCount() {
+        return dimensions.size();
+    }
+    
+    /**
+     * Get the packed segments of a voter
+     *
+     * @param username the voter
+     * @return the voter's segment in every dimension, one byte per dimension in the order of {@link #dimensionOf}
+     */
+    public int segmentsOf(String username) {
+        Integer packed = segments.get(username);
+        return packed != null ? packed : 0;
+    }
+    
+    /**
+     * Get the voters who have attributes
+     *
+     * @return a live, unmodifiable view of their usernames
+     */
+    public Set<String> voters() {
+        return Collections.unmodifiableSet(segments.keySet());
+    }
+    
+    /**
+     * Get the attributes of a voter
+     *
+     * @param username the voter
+     * @return the voter's attributes (name -> value), empty if the voter has none
+     */
+    public synchronized Map<String, String> attributesOf(String username) {
+        int packed = segmentsOf(username);
+        Map<String, String> attributes = new HashMap<>();
+        for (int dimension = 0; dimension < dimensions.size(); dimension++) {
+            int segment = (packed >>> (8 * dimension)) & 0xff;
+            if (segment != 0) {
+                attributes.put(dimensions.get(dimension), values.get(dimension).get(segment));
+            }
+        }
+        return attributes;
+    }
+    
+    /**
+     * Get the number of an attribute name
+     *
+     * @param dimension the attribute name
+     * @return the number of the dimension, or -1 if no voter ever had the attribute
+     */
+    public synchronized int dimensionOf(String dimension) {
+        return dimensions.indexOf(dimension);
+    }
+    
+    /**
+     * Get the values of an attribute
+     *
+     * @param dimension the number of the dimension
+     * @return the values by segment, null (missing) first
+     */
+    public synchronized List<String> valuesOf(int dimension) {
+        return Collections.unmodifiableList(new ArrayList<>(values.get(dimension)));
+    }
+
+}
@@ -1,9 +1,12 @@
 package com.votingsystem.server;
 
+import com.votingsystem.common.TunedSocketFactory;
 import com.votingsystem.common.VotingService;
 
+import java.nio.file.Paths;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -13,28 +16,67 @@ import java.util.logging.Logger;
 public class VotingServer {
     
     private static final Logger LOGGER = Logger.getLogger(VotingServer.class.getName());
-    private static final int RMI_PORT = 1099;
     private static final String SERVICE_NAME = "VotingService";
+    private static final String REPLICATION_SERVICE_NAME = "ReplicationService";
+    private static final String TALLY_EXCHANGE_SERVICE_NAME = "TallyExchangeService";
     
     public static void main(String[] args) {
         try {
+            ServerConfig config = ServerConfig.parse(args);
+            
             // Set security manager if needed
             if (System.getSecurityManager() == null) {
                 System.setSecurityManager(new SecurityManager());
             }
             
-            LOGGER.info("Starting RMI registry on port " + RMI_PORT);
+            LOGGER.info("Starting RMI registry on port " + config.getPort());
             
             // Create and export the registry instance on the specified port
-            Registry registry = LocateRegistry.createRegistry(RMI_PORT);
+            Registry registry = LocateRegistry.createRegistry(config.getPort());
+            
+            // Open the vote log if vote logging is enabled
+            VoteLog voteLog = null;
+            if (config.getVoteLogPath() != null) {
+                voteLog = new VoteLog(Paths.get(config.getVoteLogPath()));
+            }
             
             // Create the service implementation
-            VotingService votingService = new VotingServiceImpl();
+            VotingServiceImpl votingService = new VotingServiceImpl(config, voteLog);
+            
+            // Put admission control in front of the service if limits are configured
+            if (config.isAdmissionControlEnabled()) {
+                UnicastRemoteObject.unexportObject(votingService, true);
+                VotingService admitted = AdmissionControl.wrap(votingService, config);
+                TunedSocketFactory socketFactory = config.getSocketFactory();
+                registry.rebind(SERVICE_NAME, UnicastRemoteObject.exportObject(admitted, 
+                        config.getExportPort(), socketFactory, socketFactory));
+                LOGGER.info("Admission control enabled");
+            } else {
+                // Bind the service to the registry
+                registry.rebind(SERVICE_NAME, votingService);
+            }
             
-            // Bind the service to the registry
-            registry.rebind(SERVICE_NAME, votingService);
+            // Serve the mutation log so read replicas can follow this server, only to holders of the secret
+            if (config.isReplicationPrimary()) {
+                registry.rebind(REPLICATION_SERVICE_NAME, new ReplicationServiceImpl(votingService, config.getReplicationSecret()));
+                LOGGER.info("Serving the mutation log to read replicas");
+            }
+            
+            // Merge partial tallies with the other nodes of the ingest group
+            if (config.getIngestHosts() != null) {
+                registry.rebind(TALLY_EXCHANGE_SERVICE_NAME, new TallyExchangeServiceImpl(votingService, config.getIngestSecret()));
+                new TallyGossip(votingService, config.getIngestHosts(), config.getIngestPorts(), 
+                        config.getIngestIndex(), config.getMergeIntervalMillis(), config.getIngestSecret()).start();
+                LOGGER.info("Running as ingest node " + config.getIngestIndex() + " of " 
+                        + config.getIngestHosts().length);
+            }
+            
+            if (config.getPrimaryHost() != null) {
+                LOGGER.info("Running as a read replica of " + config.getPrimaryHost() + ":" + config.getPrimaryPort());
+            }
             
-            LOGGER.info("VotingService bound to registry");
+            LOGGER.info("VotingService bound to registry as shard " + config.getShardIndex() 
+                    + " of " + config.getShardCount());
             System.out.println("VotingServer is running...");
             System.out.println("Press Ctrl+C to stop the server");
             
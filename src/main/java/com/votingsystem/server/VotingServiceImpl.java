@@ -1,10 +1,23 @@
 package com.votingsystem.server;
 
+import com.votingsystem.common.ConsistentHashRing;
 import com.votingsystem.common.Poll;
 import com.votingsystem.common.PollOption;
+import com.votingsystem.common.PollPage;
+import com.votingsystem.common.PollQuery;
+import com.votingsystem.common.PollResults;
+import com.votingsystem.common.PollSearchHit;
+import com.votingsystem.common.PollState;
+import com.votingsystem.common.PollType;
+import com.votingsystem.common.PollView;
+import com.votingsystem.common.RankedResults;
+import com.votingsystem.common.ResultBreakdown;
+import com.votingsystem.common.VoteSeries;
 import com.votingsystem.common.VotingService;
 import com.votingsystem.common.PasswordUtils;
 
+import java.io.IOException;
+import java.math.BigDecimal;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
 import java.util.*;
@@ -20,8 +33,15 @@ public class VotingServiceImpl extends UnicastRemoteObject implements VotingServ
     private static final long serialVersionUID = 1L;
     private static final Logger LOGGER = Logger.getLogger(VotingServiceImpl.class.getName());
     
-    // In-memory storage for users (username -> password)
-    private final Map<String, String> users;
+    // In-memory storage for users and their stored password hashes
+    private final UserStore users;
+    
+    // Pool deriving and verifying stored password hashes off the RMI threads
+    private final PasswordHasher passwordHasher;
+    private final int passwordIterations;
+    
+    // Credentials that recently passed the slow password check
+    private final CredentialCache credentialCache;
     
     // In-memory storage for active sessions (sessionToken -> username)
     private final Map<String, SessionInfo> activeSessions;
@@ -35,24 +55,139 @@ public class VotingServiceImpl extends UnicastRemoteObject implements VotingServ
     // In-memory storage for poll results (pollId -> (optionId -> count))
     private final Map<Integer, Map<Integer, Integer>> pollResults;
     
+    // Results frozen when a poll closes, served without copying or locking
+    private final Map<Integer, PollResults> finalResults;
+    
+    // Opens and closes polls at their start and end dates
+    private final PollScheduler pollScheduler;
+    
+    // How long after a poll's close an ingest node freezes its merged results
+    private final long ingestFreezeDelayMillis;
+    
+    // Ballots of the ranked-choice polls (pollId -> ballots)
+    private final Map<Integer, RankedTally> rankedTallies;
+    
+    // Ballots and counters of the approval polls (pollId -> ballots)
+    private final Map<Integer, ApprovalTally> approvalTallies;
+    
+    // Weighted totals of weighted polls (pollId -> tally)
+    private final Map<Integer, WeightedTally> weightedTallies;
+    
+    // Votes over time of the polls that received votes (pollId -> timeline)
+    private final Map<Integer, VoteTimeline> timelines;
+    
+    // Attributes of the voters, and the votes of every poll counted by them (pollId -> cube)
+    private final VoterSegments voterSegments;
+    private final Map<Integer, SegmentCube> segmentCubes;
+    
+    // Set once the first voter attribute exists; until then polls have no cube
+    private volatile boolean segmentCubesEnabled;
+    
+    // Polls sorted by end date and by title word for listings
+    private final PollIndex pollIndex;
+    
+    // Words of the poll titles and descriptions for searches
+    private final PollSearchIndex pollSearchIndex;
+    
     // Set of admin usernames
     private final Set<String> admins;
     
+    // Audit log of votes, or null if vote logging is disabled
+    private final VoteLog voteLog;
+    
+    // Ring deciding which shard owns each poll, and the index of this shard in it
+    private final ConsistentHashRing shardRing;
+    private final int shardIndex;
+    
+    // Log of the latest changes to the voting state, served to read replicas, or null if this server has none
+    private final MutationLog mutationLog;
+    
+    // Replication from the primary when this server is a read replica, null otherwise
+    private final ReplicaSync replicaSync;
+    
+    // Maximum staleness in milliseconds a replica tolerates before refusing reads
+    private final long maxStalenessMillis;
+    
+    // Tallies shared with the other nodes of an ingest group, or null for a standalone server
+    private final DistributedTally distributedTally;
+    private final int ingestIndex;
+    private final int ingestCount;
+    
     // Next poll ID for auto-increment
     private int nextPollId;
     
     // Session timeout in milliseconds (30 minutes)
     private static final long SESSION_TIMEOUT = 30 * 60 * 1000;
     
+    // Voter weights are fixed point with this many decimals (PollResults.WEIGHT_SCALE)
+    private static final int WEIGHT_DECIMALS = 6;
+    
+    // Largest voter weight, so that weighted totals of millions of voters still fit in a long
+    private static final BigDecimal MAX_VOTER_WEIGHT = BigDecimal.valueOf(1_000_000);
+    
+    // Largest number of polls on one page of a listing
+    private static final int MAX_PAGE_SIZE = 500;
+    
+    // Largest number of hits of one search
+    private static final int MAX_SEARCH_HITS = 100;
+    
+    // Number of users in each import mutation of a snapshot
+    private static final int SNAPSHOT_BATCH_SIZE = 10_000;
+    
+    // Merges an ingest node waits for after a poll closes, so votes the other nodes took before the close arrive
+    private static final int INGEST_FREEZE_MERGES = 3;
+    
     public VotingServiceImpl() throws RemoteException {
-        super();
-        this.users = new HashMap<>();
+        this(new ServerConfig(), null);
+    }
+    
+    /**
+     * Constructor for the VotingServiceImpl
+     * 
+     * @param config the server configuration
+     * @param voteLog the audit log to append votes to, or null to disable vote logging
+     * @throws RemoteException if the service cannot be exported
+     */
+    public VotingServiceImpl(ServerConfig config, VoteLog voteLog) throws RemoteException {
+        super(config.getExportPort(), config.getSocketFactory(), config.getSocketFactory());
+        this.users = new UserStore();
+        this.passwordIterations = config.getPasswordIterations();
+        this.passwordHasher = new PasswordHasher(config.getHashThreads(), config.getHashQueueSize(), 
+                passwordIterations);
+        this.credentialCache = new CredentialCache(config.getCredentialCacheSize(), config.getCredentialCacheTtlMillis());
         this.activeSessions = new ConcurrentHashMap<>();
-        this.polls = new HashMap<>();
-        this.userVotes = new HashMap<>();
-        this.pollResults = new HashMap<>();
+        this.polls = new ConcurrentHashMap<>();
+        this.userVotes = new ConcurrentHashMap<>();
+        this.pollResults = new ConcurrentHashMap<>();
         this.admins = new HashSet<>();
+        this.voteLog = voteLog;
+        this.shardRing = new ConsistentHashRing(config.getShardCount());
+        this.shardIndex = config.getShardIndex();
+        this.mutationLog = config.isReplicationPrimary() ? new MutationLog(config.getReplicationLogSize()) : null;
+        this.maxStalenessMillis = config.getMaxStalenessMillis();
+        
+        if (config.getIngestHosts() != null) {
+            this.ingestIndex = config.getIngestIndex();
+            this.ingestCount = config.getIngestHosts().length;
+            this.distributedTally = new DistributedTally(ingestIndex, ingestCount);
+        } else {
+            this.ingestIndex = 0;
+            this.ingestCount = 1;
+            this.distributedTally = null;
+        }
         this.nextPollId = 1;
+        this.finalResults = new ConcurrentHashMap<>();
+        this.rankedTallies = new ConcurrentHashMap<>();
+        this.approvalTallies = new ConcurrentHashMap<>();
+        this.weightedTallies = new ConcurrentHashMap<>();
+        this.timelines = new ConcurrentHashMap<>();
+        this.voterSegments = new VoterSegments();
+        this.segmentCubes = new ConcurrentHashMap<>();
+        this.pollIndex = new PollIndex();
+        this.pollSearchIndex = new PollSearchIndex();
+        // Replicas open and close polls as their primary tells them to
+        this.pollScheduler = config.getPrimaryHost() == null ? new PollScheduler(this) : null;
+        this.ingestFreezeDelayMillis = config.getMergeIntervalMillis() * INGEST_FREEZE_MERGES;
         
         // Initialize with some sample data
         initializeSampleData();
@@ -60,14 +195,149 @@ public class VotingServiceImpl extends UnicastRemoteObject implements VotingServ
         // Start a thread to clean up expired sessions
         startSessionCleanupThread();
         
+        // Start following the primary if this server is a read replica
+        if (config.getPrimaryHost() != null) {
+            replicaSync = new ReplicaSync(this, config.getPrimaryHost(), config.getPrimaryPort(), 
+                    config.getReplicationSecret());
+            replicaSync.start();
+        } else {
+            replicaSync = null;
+        }
+        
         LOGGER.info("VotingService initialized");
     }
     
+    /**
+     * Get the tallies shared with the other nodes of the ingest group
+     * 
+     * @return the distributed tally, or null if this server is not part of an ingest group
+     */
+    public DistributedTally getDistributedTally() {
+        return distributedTally;
+    }
+    
+    /**
+     * Merges the tally state of another ingest node and adds the polls it knows about
+     * 
+     * @param state the tally state of another ingest node
+     */
+    void mergeTally(DistributedTally.State state) {
+        for (Poll poll : distributedTally.merge(state)) {
+            LOGGER.info("Poll " + poll.getId() + " received from another ingest node");
+            applyCreatePoll(poll);
+        }
+    }
+    
+    /**
+     * Get the log of changes applied to this server
+     * 
+     * @return the mutation log, or null unless this is a primary serving read replicas
+     */
+    public MutationLog getMutationLog() {
+        return mutationLog;
+    }
+    
+    /**
+     * Records a change in the mutation log if this server serves read replicas
+     * 
+     * @param mutation the change
+     */
+    private void recordMutation(Mutation mutation) {
+        if (mutationLog != null) {
+            mutationLog.append(mutation);
+        }
+    }
+    
+    /**
+     * Writes out the current state as the mutations that rebuild it, for a replica that can't follow the log
+     * 
+     * Nothing is locked while the state is read. Every change made from the returned sequence
+     * number on is still in the log, and applying one again on top of a state that already
+     * has it changes nothing. Ballots are counted under the voters' current weights and
+     * attributes rather than those they had when they voted.
+     * 
+     * @return the snapshot
+     */
+    ReplicaSnapshot snapshot() {
+        long sequence = mutationLog.nextSequence();
+        List<Mutation> mutations = new ArrayList<>();
+        
+        // Users in batches, so a large roll doesn't become one huge mutation
+        List<String> usernames = new ArrayList<>();
+        List<String> storedHashes = new ArrayList<>();
+        for (String username : users.usernames()) {
+            byte[] credential = users.getCredential(username);
+            if (credential != null) {
+                usernames.add(username);
+                storedHashes.add(PasswordUtils.unpackStoredHash(credential));
+            }
+            if (usernames.size() == SNAPSHOT_BATCH_SIZE) {
+                mutations.add(new Mutation.ImportUsers(usernames.toArray(new String[0]), storedHashes.toArray(new String[0])));
+                usernames.clear();
+                storedHashes.clear();
+            }
+        }
+        if (!usernames.isEmpty()) {
+            mutations.add(new Mutation.ImportUsers(usernames.toArray(new String[0]), storedHashes.toArray(new String[0])));
+        }
+        for (Map.Entry<String, Long> weight : users.customWeights().entrySet()) {
+            mutations.add(new Mutation.SetVoterWeight(weight.getKey(), weight.getValue()));
+        }
+        for (String username : voterSegments.voters()) {
+            mutations.add(new Mutation.SetVoterAttributes(username, voterSegments.attributesOf(username)));
+        }
+        
+        // Polls before the ballots cast in them; polls created after this point are still in the log
+        Map<Integer, Poll> snapshotPolls = new HashMap<>(polls);
+        List<Poll> pollsById = new ArrayList<>(snapshotPolls.values());
+        pollsById.sort(Comparator.comparingInt(Poll::getId));
+        for (Poll poll : pollsById) {
+            mutations.add(new Mutation.CreatePoll(poll));
+            if (poll.getState() == PollState.OPEN) {
+                mutations.add(new Mutation.OpenPoll(poll.getId()));
+            }
+        }
+        
+        for (Map.Entry<String, Map<Integer, Integer>> voter : userVotes.entrySet()) {
+            String username = voter.getKey();
+            for (Map.Entry<Integer, Integer> vote : voter.getValue().entrySet()) {
+                Poll poll = snapshotPolls.get(vote.getKey());
+                if (poll == null) {
+                    continue;
+                }
+                if (poll.getType() == PollType.RANKED) {
+                    int[] ranking = rankingOf(username, poll);
+                    if (ranking != null) {
+                        mutations.add(new Mutation.RankedVote(username, poll.getId(), ranking));
+                    }
+                } else if (poll.getType() == PollType.APPROVAL) {
+                    int[] approvals = approvalsOf(username, poll);
+                    if (approvals != null) {
+                        mutations.add(new Mutation.ApprovalVote(username, poll.getId(), approvals));
+                    }
+                } else {
+                    mutations.add(new Mutation.Vote(username, poll.getId(), vote.getValue()));
+                }
+            }
+        }
+        
+        // Closed polls last, with the results they were frozen with
+        for (Poll poll : pollsById) {
+            PollResults frozen = finalResults.get(poll.getId());
+            if (frozen != null) {
+                mutations.add(new Mutation.ClosePoll(poll.getId(), frozen));
+            }
+        }
+        
+        LOGGER.info("Snapshot of " + mutations.size() + " mutations taken at sequence " + sequence);
+        return new ReplicaSnapshot(sequence, mutations);
+    }
+    
     private void initializeSampleData() {
         LOGGER.info("Initializing sample data");
         
         // Add sample users with hashed passwords
-        users.put("admin", PasswordUtils.hashPassword("admin123"));
+        users.register("admin", PasswordUtils.createStoredHash(PasswordUtils.hashPassword("admin123"), passwordIterations));
         
         // Set admin users
         admins.add("admin");
@@ -86,6 +356,12 @@ public class VotingServiceImpl extends UnicastRemoteObject implements VotingServ
         poll2.addOption(new PollOption(3, "Linux"));
         polls.put(poll2.getId(), poll2);
         
+        // Set next poll ID to be one more than the highest sample poll ID
+        nextPollId = polls.keySet().stream().mapToInt(Integer::intValue).max().orElse(0) + 1;
+        
+        // Keep only the sample polls owned by this shard
+        polls.keySet().removeIf(pollId -> shardRing.ownerOf(pollId) != shardIndex);
+        
         // Initialize results for each poll
         for (Poll poll : polls.values()) {
             Map<Integer, Integer> results = new HashMap<>();
@@ -93,11 +369,19 @@ public class VotingServiceImpl extends UnicastRemoteObject implements VotingServ
                 results.put(option.getId(), 0);
             }
             pollResults.put(poll.getId(), results);
+            
+            if (distributedTally != null) {
+                distributedTally.addPoll(poll);
+            }
+            
+            poll.indexOptions();
+            if (pollScheduler != null) {
+                pollScheduler.schedule(poll);
+            }
+            pollIndex.add(poll);
+            pollSearchIndex.add(poll);
         }
         
-        // Set next poll ID to be one more than the highest existing poll ID
-        nextPollId = polls.keySet().stream().mapToInt(Integer::intValue).max().orElse(0) + 1;
-        
         LOGGER.info("Sample data initialized");
     }
     
@@ -138,204 +422,1227 @@ public class VotingServiceImpl extends UnicastRemoteObject implements VotingServ
     public boolean signup(String username, String password) throws RemoteException, SecurityException {
         LOGGER.info("Signup attempt for username: " + username);
         
+        checkWritable();
+        
         // Check if the username already exists
-        if (users.containsKey(username)) {
+        if (users.contains(username)) {
             LOGGER.warning("Signup failed: username already exists: " + username);
             throw new SecurityException("Username already exists");
         }
         
-        // Add the user (password should already be hashed by client)
-        users.put(username, password);
-        userVotes.put(username, new HashMap<>());
+        // Add the user (password should already be hashed by client, and is salted and stretched here)
+        // Another signup for the same username may have won the race while the password was hashed
+        if (!applySignup(username, passwordHasher.hash(password))) {
+            LOGGER.warning("Signup failed: username already exists: " + username);
+            throw new SecurityException("Username already exists");
+        }
         
         LOGGER.info("Signup successful for username: " + username);
         return true;
     }
     
+    /**
+     * Registers a user unless the username is taken, and records the registration in the mutation log
+     * 
+     * Only successful registrations are logged, so replicas end up with the same password hash
+     * as the primary. A vote of the new user may still be logged before the registration, which
+     * replicas tolerate since applyVote creates the user's vote map on demand.
+     * 
+     * @param username the username
+     * @param password the stored password hash
+     * @return true if the user was registered, false if the username already exists
+     */
+    boolean applySignup(String username, String password) {
+        if (!users.register(username, password)) {
+            return false;
+        }
+        credentialCache.invalidate(username);
+        userVotes.putIfAbsent(username, new ConcurrentHashMap<>());
+        recordMutation(new Mutation.Signup(username, password));
+        return true;
+    }
+    
     @Override
-    public String login(String username, String password) throws RemoteException, SecurityException {
-        LOGGER.info("Login attempt for username: " + username);
+    public boolean cancelSignup(String username, String password) 
+            throws RemoteException, SecurityException, IllegalStateException {
+        LOGGER.info("Signup cancellation for username: " + username);
         
-        // Check if the username exists and the password is correct
-        // Password should already be hashed by client
-        if (!users.containsKey(username) || !users.get(username).equals(password)) {
-            LOGGER.warning("Login failed for username: " + username);
+        checkWritable();
+        
+        if (!passwordHasher.verify(password, users.getCredential(username))) {
+            LOGGER.warning("Signup cancellation failed for username: " + username);
             throw new SecurityException("Invalid username or password");
         }
         
-        // Generate a session token
-        String sessionToken = UUID.randomUUID().toString();
+        // Removing a voter would leave their ballots in the tallies
+        Map<Integer, Integer> votes = userVotes.get(username);
+        if (votes != null && !votes.isEmpty()) {
+            LOGGER.warning("Signup cancellation refused, user has voted: " + username);
+            throw new IllegalStateException("An account that has voted can't be removed");
+        }
         
-        // Store the session
-        activeSessions.put(sessionToken, new SessionInfo(username));
+        if (!applyCancelSignup(username)) {
+            return false;
+        }
+        activeSessions.values().removeIf(session -> session.getUsername().equals(username));
         
-        LOGGER.info("User logged in successfully: " + username);
-        return sessionToken;
+        LOGGER.info("Signup cancelled for username: " + username);
+        return true;
     }
     
-    @Override
-    public List<Poll> getAvailablePolls(String sessionToken) throws RemoteException, SecurityException {
-        validateSession(sessionToken);
-        
-        LOGGER.info("Getting available polls for session: " + sessionToken);
-        
-        // Update last access time
-        activeSessions.get(sessionToken).updateLastAccessTime();
-        
-        return new ArrayList<>(polls.values());
+    /**
+     * Removes a user who hasn't voted, and records the removal in the mutation log
+     * 
+     * @param username the username
+     * @return true if the user existed
+     */
+    boolean applyCancelSignup(String username) {
+        if (!users.remove(username)) {
+            return false;
+        }
+        credentialCache.invalidate(username);
+        userVotes.remove(username);
+        recordMutation(new Mutation.CancelSignup(username));
+        return true;
     }
     
     @Override
-    public boolean vote(String sessionToken, int pollId, int optionId) 
+    public int importUsers(String sessionToken, String[] usernames, String[] storedHashes) 
             throws RemoteException, SecurityException, IllegalArgumentException {
         String username = validateSession(sessionToken);
         
-        LOGGER.info("Vote attempt by user: " + username + " for poll: " + pollId + ", option: " + optionId);
-        
         // Update last access time
         activeSessions.get(sessionToken).updateLastAccessTime();
         
-        // Check if poll exists
-        if (!polls.containsKey(pollId)) {
-            LOGGER.warning("Vote attempt for non-existent poll: " + pollId);
-            throw new IllegalArgumentException("Poll does not exist");
+        // Check if the user is an admin
+        if (!admins.contains(username)) {
+            LOGGER.warning("Non-admin user " + username + " attempted to import users");
+            throw new SecurityException("Only administrators can import users");
         }
         
-        Poll poll = polls.get(pollId);
+        checkWritable();
         
-        // Check if poll is active
-        if (!poll.isActive()) {
-            LOGGER.warning("Vote attempt for inactive poll: " + pollId);
-            throw new IllegalStateException("Poll is not active");
+        // Validate input
+        if (usernames == null || storedHashes == null || usernames.length != storedHashes.length) {
+            throw new IllegalArgumentException("Every imported user needs exactly one password hash");
         }
-        
-        // Check if option exists
-        boolean optionExists = false;
-        for (PollOption option : poll.getOptions()) {
-            if (option.getId() == optionId) {
-                optionExists = true;
-                break;
+        for (int i = 0; i < usernames.length; i++) {
+            if (usernames[i] == null || usernames[i].trim().isEmpty()) {
+                throw new IllegalArgumentException("Username cannot be empty");
+            }
+            if (!PasswordUtils.isStoredHash(storedHashes[i])) {
+                throw new IllegalArgumentException("Malformed password hash for user: " + usernames[i]);
             }
         }
         
-        if (!optionExists) {
-            LOGGER.warning("Vote attempt for non-existent option: " + optionId);
-            throw new IllegalArgumentException("Option does not exist");
-        }
+        int imported = applyImportUsers(usernames, storedHashes);
         
-        // Initialize user votes map if it doesn't exist
-        if (!userVotes.containsKey(username)) {
-            userVotes.put(username, new HashMap<>());
+        LOGGER.info("Imported " + imported + " of " + usernames.length + " users");
+        return imported;
+    }
+    
+    /**
+     * Registers a batch of users, skipping existing ones, and records the new users in the mutation log
+     * 
+     * @param usernames the usernames
+     * @param storedHashes the stored password hashes
+     * @return the number of users registered
+     */
+    int applyImportUsers(String[] usernames, String[] storedHashes) {
+        List<String> importedUsernames = new ArrayList<>();
+        List<String> importedHashes = new ArrayList<>();
+        
+        for (int i = 0; i < usernames.length; i++) {
+            if (users.register(usernames[i], storedHashes[i])) {
+                credentialCache.invalidate(usernames[i]);
+                userVotes.putIfAbsent(usernames[i], new ConcurrentHashMap<>());
+                importedUsernames.add(usernames[i]);
+                importedHashes.add(storedHashes[i]);
+            }
         }
         
-        Map<Integer, Integer> userPollVotes = userVotes.get(username);
-        Map<Integer, Integer> results = pollResults.get(pollId);
-        
-        // Check if user has already voted in this poll
-        if (userPollVotes.containsKey(pollId)) {
-            // User is changing their vote
-            int previousVote = userPollVotes.get(pollId);
-            LOGGER.info("User " + username + " is changing vote in poll: " + pollId + 
-                      " from option: " + previousVote + " to option: " + optionId);
-            
-            // Remove the previous vote from results
-            results.put(previousVote, results.get(previousVote) - 1);
-            
-            // Add the new vote to results
-            results.put(optionId, results.get(optionId) + 1);
-            
-            // Update the user's vote for this poll
-            userPollVotes.put(pollId, optionId);
-            
-            LOGGER.info("Vote changed successfully for user: " + username + " in poll: " + pollId);
-        } else {
-            // First time voting in this poll
-            // Record the vote in results
-            results.put(optionId, results.get(optionId) + 1);
-            
-            // Record the user's vote for this poll
-            userPollVotes.put(pollId, optionId);
-            
-            LOGGER.info("Vote recorded successfully for user: " + username + " in poll: " + pollId);
+        // As with signups, only the users actually registered are logged
+        if (!importedUsernames.isEmpty()) {
+            recordMutation(new Mutation.ImportUsers(importedUsernames.toArray(new String[0]), 
+                    importedHashes.toArray(new String[0])));
         }
-        
-        return true;
+        return importedUsernames.size();
     }
     
     @Override
-    public Map<Integer, Integer> getPollResults(String sessionToken, int pollId) 
+    public boolean setVoterWeight(String sessionToken, String username, BigDecimal weight) 
             throws RemoteException, SecurityException, IllegalArgumentException {
-        validateSession(sessionToken);
+        String adminUsername = validateSession(sessionToken);
         
-        LOGGER.info("Getting results for poll: " + pollId);
+        LOGGER.info("Set voter weight attempt by user: " + adminUsername + " for user: " + username);
         
         // Update last access time
         activeSessions.get(sessionToken).updateLastAccessTime();
         
-        // Check if poll exists
-        if (!polls.containsKey(pollId)) {
-            LOGGER.warning("Results request for non-existent poll: " + pollId);
-            throw new IllegalArgumentException("Poll does not exist");
+        // Check if the user is an admin
+        if (!admins.contains(adminUsername)) {
+            LOGGER.warning("Non-admin user " + adminUsername + " attempted to set a voter weight");
+            throw new SecurityException("Only administrators can set voter weights");
         }
         
-        return new HashMap<>(pollResults.get(pollId));
-    }
-    
-    @Override
-    public boolean logout(String sessionToken) throws RemoteException {
-        LOGGER.info("Logout attempt with session token: " + sessionToken);
+        checkWritable();
         
-        if (activeSessions.containsKey(sessionToken)) {
-            activeSessions.remove(sessionToken);
-            LOGGER.info("User logged out successfully");
-            return true;
+        // Validate input
+        if (username == null || !users.contains(username)) {
+            throw new IllegalArgumentException("User does not exist");
+        }
+        if (weight == null || weight.signum() < 0 || weight.compareTo(MAX_VOTER_WEIGHT) > 0) {
+            throw new IllegalArgumentException("Voter weight must be between 0 and " + MAX_VOTER_WEIGHT);
+        }
+        long fixedPoint;
+        try {
+            fixedPoint = weight.movePointRight(WEIGHT_DECIMALS).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Voter weight can have at most " + WEIGHT_DECIMALS + " decimals");
         }
         
-        LOGGER.warning("Logout attempt with invalid session token: " + sessionToken);
-        return false;
+        applySetVoterWeight(username, fixedPoint);
+        
+        LOGGER.info("Weight of user " + username + " set to " + weight);
+        return true;
     }
     
     @Override
-    public int getUserVote(String sessionToken, int pollId) 
+    public boolean setVoterAttributes(String sessionToken, String username, Map<String, String> attributes) 
             throws RemoteException, SecurityException, IllegalArgumentException {
-        String username = validateSession(sessionToken);
+        String adminUsername = validateSession(sessionToken);
         
-        LOGGER.info("Getting user vote for user: " + username + " in poll: " + pollId);
+        LOGGER.info("Set voter attributes attempt by user: " + adminUsername + " for user: " + username);
         
         // Update last access time
         activeSessions.get(sessionToken).updateLastAccessTime();
         
-        // Check if poll exists
-        if (!polls.containsKey(pollId)) {
-            LOGGER.warning("Get user vote attempt for non-existent poll: " + pollId);
-            throw new IllegalArgumentException("Poll does not exist");
+        // Check if the user is an admin
+        if (!admins.contains(adminUsername)) {
+            LOGGER.warning("Non-admin user " + adminUsername + " attempted to set voter attributes");
+            throw new SecurityException("Only administrators can set voter attributes");
         }
         
-        // Check if user has voted in this poll
-        if (!userVotes.containsKey(username) || !userVotes.get(username).containsKey(pollId)) {
-            return -1; // User hasn't voted in this poll
+        checkWritable();
+        
+        // Validate input
+        if (username == null || !users.contains(username)) {
+            throw new IllegalArgumentException("User does not exist");
+        }
+        if (attributes == null || attributes.containsKey(null)) {
+            throw new IllegalArgumentException("Attribute names cannot be empty");
         }
         
-        // Return the option ID that the user voted for
-        return userVotes.get(username).get(pollId);
+        applySetVoterAttributes(username, new HashMap<>(attributes));
+        
+        LOGGER.info("Attributes of user " + username + " set to " + attributes);
+        return true;
+    }
+    
+    /**
+     * Sets the attributes that a voter's future ballots are counted under and records them in the mutation log
+     * 
+     * @param username the voter
+     * @param attributes the voter's attributes (name -> value)
+     */
+    void applySetVoterAttributes(String username, Map<String, String> attributes) {
+        voterSegments.setAttributes(username, attributes);
+        recordMutation(new Mutation.SetVoterAttributes(username, attributes));
+        
+        // The first attribute builds the cubes of the existing polls; later polls get theirs when created
+        if (!segmentCubesEnabled && voterSegments.dimensionCount() > 0) {
+            segmentCubesEnabled = true;
+            for (Poll poll : polls.values()) {
+                createSegmentCube(poll);
+            }
+        }
+    }
+    
+    /**
+     * Builds the segment cube of a poll unless it has one, counting the ballots already cast
+     * 
+     * Ballots are counted in their segments by recordPositions once the cube exists, and
+     * the cube is built under the poll's lock, so every ballot is counted exactly once.
+     * 
+     * @param poll the poll
+     */
+    private void createSegmentCube(Poll poll) {
+        synchronized (pollResults.get(poll.getId())) {
+            segmentCubes.computeIfAbsent(poll.getId(), id -> {
+                ApprovalTally approvalTally = approvalTallies.get(id);
+                Map<Integer, Integer> counts = approvalTally != null ? approvalTally.totals() : pollResults.get(id);
+                int[] votes = new int[poll.getOptions().size()];
+                for (int i = 0; i < votes.length; i++) {
+                    votes[i] = counts.getOrDefault(poll.getOptions().get(i).getId(), 0);
+                }
+                
+                SegmentCube cube = new SegmentCube(poll);
+                cube.seed(votes);
+                return cube;
+            });
+        }
+    }
+    
+    /**
+     * Sets the weight of a voter's future ballots and records it in the mutation log
+     * 
+     * @param username the voter
+     * @param weight the weight in units of 1/PollResults.WEIGHT_SCALE
+     */
+    void applySetVoterWeight(String username, long weight) {
+        users.setWeight(username, weight);
+        recordMutation(new Mutation.SetVoterWeight(username, weight));
     }
     
     @Override
-    public boolean isAdmin(String sessionToken) throws RemoteException, SecurityException {
-        String username = validateSession(sessionToken);
+    public String login(String username, String password) throws RemoteException, SecurityException {
+        LOGGER.info("Login attempt for username: " + username);
         
-        LOGGER.info("Checking if user is admin: " + username);
+        // Check if the username exists and the password is correct
+        // Password should already be hashed by client
+        byte[] storedHash = users.getCredential(username);
+        if (!credentialCache.contains(username, password, storedHash)) {
+            if (!passwordHasher.verify(password, storedHash)) {
+                LOGGER.warning("Login failed for username: " + username);
+                throw new SecurityException("Invalid username or password");
+            }
+            credentialCache.put(username, password, storedHash);
+        }
         
-        // Update last access time
-        activeSessions.get(sessionToken).updateLastAccessTime();
+        // Generate a session token
+        String sessionToken = UUID.randomUUID().toString();
         
-        // Check if the user is an admin
-        return admins.contains(username);
+        // Store the session
+        activeSessions.put(sessionToken, new SessionInfo(username));
+        
+        LOGGER.info("User logged in successfully: " + username);
+        return sessionToken;
     }
     
     @Override
-    public int createPoll(String sessionToken, String title, String description, List<String> options) 
-            throws RemoteException, SecurityException {
+    public List<Poll> getAvailablePolls(String sessionToken) throws RemoteException, SecurityException {
+        validateSession(sessionToken);
+        
+        LOGGER.info("Getting available polls for session: " + sessionToken);
+        
+        // Update last access time
+        activeSessions.get(sessionToken).updateLastAccessTime();
+        
+        checkReadable();
+        
+        return new ArrayList<>(polls.values());
+    }
+    
+    @Override
+    public PollPage getPolls(String sessionToken, PollQuery query, String cursor, int limit) 
+            throws RemoteException, SecurityException, IllegalArgumentException {
+        validateSession(sessionToken);
+        
+        LOGGER.info("Listing polls for session: " + sessionToken);
+        
+        // Update last access time
+        activeSessions.get(sessionToken).updateLastAccessTime();
+        
+        checkReadable();
+        
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("A page can hold between 1 and " + MAX_PAGE_SIZE + " polls");
+        }
+        
+        return pollIndex.page(query, cursor, limit);
+    }
+    
+    @Override
+    public List<PollSearchHit> searchPolls(String sessionToken, String query, int limit) 
+            throws RemoteException, SecurityException, IllegalArgumentException {
+        validateSession(sessionToken);
+        
+        LOGGER.info("Searching polls for: " + query);
+        
+        // Update last access time
+        activeSessions.get(sessionToken).updateLastAccessTime();
+        
+        checkReadable();
+        
+        if (query == null) {
+            throw new IllegalArgumentException("Search query cannot be null");
+        }
+        if (limit < 1 || limit > MAX_SEARCH_HITS) {
+            throw new IllegalArgumentException("A search can return between 1 and " + MAX_SEARCH_HITS + " polls");
+        }
+        
+        return pollSearchIndex.search(query, limit);
+    }
+    
+    @Override
+    public Poll getPollDetails(String sessionToken, int pollId) 
+            throws RemoteException, SecurityException, IllegalArgumentException {
+        validateSession(sessionToken);
+        
+        LOGGER.info("Getting details of poll: " + pollId);
+        
+        // Update last access time
+        activeSessions.get(sessionToken).updateLastAccessTime();
+        
+        checkReadable();
+        
+        Poll poll = polls.get(pollId);
+        if (poll == null) {
+            LOGGER.warning("Details request for non-existent poll: " + pollId);
+            throw new IllegalArgumentException("Poll does not exist");
+        }
+        return poll;
+    }
+    
+    @Override
+    public PollView getPollView(String sessionToken, int pollId) 
+            throws RemoteException, SecurityException, IllegalArgumentException {
+        String username = validateSession(sessionToken);
+        
+        LOGGER.info("Getting view of poll: " + pollId + " for user: " + username);
+        
+        // Update last access time
+        activeSessions.get(sessionToken).updateLastAccessTime();
+        
+        checkReadable();
+        
+        Poll poll = polls.get(pollId);
+        if (poll == null) {
+            LOGGER.warning("View request for non-existent poll: " + pollId);
+            throw new IllegalArgumentException("Poll does not exist");
+        }
+        
+        // Votes are recorded under the poll's lock, so holding it reads the user's vote and the tallies together
+        Map<Integer, Integer> results = pollResults.get(pollId);
+        Integer userVote;
+        int[] userChoices = null;
+        PollResults summary;
+        RankedTally.Snapshot ballots = null;
+        synchronized (results) {
+            Map<Integer, Integer> userPollVotes = userVotes.get(username);
+            userVote = userPollVotes != null ? userPollVotes.get(pollId) : null;
+            
+            if (poll.getType() == PollType.RANKED) {
+                userChoices = rankingOf(username, poll);
+            } else if (poll.getType() == PollType.APPROVAL) {
+                userChoices = approvalsOf(username, poll);
+            }
+            
+            PollResults frozen = finalResults.get(pollId);
+            summary = frozen != null ? frozen 
+                    : summarize(poll, currentCounts(pollId), poll.getState() == PollState.CLOSED);
+            if (poll.getType() == PollType.RANKED) {
+                ballots = rankedTallies.get(pollId).snapshot();
+            }
+        }
+        
+        // The runoff counts the ballots copied above after the lock is released, so it doesn't
+        // hold up votes in the poll
+        RankedResults rankedResults = null;
+        if (ballots != null) {
+            rankedResults = rankedTallies.get(pollId).count(ballots);
+        }
+        
+        return new PollView(poll, userVote != null ? userVote : -1, userChoices, summary, rankedResults);
+    }
+    
+    @Override
+    public boolean vote(String sessionToken, int pollId, int optionId) 
+            throws RemoteException, SecurityException, IllegalArgumentException {
+        String username = validateSession(sessionToken);
+        
+        LOGGER.info("Vote attempt by user: " + username + " for poll: " + pollId + ", option: " + optionId);
+        
+        // Update last access time
+        activeSessions.get(sessionToken).updateLastAccessTime();
+        
+        checkWritable();
+        
+        // Check if poll exists
+        if (!polls.containsKey(pollId)) {
+            LOGGER.warning("Vote attempt for non-existent poll: " + pollId);
+            throw new IllegalArgumentException("Poll does not exist");
+        }
+        
+        Poll poll = polls.get(pollId);
+        
+        // Check if poll is active
+        if (!poll.isActive()) {
+            LOGGER.warning("Vote attempt for inactive poll: " + pollId);
+            throw new IllegalStateException("Poll is not active");
+        }
+        
+        if (poll.getType() != PollType.PLURALITY) {
+            LOGGER.warning("Single-option vote attempt for " + poll.getType() + " poll: " + pollId);
+            throw new IllegalArgumentException("This poll does not take single-option votes");
+        }
+        
+        // Check if option exists
+        if (poll.indexOfOption(optionId) < 0) {
+            LOGGER.warning("Vote attempt for non-existent option: " + optionId);
+            throw new IllegalArgumentException("Option does not exist");
+        }
+        
+        // Check the state again under the poll's lock, so no vote slips in after the results are frozen
+        Map<Integer, Integer> results = pollResults.get(pollId);
+        synchronized (results) {
+            if (!poll.isActive()) {
+                LOGGER.warning("Vote attempt for inactive poll: " + pollId);
+                throw new IllegalStateException("Poll is not active");
+            }
+            applyVote(username, pollId, optionId);
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Records a validated vote and appends it to the vote log and the mutation log
+     * 
+     * @param username the user casting the vote
+     * @param pollId the ID of the poll
+     * @param optionId the ID of the selected option
+     */
+    void applyVote(String username, int pollId, int optionId) {
+        Map<Integer, Integer> userPollVotes = userVotes.computeIfAbsent(username, k -> new ConcurrentHashMap<>());
+        Map<Integer, Integer> results = pollResults.get(pollId);
+        
+        // Votes for the same poll are serialized so the tally and the vote log stay in step
+        synchronized (results) {
+            checkNotClosed(polls.get(pollId));
+            
+            // A vote for the same option again changes nothing, as when a replica replays it after a snapshot
+            Integer currentVote = userPollVotes.get(pollId);
+            if (currentVote != null && currentVote == optionId) {
+                return;
+            }
+            
+            // Check if user has already voted in this poll
+            if (userPollVotes.containsKey(pollId)) {
+                // User is changing their vote
+                int previousVote = userPollVotes.get(pollId);
+                LOGGER.info("User " + username + " is changing vote in poll: " + pollId + 
+                          " from option: " + previousVote + " to option: " + optionId);
+                
+                appendToVoteLog(pollId, optionId, previousVote);
+                if (distributedTally != null) {
+                    distributedTally.recordVote(pollId, optionId, previousVote);
+                }
+                recordBallot(username, pollId, new int[] {optionId}, new int[] {previousVote});
+                recordTimeline(pollId, optionId);
+                
+                // Remove the previous vote from results
+                results.put(previousVote, results.get(previousVote) - 1);
+                
+                // Add the new vote to results
+                results.put(optionId, results.get(optionId) + 1);
+                
+                // Update the user's vote for this poll
+                userPollVotes.put(pollId, optionId);
+                
+                LOGGER.info("Vote changed successfully for user: " + username + " in poll: " + pollId);
+            } else {
+                // First time voting in this poll
+                appendToVoteLog(pollId, optionId, VoteLog.NO_OPTION);
+                if (distributedTally != null) {
+                    distributedTally.recordVote(pollId, optionId, VoteLog.NO_OPTION);
+                }
+                recordBallot(username, pollId, new int[] {optionId}, null);
+                recordTimeline(pollId, optionId);
+                
+                // Record the vote in results
+                results.put(optionId, results.get(optionId) + 1);
+                
+                // Record the user's vote for this poll
+                userPollVotes.put(pollId, optionId);
+                
+                LOGGER.info("Vote recorded successfully for user: " + username + " in poll: " + pollId);
+            }
+            
+            recordMutation(new Mutation.Vote(username, pollId, optionId));
+        }
+    }
+    
+    /**
+     * Moves a voter's ballot from the options of their previous ballot to their new ones in the
+     * poll's weighted totals and segment counts
+     * 
+     * Called under the poll's lock, so ballots of the same voter reach the tallies in order.
+     * 
+     * @param username the voter
+     * @param pollId the ID of the poll
+     * @param optionIds the IDs of the options on the new ballot
+     * @param previousOptionIds the IDs of the options on the previous ballot, or null if this is the first one
+     */
+    private void recordBallot(String username, int pollId, int[] optionIds, int[] previousOptionIds) {
+        Poll poll = polls.get(pollId);
+        recordPositions(username, poll, positionsOf(poll, optionIds), 
+                previousOptionIds != null ? positionsOf(poll, previousOptionIds) : null);
+    }
+    
+    private void recordPositions(String username, Poll poll, int[] positions, int[] previousPositions) {
+        WeightedTally weightedTally = weightedTallies.get(poll.getId());
+        if (weightedTally != null) {
+            weightedTally.replace(username, users.getWeight(username), positions, previousPositions);
+        }
+        
+        // Polls have no cube until some voter has an attribute
+        SegmentCube cube = segmentCubes.get(poll.getId());
+        if (cube != null) {
+            cube.replace(username, voterSegments.segmentsOf(username), positions, previousPositions);
+        }
+    }
+    
+    /**
+     * Counts a vote for an option in the poll's timeline, creating the timeline with the poll's first vote
+     * 
+     * Polls with too many options keep no timeline, and closed polls drop theirs.
+     * Called under the poll's lock, so a vote racing the close can't bring a timeline back.
+     * 
+     * @param pollId the ID of the poll
+     * @param optionId the ID of the option voted for
+     */
+    private void recordTimeline(int pollId, int optionId) {
+        Poll poll = polls.get(pollId);
+        if (poll.getOptions().size() > VoteTimeline.MAX_OPTIONS || poll.getState() == PollState.CLOSED) {
+            return;
+        }
+        timelines.computeIfAbsent(pollId, id -> new VoteTimeline(poll))
+                .record(poll.indexOfOption(optionId), System.currentTimeMillis());
+    }
+    
+    private static int[] positionsOf(Poll poll, int[] optionIds) {
+        int[] positions = new int[optionIds.length];
+        for (int i = 0; i < optionIds.length; i++) {
+            positions[i] = poll.indexOfOption(optionIds[i]);
+        }
+        return positions;
+    }
+    
+    /**
+     * Builds the summary of a poll's results, with the weighted totals if the poll is weighted
+     * 
+     * @param poll the poll
+     * @param counts the number of votes of every option
+     * @param closed whether the results are final
+     * @return the summary
+     */
+    private PollResults summarize(Poll poll, Map<Integer, Integer> counts, boolean closed) {
+        WeightedTally weightedTally = weightedTallies.get(poll.getId());
+        return new PollResults(poll, counts, weightedTally != null ? weightedTally.totals() : null, closed);
+    }
+    
+    @Override
+    public boolean voteRanked(String sessionToken, int pollId, int[] optionIds) 
+            throws RemoteException, SecurityException, IllegalArgumentException {
+        String username = validateSession(sessionToken);
+        
+        LOGGER.info("Ranked vote attempt by user: " + username + " for poll: " + pollId);
+        
+        // Update last access time
+        activeSessions.get(sessionToken).updateLastAccessTime();
+        
+        checkWritable();
+        
+        Poll poll = rankedPoll(pollId);
+        
+        // Check if poll is active
+        if (!poll.isActive()) {
+            LOGGER.warning("Vote attempt for inactive poll: " + pollId);
+            throw new IllegalStateException("Poll is not active");
+        }
+        
+        // Check that the ranking names existing options, each at most once
+        if (optionIds == null || optionIds.length == 0) {
+            throw new IllegalArgumentException("At least one option must be ranked");
+        }
+        boolean[] ranked = new boolean[poll.getOptions().size()];
+        for (int optionId : optionIds) {
+            int position = poll.indexOfOption(optionId);
+            if (position < 0) {
+                LOGGER.warning("Ranked vote attempt for non-existent option: " + optionId);
+                throw new IllegalArgumentException("Option does not exist");
+            }
+            if (ranked[position]) {
+                throw new IllegalArgumentException("Option " + optionId + " is ranked more than once");
+            }
+            ranked[position] = true;
+        }
+        
+        Map<Integer, Integer> results = pollResults.get(pollId);
+        synchronized (results) {
+            if (!poll.isActive()) {
+                LOGGER.warning("Vote attempt for inactive poll: " + pollId);
+                throw new IllegalStateException("Poll is not active");
+            }
+            applyRankedVote(username, pollId, optionIds.clone());
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Records a validated ranked ballot and appends it to the mutation log
+     * 
+     * The poll's plain results, the vote log and the user's vote hold the first
+     * preference of the ballot, so they keep showing a first-round count.
+     * 
+     * @param username the user casting the ballot
+     * @param pollId the ID of the poll
+     * @param optionIds the IDs of the ranked options, most preferred first
+     */
+    void applyRankedVote(String username, int pollId, int[] optionIds) {
+        Poll poll = polls.get(pollId);
+        Map<Integer, Integer> userPollVotes = userVotes.computeIfAbsent(username, k -> new ConcurrentHashMap<>());
+        Map<Integer, Integer> results = pollResults.get(pollId);
+        
+        int[] positions = new int[optionIds.length];
+        for (int i = 0; i < optionIds.length; i++) {
+            positions[i] = poll.indexOfOption(optionIds[i]);
+        }
+        
+        synchronized (results) {
+            checkNotClosed(poll);
+            
+            // The same ranking again changes nothing, as when a replica replays it after a snapshot
+            if (Arrays.equals(rankedTallies.get(pollId).getBallot(username), positions)) {
+                return;
+            }
+            
+            int previousPosition = rankedTallies.get(pollId).cast(username, positions);
+            int previousFirst = previousPosition >= 0 ? poll.getOptions().get(previousPosition).getId() 
+                    : VoteLog.NO_OPTION;
+            int first = optionIds[0];
+            
+            appendToVoteLog(pollId, first, previousFirst);
+            if (distributedTally != null) {
+                distributedTally.recordVote(pollId, first, previousFirst);
+            }
+            
+            if (previousFirst != VoteLog.NO_OPTION) {
+                results.put(previousFirst, results.get(previousFirst) - 1);
+            }
+            results.put(first, results.get(first) + 1);
+            userPollVotes.put(pollId, first);
+            recordPositions(username, poll, new int[] {positions[0]}, 
+                    previousPosition >= 0 ? new int[] {previousPosition} : null);
+            recordTimeline(pollId, first);
+            
+            recordMutation(new Mutation.RankedVote(username, pollId, optionIds));
+        }
+        
+        LOGGER.info("Ranked vote recorded for user: " + username + " in poll: " + pollId);
+    }
+    
+    @Override
+    public int[] getUserRanking(String sessionToken, int pollId) 
+            throws RemoteException, SecurityException, IllegalArgumentException {
+        String username = validateSession(sessionToken);
+        
+        LOGGER.info("Getting user ranking for user: " + username + " in poll: " + pollId);
+        
+        // Update last access time
+        activeSessions.get(sessionToken).updateLastAccessTime();
+        
+        return rankingOf(username, rankedPoll(pollId));
+    }
+    
+    private int[] rankingOf(String username, Poll poll) {
+        int[] positions = rankedTallies.get(poll.getId()).getBallot(username);
+        if (positions == null) {
+            return null;
+        }
+        
+        int[] optionIds = new int[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            optionIds[i] = poll.getOptions().get(positions[i]).getId();
+        }
+        return optionIds;
+    }
+    
+    @Override
+    public RankedResults getRankedResults(String sessionToken, int pollId) 
+            throws RemoteException, SecurityException, IllegalArgumentException {
+        validateSession(sessionToken);
+        
+        LOGGER.info("Getting ranked results for poll: " + pollId);
+        
+        // Update last access time
+        activeSessions.get(sessionToken).updateLastAccessTime();
+        
+        checkReadable();
+        
+        rankedPoll(pollId);
+        return rankedTallies.get(pollId).count();
+    }
+    
+    private Poll rankedPoll(int pollId) {
+        Poll poll = polls.get(pollId);
+        if (poll == null) {
+            LOGGER.warning("Ranked poll request for non-existent poll: " + pollId);
+            throw new IllegalArgumentException("Poll does not exist");
+        }
+        if (poll.getType() != PollType.RANKED) {
+            throw new IllegalArgumentException("Poll is not a ranked-choice poll");
+        }
+        return poll;
+    }
+    
+    @Override
+    public boolean voteApproval(String sessionToken, int pollId, int[] optionIds) 
+            throws RemoteException, SecurityException, IllegalArgumentException {
+        String username = validateSession(sessionToken);
+        
+        LOGGER.info("Approval vote attempt by user: " + username + " for poll: " + pollId);
+        
+        // Update last access time
+        activeSessions.get(sessionToken).updateLastAccessTime();
+        
+        checkWritable();
+        
+        Poll poll = approvalPoll(pollId);
+        
+        // Check if poll is active
+        if (!poll.isActive()) {
+            LOGGER.warning("Vote attempt for inactive poll: " + pollId);
+            throw new IllegalStateException("Poll is not active");
+        }
+        
+        // Check that every approved option exists
+        if (optionIds == null || optionIds.length == 0) {
+            throw new IllegalArgumentException("At least one option must be approved");
+        }
+        for (int optionId : optionIds) {
+            if (poll.indexOfOption(optionId) < 0) {
+                LOGGER.warning("Approval vote attempt for non-existent option: " + optionId);
+                throw new IllegalArgumentException("Option does not exist");
+            }
+        }
+        
+        Map<Integer, Integer> results = pollResults.get(pollId);
+        synchronized (results) {
+            if (!poll.isActive()) {
+                LOGGER.warning("Vote attempt for inactive poll: " + pollId);
+                throw new IllegalStateException("Poll is not active");
+            }
+            applyApprovalVote(username, pollId, optionIds.clone());
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Records a validated approval ballot and appends it to the mutation log
+     * 
+     * Every approval gained or withdrawn goes to the vote log, paired up into moves
+     * where possible, so a recount of the log gives the approval counts.
+     * 
+     * @param username the user casting the ballot
+     * @param pollId the ID of the poll
+     * @param optionIds the IDs of the approved options
+     */
+    void applyApprovalVote(String username, int pollId, int[] optionIds) {
+        Poll poll = polls.get(pollId);
+        ApprovalTally tally = approvalTallies.get(pollId);
+        Map<Integer, Integer> userPollVotes = userVotes.computeIfAbsent(username, k -> new ConcurrentHashMap<>());
+        Map<Integer, Integer> results = pollResults.get(pollId);
+        
+        int[] positions = new int[optionIds.length];
+        for (int i = 0; i < optionIds.length; i++) {
+            positions[i] = poll.indexOfOption(optionIds[i]);
+        }
+        long[] bits = tally.ballotOf(positions);
+        
+        synchronized (results) {
+            checkNotClosed(poll);
+            
+            long[] previous = tally.cast(username, bits);
+            
+            int[] added = ApprovalTally.difference(bits, previous);
+            int[] removed = previous != null ? ApprovalTally.difference(previous, bits) : new int[0];
+            for (int i = 0; i < Math.max(added.length, removed.length); i++) {
+                int optionId = i < added.length ? poll.getOptions().get(added[i]).getId() : VoteLog.NO_OPTION;
+                int previousOptionId = i < removed.length ? poll.getOptions().get(removed[i]).getId() 
+                        : VoteLog.NO_OPTION;
+                appendToVoteLog(pollId, optionId, previousOptionId);
+                if (distributedTally != null) {
+                    distributedTally.recordVote(pollId, optionId, previousOptionId);
+                }
+                if (optionId != VoteLog.NO_OPTION) {
+                    recordTimeline(pollId, optionId);
+                }
+            }
+            
+            // The user's vote holds their first approved option, so clients see that they voted
+            int[] approved = ApprovalTally.difference(bits, null);
+            userPollVotes.put(pollId, poll.getOptions().get(approved[0]).getId());
+            
+            recordPositions(username, poll, approved, previous != null ? ApprovalTally.difference(previous, null) : null);
+            
+            recordMutation(new Mutation.ApprovalVote(username, pollId, optionIds));
+        }
+        
+        LOGGER.info("Approval vote recorded for user: " + username + " in poll: " + pollId);
+    }
+    
+    @Override
+    public int[] getUserApprovals(String sessionToken, int pollId) 
+            throws RemoteException, SecurityException, IllegalArgumentException {
+        String username = validateSession(sessionToken);
+        
+        LOGGER.info("Getting user approvals for user: " + username + " in poll: " + pollId);
+        
+        // Update last access time
+        activeSessions.get(sessionToken).updateLastAccessTime();
+        
+        return approvalsOf(username, approvalPoll(pollId));
+    }
+    
+    private int[] approvalsOf(String username, Poll poll) {
+        long[] bits = approvalTallies.get(poll.getId()).getBallot(username);
+        if (bits == null) {
+            return null;
+        }
+        
+        int[] positions = ApprovalTally.difference(bits, null);
+        int[] optionIds = new int[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            optionIds[i] = poll.getOptions().get(positions[i]).getId();
+        }
+        return optionIds;
+    }
+    
+    private Poll approvalPoll(int pollId) {
+        Poll poll = polls.get(pollId);
+        if (poll == null) {
+            LOGGER.warning("Approval poll request for non-existent poll: " + pollId);
+            throw new IllegalArgumentException("Poll does not exist");
+        }
+        if (poll.getType() != PollType.APPROVAL) {
+            throw new IllegalArgumentException("Poll is not an approval poll");
+        }
+        return poll;
+    }
+    
+    /**
+     * Opens a poll for voting, called by the poll scheduler at the poll's start date
+     * 
+     * @param poll the poll to open
+     */
+    void openPoll(Poll poll) {
+        poll.setState(PollState.OPEN);
+        recordMutation(new Mutation.OpenPoll(poll.getId()));
+    }
+    
+    /**
+     * Opens a poll the primary opened, unless it has already closed
+     * 
+     * @param pollId the ID of the poll
+     */
+    void applyOpenPoll(int pollId) {
+        Poll poll = polls.get(pollId);
+        if (poll != null && poll.getState() != PollState.CLOSED) {
+            openPoll(poll);
+        }
+    }
+    
+    /**
+     * Closes a poll, called by the poll scheduler at the poll's end date
+     * 
+     * Its results are frozen at once, except on ingest nodes: votes cast on the other nodes
+     * before the close may still be on their way, so those freeze the merged totals a few
+     * merge intervals later and serve them as they come in until then.
+     * 
+     * @param poll the poll to close
+     */
+    void closePoll(Poll poll) {
+        if (distributedTally == null) {
+            freezePoll(poll);
+            return;
+        }
+        
+        synchronized (pollResults.get(poll.getId())) {
+            poll.setState(PollState.CLOSED);
+            timelines.remove(poll.getId());
+        }
+        pollScheduler.freezeLater(poll, ingestFreezeDelayMillis);
+        
+        LOGGER.info("Poll " + poll.getId() + " closed, freezing its results in " + ingestFreezeDelayMillis + " ms");
+    }
+    
+    /**
+     * Closes a poll and freezes its results, which never change again
+     * 
+     * Votes are refused under the poll's lock once it is closed, so the results are
+     * taken after the last vote the poll accepted.
+     * 
+     * @param poll the poll to freeze
+     */
+    void freezePoll(Poll poll) {
+        synchronized (pollResults.get(poll.getId())) {
+            poll.setState(PollState.CLOSED);
+            applyClosePoll(poll.getId(), summarize(poll, currentCounts(poll.getId()), true));
+        }
+    }
+    
+    /**
+     * Closes a poll with the results it was frozen with, and records them in the mutation log
+     * 
+     * Results already frozen are kept, so a replica replaying the close after a snapshot
+     * serves the same ones.
+     * 
+     * @param pollId the ID of the poll
+     * @param summary the final results
+     */
+    void applyClosePoll(int pollId, PollResults summary) {
+        Poll poll = polls.get(pollId);
+        if (poll == null) {
+            return;
+        }
+        
+        synchronized (pollResults.get(pollId)) {
+            poll.setState(PollState.CLOSED);
+            timelines.remove(pollId);
+            if (finalResults.putIfAbsent(pollId, summary) == null) {
+                recordMutation(new Mutation.ClosePoll(pollId, summary));
+            }
+        }
+        
+        LOGGER.info("Poll " + pollId + " closed");
+    }
+    
+    /**
+     * Refuses a ballot for a poll that closed after the caller checked that it was open,
+     * so frozen results never change; called under the poll's lock
+     * 
+     * Replicas apply every ballot their primary accepted.
+     * 
+     * @param poll the poll
+     * @throws IllegalStateException if the poll is closed
+     */
+    private void checkNotClosed(Poll poll) throws IllegalStateException {
+        if (replicaSync == null && poll.getState() == PollState.CLOSED) {
+            LOGGER.warning("Vote for poll " + poll.getId() + " arrived after it closed");
+            throw new IllegalStateException("Poll is not active");
+        }
+    }
+    
+    @Override
+    public Map<Integer, Integer> getPollResults(String sessionToken, int pollId) 
+            throws RemoteException, SecurityException, IllegalArgumentException {
+        validateSession(sessionToken);
+        
+        LOGGER.info("Getting results for poll: " + pollId);
+        
+        // Update last access time
+        activeSessions.get(sessionToken).updateLastAccessTime();
+        
+        checkReadable();
+        
+        // Check if poll exists
+        if (!polls.containsKey(pollId)) {
+            LOGGER.warning("Results request for non-existent poll: " + pollId);
+            throw new IllegalArgumentException("Poll does not exist");
+        }
+        
+        // The results of a closed poll never change, so they are served as they are
+        PollResults frozen = finalResults.get(pollId);
+        if (frozen != null) {
+            return frozen.getCounts();
+        }
+        
+        return currentCounts(pollId);
+    }
+    
+    @Override
+    public PollResults getPollResultSummary(String sessionToken, int pollId) 
+            throws RemoteException, SecurityException, IllegalArgumentException {
+        validateSession(sessionToken);
+        
+        LOGGER.info("Getting result summary for poll: " + pollId);
+        
+        // Update last access time
+        activeSessions.get(sessionToken).updateLastAccessTime();
+        
+        checkReadable();
+        
+        // Check if poll exists
+        Poll poll = polls.get(pollId);
+        if (poll == null) {
+            LOGGER.warning("Result summary request for non-existent poll: " + pollId);
+            throw new IllegalArgumentException("Poll does not exist");
+        }
+        
+        PollResults frozen = finalResults.get(pollId);
+        if (frozen != null) {
+            return frozen;
+        }
+        
+        return summarize(poll, currentCounts(pollId), poll.getState() == PollState.CLOSED);
+    }
+    
+    @Override
+    public VoteSeries getVoteSeries(String sessionToken, int pollId, VoteSeries.Resolution resolution, int buckets) 
+            throws RemoteException, SecurityException, IllegalArgumentException {
+        validateSession(sessionToken);
+        
+        LOGGER.info("Getting vote series for poll: " + pollId);
+        
+        // Update last access time
+        activeSessions.get(sessionToken).updateLastAccessTime();
+        
+        checkReadable();
+        
+        // Check if poll exists
+        Poll poll = polls.get(pollId);
+        if (poll == null) {
+            LOGGER.warning("Vote series request for non-existent poll: " + pollId);
+            throw new IllegalArgumentException("Poll does not exist");
+        }
+        if (resolution == null || buckets < 1 || buckets > resolution.getBucketCount()) {
+            throw new IllegalArgumentException("The series must have between 1 and " 
+                    + (resolution != null ? resolution.getBucketCount() : 0) + " buckets");
+        }
+        if (poll.getOptions().size() > VoteTimeline.MAX_OPTIONS) {
+            throw new IllegalArgumentException("Vote series are only kept for polls with at most " 
+                    + VoteTimeline.MAX_OPTIONS + " options");
+        }
+        
+        // A poll without votes, or a closed one, has no timeline
+        VoteTimeline timeline = timelines.get(pollId);
+        long now = System.currentTimeMillis();
+        return timeline != null ? timeline.snapshot(resolution, buckets, now) 
+                : VoteTimeline.empty(poll, resolution, buckets, now);
+    }
+    
+    @Override
+    public ResultBreakdown getResultBreakdown(String sessionToken, int pollId, String attribute) 
+            throws RemoteException, SecurityException, IllegalArgumentException {
+        validateSession(sessionToken);
+        
+        LOGGER.info("Getting result breakdown for poll: " + pollId + " by " + attribute);
+        
+        // Update last access time
+        activeSessions.get(sessionToken).updateLastAccessTime();
+        
+        checkReadable();
+        
+        // Check if poll exists
+        Poll poll = polls.get(pollId);
+        if (poll == null) {
+            LOGGER.warning("Result breakdown request for non-existent poll: " + pollId);
+            throw new IllegalArgumentException("Poll does not exist");
+        }
+        int dimension = voterSegments.dimensionOf(attribute);
+        if (dimension < 0) {
+            throw new IllegalArgumentException("No voter has the attribute " + attribute);
+        }
+        
+        List<String> segments = voterSegments.valuesOf(dimension);
+        SegmentCube cube = segmentCubes.get(pollId);
+        int[][] votes = cube != null ? cube.slice(dimension, segments.size()) 
+                : new int[segments.size()][poll.getOptions().size()];
+        
+        int[] optionIds = new int[poll.getOptions().size()];
+        for (int i = 0; i < optionIds.length; i++) {
+            optionIds[i] = poll.getOptions().get(i).getId();
+        }
+        return new ResultBreakdown(pollId, attribute, segments, optionIds, votes);
+    }
+    
+    private Map<Integer, Integer> currentCounts(int pollId) {
+        // Ingest nodes report the totals merged from every node, not just their own votes
+        if (distributedTally != null) {
+            return distributedTally.getTotals(pollId);
+        }
+        
+        // Approval polls are counted on striped counters that are read without locking
+        ApprovalTally approvalTally = approvalTallies.get(pollId);
+        if (approvalTally != null) {
+            return approvalTally.totals();
+        }
+        
+        Map<Integer, Integer> results = pollResults.get(pollId);
+        synchronized (results) {
+            return new HashMap<>(results);
+        }
+    }
+    
+    @Override
+    public boolean logout(String sessionToken) throws RemoteException {
+        LOGGER.info("Logout attempt with session token: " + sessionToken);
+        
+        if (activeSessions.containsKey(sessionToken)) {
+            activeSessions.remove(sessionToken);
+            LOGGER.info("User logged out successfully");
+            return true;
+        }
+        
+        LOGGER.warning("Logout attempt with invalid session token: " + sessionToken);
+        return false;
+    }
+    
+    @Override
+    public int getUserVote(String sessionToken, int pollId) 
+            throws RemoteException, SecurityException, IllegalArgumentException {
+        String username = validateSession(sessionToken);
+        
+        LOGGER.info("Getting user vote for user: " + username + " in poll: " + pollId);
+        
+        // Update last access time
+        activeSessions.get(sessionToken).updateLastAccessTime();
+        
+        // Check if poll exists
+        if (!polls.containsKey(pollId)) {
+            LOGGER.warning("Get user vote attempt for non-existent poll: " + pollId);
+            throw new IllegalArgumentException("Poll does not exist");
+        }
+        
+        // Check if user has voted in this poll
+        if (!userVotes.containsKey(username) || !userVotes.get(username).containsKey(pollId)) {
+            return -1; // User hasn't voted in this poll
+        }
+        
+        // Return the option ID that the user voted for
+        return userVotes.get(username).get(pollId);
+    }
+    
+    @Override
+    public boolean isAdmin(String sessionToken) throws RemoteException, SecurityException {
+        String username = validateSession(sessionToken);
+        
+        LOGGER.info("Checking if user is admin: " + username);
+        
+        // Update last access time
+        activeSessions.get(sessionToken).updateLastAccessTime();
+        
+        // Check if the user is an admin
+        return admins.contains(username);
+    }
+    
+    @Override
+    public int createPoll(String sessionToken, String title, String description, List<String> options) 
+            throws RemoteException, SecurityException {
+        return createPoll(sessionToken, title, description, options, null, null);
+    }
+    
+    @Override
+    public int createPoll(String sessionToken, String title, String description, List<String> options, 
+            Date startDate, Date endDate) throws RemoteException, SecurityException, IllegalArgumentException {
+        return createPoll(sessionToken, title, description, options, startDate, endDate, PollType.PLURALITY);
+    }
+    
+    @Override
+    public int createPoll(String sessionToken, String title, String description, List<String> options, 
+            Date startDate, Date endDate, PollType type) 
+            throws RemoteException, SecurityException, IllegalArgumentException {
+        return createPoll(sessionToken, title, description, options, startDate, endDate, type, false);
+    }
+    
+    @Override
+    public int createPoll(String sessionToken, String title, String description, List<String> options, 
+            Date startDate, Date endDate, PollType type, boolean weighted) 
+            throws RemoteException, SecurityException, IllegalArgumentException {
         String username = validateSession(sessionToken);
         
         LOGGER.info("Create poll attempt by user: " + username);
@@ -349,6 +1656,8 @@ public class VotingServiceImpl extends UnicastRemoteObject implements VotingServ
             throw new SecurityException("Only administrators can create polls");
         }
         
+        checkWritable();
+        
         // Validate input
         if (title == null || title.trim().isEmpty()) {
             LOGGER.warning("Invalid poll title");
@@ -360,9 +1669,31 @@ public class VotingServiceImpl extends UnicastRemoteObject implements VotingServ
             throw new IllegalArgumentException("At least 2 options are required for a poll");
         }
         
+        // Default to opening now and closing a day later
+        long start = startDate != null ? startDate.getTime() : System.currentTimeMillis();
+        long end = endDate != null ? endDate.getTime() : start + 24 * 60 * 60 * 1000;
+        if (end <= start || end <= System.currentTimeMillis()) {
+            LOGGER.warning("Invalid poll dates: " + new Date(start) + " to " + new Date(end));
+            throw new IllegalArgumentException("Poll end date must be after its start date and in the future");
+        }
+        
+        // Ranked ballots store each choice in at most two bytes
+        if (type == PollType.RANKED && options.size() > 65536) {
+            throw new IllegalArgumentException("Ranked-choice polls can have at most 65536 options");
+        }
+        
+        // Instant runoff moves whole ballots between options, which weights would not survive
+        if (type == PollType.RANKED && weighted) {
+            throw new IllegalArgumentException("Ranked-choice polls cannot be weighted");
+        }
+        
         // Create the poll
-        int pollId = nextPollId++;
+        int pollId = allocatePollId();
         Poll poll = new Poll(pollId, title, description);
+        poll.setStartDate(new Date(start));
+        poll.setEndDate(new Date(end));
+        poll.setType(type != null ? type : PollType.PLURALITY);
+        poll.setWeighted(weighted);
         
         // Add options to the poll
         for (int i = 0; i < options.size(); i++) {
@@ -374,18 +1705,134 @@ public class VotingServiceImpl extends UnicastRemoteObject implements VotingServ
             poll.addOption(new PollOption(i + 1, optionText));
         }
         
-        // Add the poll to the polls map
-        polls.put(pollId, poll);
+        applyCreatePoll(poll);
+        
+        LOGGER.info("Poll created successfully: " + pollId);
+        return pollId;
+    }
+    
+    /**
+     * Adds a poll with empty results and records it in the mutation log
+     * 
+     * @param poll the poll to add
+     */
+    void applyCreatePoll(Poll poll) {
+        // A replica loading a snapshot may be sent a poll it already has
+        if (polls.containsKey(poll.getId())) {
+            return;
+        }
+        recordMutation(new Mutation.CreatePoll(poll));
+        
+        if (distributedTally != null) {
+            distributedTally.addPoll(poll);
+        }
         
         // Initialize results for the poll
         Map<Integer, Integer> results = new HashMap<>();
         for (PollOption option : poll.getOptions()) {
             results.put(option.getId(), 0);
         }
-        pollResults.put(pollId, results);
+        pollResults.put(poll.getId(), results);
         
-        LOGGER.info("Poll created successfully: " + pollId);
-        return pollId;
+        if (poll.getType() == PollType.RANKED) {
+            rankedTallies.put(poll.getId(), new RankedTally(poll));
+        } else if (poll.getType() == PollType.APPROVAL) {
+            approvalTallies.put(poll.getId(), new ApprovalTally(poll));
+        }
+        if (poll.isWeighted()) {
+            weightedTallies.put(poll.getId(), new WeightedTally(poll));
+        }
+        
+        // Set the poll's state and index its options before it becomes visible
+        poll.indexOptions();
+        if (pollScheduler != null) {
+            pollScheduler.schedule(poll);
+        }
+        
+        // Add the poll to the polls map and the listing indexes
+        polls.put(poll.getId(), poll);
+        pollIndex.add(poll);
+        pollSearchIndex.add(poll);
+        
+        // Checked after the poll is visible, so enabling the cubes concurrently can't miss it
+        if (segmentCubesEnabled) {
+            createSegmentCube(poll);
+        }
+    }
+    
+    /**
+     * Allocates the next poll ID owned by this shard
+     * 
+     * Every ID has exactly one owner on the shard ring, so shards never hand out the same ID.
+     * Nodes of an ingest group additionally take every n-th ID, offset by their index.
+     * 
+     * @return the allocated poll ID
+     */
+    private synchronized int allocatePollId() {
+        while (shardRing.ownerOf(nextPollId) != shardIndex || nextPollId % ingestCount != ingestIndex) {
+            nextPollId++;
+        }
+        return nextPollId++;
+    }
+    
+    /**
+     * Rejects changes made directly on a read replica
+     * 
+     * @throws IllegalStateException if this server is a read replica
+     */
+    private void checkWritable() throws IllegalStateException {
+        if (replicaSync != null) {
+            LOGGER.warning("Write attempt on a read replica");
+            throw new IllegalStateException("This server is a read-only replica");
+        }
+    }
+    
+    /**
+     * Rejects reads from a read replica that has fallen too far behind its primary
+     * 
+     * @throws IllegalStateException if this server is a replica staler than its staleness bound
+     */
+    private void checkReadable() throws IllegalStateException {
+        if (replicaSync != null && replicaSync.getStalenessMillis() > maxStalenessMillis) {
+            LOGGER.warning("Read attempt on a stale replica");
+            throw new IllegalStateException("Replica is too far behind the primary");
+        }
+    }
+    
+    /**
+     * Appends a vote to the audit log if vote logging is enabled
+     * 
+     * @param pollId the ID of the poll
+     * @param optionId the ID of the option that received the vote
+     * @param previousOptionId the ID of the option the vote was moved from, or -1 for a first vote
+     * @throws IllegalStateException if the vote cannot be persisted
+     */
+    private void appendToVoteLog(int pollId, int optionId, int previousOptionId) throws IllegalStateException {
+        if (voteLog == null) {
+            return;
+        }
+        
+        try {
+            voteLog.append(pollId, optionId, previousOptionId);
+        } catch (IOException e) {
+            // A vote that cannot be audited must not be counted
+            LOGGER.log(Level.SEVERE, "Failed to append vote to the vote log", e);
+            throw new IllegalStateException("Vote could not be recorded, please try again");
+        }
+    }
+    
+    /**
+     * Looks up the user a session belongs to, without touching the session
+     * 
+     * @param sessionToken the session token
+     * @return the username, or null if the session doesn't exist or has expired
+     */
+    String sessionOwner(String sessionToken) {
+        SessionInfo sessionInfo = sessionToken != null ? activeSessions.get(sessionToken) : null;
+        if (sessionInfo == null || System.currentTimeMillis() - sessionInfo.getLastAccessTime() > SESSION_TIMEOUT) {
+            return null;
+        }
+        return sessionInfo.getUsername();
     }
     
     /**
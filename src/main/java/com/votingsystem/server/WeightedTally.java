@@ -0,0 +1,84 @@
+package com.votingsystem.server;
+
+import com.votingsystem.common.Poll;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Weighted totals of a weighted poll
+ *
+ * Every voter counts with the fixed-point weight they had when they cast their ballot.
+ * The weighted total of every option is kept in its own LongAdder and updated with
+ * every ballot, so reading the totals never waits for voters and never goes over the
+ * ballots. Only the weights that differ from {@link UserStore#DEFAULT_WEIGHT} are
+ * remembered, so that changing a ballot takes back exactly what the old one added even
+ * if the voter's weight changed in between.
+ */
+public class WeightedTally {
+    
+    private final Poll poll;
+    private final int optionCount;
+    
+    // Weight each voter cast their ballot with, if not the default (username -> weight)
+    private final Map<String, Long> contributions = new ConcurrentHashMap<>();
+    
+    // Weighted total of every option by position
+    private final LongAdder[] totals;
+    
+    /**
+     * Constructor for the WeightedTally
+     *
+     * @param poll the weighted poll
+     */
+    public WeightedTally(Poll poll) {
+        this.poll = poll;
+        this.optionCount = poll.getOptions().size();
+        this.totals = new LongAdder[optionCount];
+        for (int i = 0; i < optionCount; i++) {
+            totals[i] = new LongAdder();
+        }
+    }
+    
+    /**
+     * Record a voter's ballot, taking back the weight of the one they cast before
+     *
+     * Callers serialize ballots of the same poll, so the previous positions always
+     * belong to the ballot this tally last recorded for the voter.
+     *
+     * @param username the voter
+     * @param weight the voter's weight in fixed point
+     * @param positions the positions in the poll of the options the voter voted for
+     * @param previousPositions the positions on the voter's previous ballot, or null if this is their first ballot
+     */
+    public void replace(String username, long weight, int[] positions, int[] previousPositions) {
+        Long previousWeight = weight == UserStore.DEFAULT_WEIGHT
+                ? contributions.remove(username)
+                : contributions.put(username, weight);
+        
+        if (previousPositions != null) {
+            long taken = previousWeight != null ? previousWeight : UserStore.DEFAULT_WEIGHT;
+            for (int position : previousPositions) {
+                totals[position].add(-taken);
+            }
+        }
+        for (int position : positions) {
+            totals[position].add(weight);
+        }
+    }
+    
+    /**
+     * Get the weighted total of every option
+     *
+     * @return a map of option IDs to fixed-point weighted totals
+     */
+    public Map<Integer, Long> totals() {
+        Map<Integer, Long> result = new HashMap<>();
+        for (int i = 0; i < optionCount; i++) {
+            result.put(poll.getOptions().get(i).getId(), totals[i].sum());
+        }
+        return result;
+    }
+}